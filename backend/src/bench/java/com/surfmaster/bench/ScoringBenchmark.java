@@ -0,0 +1,160 @@
+package com.surfmaster.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.Objective;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.UserLevel;
+import com.surfmaster.service.scoring.SpotScoringModel;
+
+/**
+ * Compares the original per-point scorer (boxed values, switches per call)
+ * with the compiled {@link SpotScoringModel} over one spot's forecast horizon.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Param({"72", "384"})
+    private int points;
+
+    private Spot spot;
+    private UserLevel level;
+    private Objective objective;
+
+    // forma boxed que o scorer antigo recebia
+    private Double[] boxedHeights;
+    private Direction[] swellDirs;
+    private Double[] boxedWinds;
+    private Direction[] windDirs;
+
+    private double[] heights;
+    private int[] swellDirIdx;
+    private double[] winds;
+    private int[] windDirIdx;
+    private double[] out;
+
+    private SpotScoringModel model;
+
+    @Setup
+    public void setUp() {
+        spot = Spot.builder().id(1L).swellBestDirection(Direction.NW).windBestDirection(Direction.E).build();
+        level = UserLevel.INTERMEDIATE;
+        objective = Objective.FUN;
+
+        Random random = new Random(42);
+        boxedHeights = new Double[points];
+        swellDirs = new Direction[points];
+        boxedWinds = new Double[points];
+        windDirs = new Direction[points];
+        heights = new double[points];
+        swellDirIdx = new int[points];
+        winds = new double[points];
+        windDirIdx = new int[points];
+        out = new double[points];
+        for (int i = 0; i < points; i++) {
+            heights[i] = random.nextDouble() * 4.0;
+            winds[i] = random.nextDouble() * 35.0;
+            swellDirs[i] = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+            windDirs[i] = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+            boxedHeights[i] = heights[i];
+            boxedWinds[i] = winds[i];
+            swellDirIdx[i] = SpotScoringModel.bearingIndex(null, swellDirs[i]);
+            windDirIdx[i] = SpotScoringModel.bearingIndex(null, windDirs[i]);
+        }
+        model = SpotScoringModel.compile(spot, level, objective);
+    }
+
+    @Benchmark
+    public double[] legacyScorer() {
+        for (int i = 0; i < points; i++) {
+            out[i] = LegacyScorer.score(spot, boxedHeights[i], swellDirs[i], boxedWinds[i], windDirs[i], level, objective);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] compiledModel() {
+        model.scoreAll(heights, swellDirIdx, winds, windDirIdx, out, points);
+        return out;
+    }
+
+    @Benchmark
+    public double[] compiledModelIncludingCompile() {
+        SpotScoringModel fresh = SpotScoringModel.compile(spot, level, objective);
+        fresh.scoreAll(heights, swellDirIdx, winds, windDirIdx, out, points);
+        return out;
+    }
+
+    /** Copy of the scorer RecommendationService used before the compiled model. */
+    static final class LegacyScorer {
+
+        static double score(Spot spot, Double swellHeight, Direction swellDirection, Double windSpeed,
+                            Direction windDirection, UserLevel level, Objective objective) {
+            double swellDir = dirMatch(spot.getSwellBestDirection(), swellDirection);
+            double windDir = dirMatch(spot.getWindBestDirection(), windDirection);
+            double swellHeightScore = swellHeightScore(swellHeight, level);
+            double windPenalty = windPenalty(windSpeed, objective);
+            double windScore = windDir * (1.0 - windPenalty);
+            double swellScore = swellDir * swellHeightScore;
+            return 100.0 * clamp01(0.55 * swellScore + 0.45 * windScore);
+        }
+
+        private static double swellHeightScore(Double h, UserLevel level) {
+            if (h == null || h <= 0) return 0.0;
+            double maxOk = switch (level) {
+                case BEGINNER -> 1.2;
+                case INTERMEDIATE -> 2.0;
+                case ADVANCED -> 3.0;
+            };
+            if (h <= maxOk) return 1.0;
+            double worst = maxOk * 2.0;
+            if (h >= worst) return 0.0;
+            return 1.0 - (h - maxOk) / (worst - maxOk);
+        }
+
+        private static double windPenalty(Double windSpeed, Objective objective) {
+            if (windSpeed == null) return 0.5;
+            double ok = 12.0;
+            double bad = 25.0;
+            double base;
+            if (windSpeed <= ok) base = 0.0;
+            else if (windSpeed >= bad) base = 1.0;
+            else base = (windSpeed - ok) / (bad - ok);
+            double mult = switch (objective) {
+                case FUN -> 1.25;
+                case TRAINING -> 0.85;
+            };
+            return clamp01(base * mult);
+        }
+
+        private static double dirMatch(Direction best, Direction actual) {
+            if (best == null || actual == null) return 0.0;
+            return best == actual ? 1.0 : 0.0;
+        }
+
+        private static double clamp01(double x) {
+            return Math.max(0.0, Math.min(1.0, x));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.surfmaster.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.surfmaster.forecast.providers.stormglass.StormglassResponseParser;
+
+/**
+ * Compares binding a Stormglass response into records of per-source maps (the original
+ * {@code StormglassResponse}) with the streaming {@link StormglassResponseParser}.
+ * Run with {@code -prof gc} to see the allocation per response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StormglassParseBenchmark {
+
+    private static final String[] PARAMS = {
+            "swellHeight", "swellDirection", "swellPeriod", "windSpeed",
+            "windDirection", "tideHeight", "waterTemperature", "airTemperature"};
+    private static final String[] SOURCES = {"sg", "noaa", "icon", "dwd", "meteo"};
+
+    @Param({"24", "240"})
+    private int hours;
+
+    private byte[] body;
+    private ObjectMapper mapper;
+    private JsonFactory jsonFactory;
+
+    // copia do binding antigo
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record LegacyResponse(List<LegacyHour> hours) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record LegacyHour(
+            OffsetDateTime time,
+            Map<String, Double> swellHeight,
+            Map<String, Double> swellDirection,
+            Map<String, Double> swellPeriod,
+            Map<String, Double> windSpeed,
+            Map<String, Double> windDirection,
+            Map<String, Double> tideHeight,
+            Map<String, Double> waterTemperature) {}
+
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper().findAndRegisterModules();
+        jsonFactory = JsonFactory.builder().enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER).build();
+        OffsetDateTime t0 = OffsetDateTime.of(2026, 3, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        StringBuilder json = new StringBuilder("{\"hours\":[");
+        for (int h = 0; h < hours; h++) {
+            json.append(h == 0 ? "{" : ",{").append("\"time\":\"").append(t0.plusHours(h)).append('"');
+            for (String param : PARAMS) {
+                json.append(",\"").append(param).append("\":{");
+                for (int s = 0; s < SOURCES.length; s++) {
+                    json.append(s == 0 ? "" : ",").append('"').append(SOURCES[s]).append("\":").append(1.0 + h * 0.01 + s);
+                }
+                json.append('}');
+            }
+            json.append('}');
+        }
+        json.append("],\"meta\":{\"cost\":1,\"dailyQuota\":10,\"lat\":38.99,\"lng\":-9.41}}");
+        body = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public double recordsAndMaps() throws IOException {
+        LegacyResponse response = mapper.readValue(body, LegacyResponse.class);
+        double sum = 0;
+        for (LegacyHour hour : response.hours()) {
+            sum += resolve(hour.swellHeight()) + resolve(hour.swellDirection()) + resolve(hour.swellPeriod())
+                    + resolve(hour.windSpeed()) + resolve(hour.windDirection()) + resolve(hour.tideHeight())
+                    + resolve(hour.waterTemperature()) + hour.time().toEpochSecond();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double streaming() throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            StormglassResponseParser.Hours parsed = StormglassResponseParser.parse(parser, "noaa");
+            double sum = 0;
+            for (int i = 0; i < parsed.size(); i++) {
+                sum += parsed.epochSecond(i);
+                for (int p = StormglassResponseParser.SWELL_HEIGHT; p <= StormglassResponseParser.WATER_TEMPERATURE; p++) {
+                    sum += parsed.value(i, p);
+                }
+            }
+            return sum;
+        }
+    }
+
+    // mesmo criterio do resolveValue antigo
+    private static double resolve(Map<String, Double> values) {
+        if (values == null || values.isEmpty()) {
+            return Double.NaN;
+        }
+        Double preferred = values.get("noaa");
+        if (preferred != null) {
+            return preferred;
+        }
+        return values.values().stream().filter(Objects::nonNull).findFirst().orElse(Double.NaN);
+    }
+}
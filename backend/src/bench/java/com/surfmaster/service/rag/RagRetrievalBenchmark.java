@@ -0,0 +1,124 @@
+package com.surfmaster.service.rag;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.surfmaster.config.LlmProperties.EmbeddingPrecision;
+
+/**
+ * Candidate retrieval for one chat question over a catalog of 768-dim spot embeddings:
+ * the original full cosine scan over raw doubles, the same scan over stored unit vectors,
+ * and an {@link HnswIndex} search for the {@link SpotRagService#CANDIDATES} nearest spots,
+ * per storage precision. Lives in the service package because the index is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "--add-modules=jdk.incubator.vector"})
+public class RagRetrievalBenchmark {
+
+    private static final int DIMENSIONS = 768;
+    private static final int QUERIES = 64;
+
+    @Param({"1000", "20000"})
+    private int spots;
+
+    @Param({"FLOAT32", "INT8"})
+    private EmbeddingPrecision precision;
+
+    private double[][] embeddings;
+    private EmbeddingVector[] stored;
+    private double[][] queries;
+    private float[][] normalizedQueries;
+    private HnswIndex index;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(11);
+        // spots agrupados por regiao, como num catalogo real
+        double[][] centers = new double[Math.max(1, spots / 50)][];
+        for (int c = 0; c < centers.length; c++) {
+            centers[c] = gaussian(random, 1.0, null);
+        }
+        embeddings = new double[spots][];
+        stored = new EmbeddingVector[spots];
+        index = new HnswIndex(16, 100, 42L);
+        for (int i = 0; i < spots; i++) {
+            embeddings[i] = gaussian(random, 0.4, centers[random.nextInt(centers.length)]);
+            stored[i] = EmbeddingVector.encode(embeddings[i], precision);
+            index.upsert(i, stored[i]);
+        }
+        queries = new double[QUERIES][];
+        normalizedQueries = new float[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = gaussian(random, 0.4, centers[random.nextInt(centers.length)]);
+            normalizedQueries[q] = EmbeddingVector.normalize(queries[q]);
+        }
+    }
+
+    @Benchmark
+    public List<long[]> fullScan() {
+        double[] query = queries[next++ & (QUERIES - 1)];
+        List<long[]> scored = new ArrayList<>(spots);
+        for (int i = 0; i < spots; i++) {
+            scored.add(new long[]{i, Double.doubleToLongBits(cosine(query, embeddings[i]))});
+        }
+        scored.sort(Comparator.comparingDouble((long[] s) -> Double.longBitsToDouble(s[1])).reversed());
+        return scored.subList(0, SpotRagService.CANDIDATES);
+    }
+
+    @Benchmark
+    public List<long[]> normalizedScan() {
+        float[] query = normalizedQueries[next++ & (QUERIES - 1)];
+        List<long[]> scored = new ArrayList<>(spots);
+        for (int i = 0; i < spots; i++) {
+            scored.add(new long[]{i, Double.doubleToLongBits(stored[i].similarity(query))});
+        }
+        scored.sort(Comparator.comparingDouble((long[] s) -> Double.longBitsToDouble(s[1])).reversed());
+        return scored.subList(0, SpotRagService.CANDIDATES);
+    }
+
+    @Benchmark
+    public List<HnswIndex.Hit> hnsw() {
+        return index.search(normalizedQueries[next++ & (QUERIES - 1)], SpotRagService.CANDIDATES, 100);
+    }
+
+    // o cosine antigo do SpotRagService: as duas normas recalculadas a cada comparacao
+    private static double cosine(double[] a, double[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    private static double[] gaussian(Random random, double scale, double[] center) {
+        double[] v = new double[DIMENSIONS];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = random.nextGaussian() * scale + (center != null ? center[i] : 0);
+        }
+        return v;
+    }
+}
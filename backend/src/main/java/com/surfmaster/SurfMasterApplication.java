@@ -7,13 +7,16 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.surfmaster.config.ForecastProperties;
 import com.surfmaster.config.LlmProperties;
+import com.surfmaster.config.RecommendationProperties;
 
 @SpringBootApplication
-@EnableConfigurationProperties({ForecastProperties.class, LlmProperties.class})
+@EnableScheduling
+@EnableConfigurationProperties({ForecastProperties.class, LlmProperties.class, RecommendationProperties.class})
 public class SurfMasterApplication {
     public static void main(String[] args) {
         SpringApplication.run(SurfMasterApplication.class, args);
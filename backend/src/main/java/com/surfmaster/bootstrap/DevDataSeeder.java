@@ -4,13 +4,16 @@ package com.surfmaster.bootstrap;
 import com.surfmaster.entities.*;
 import com.surfmaster.repository.SpotRepository;
 import com.surfmaster.repository.ForecastRepository;
+import com.surfmaster.service.ForecastWriter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.boot.CommandLineRunner;
 
 import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Component
 @Profile("dev")
@@ -19,6 +22,7 @@ public class DevDataSeeder implements CommandLineRunner {
 
     private final SpotRepository spotRepo;
     private final ForecastRepository forecastRepo;
+    private final ForecastWriter forecastWriter;
 
     @Override
     public void run(String... args) {
@@ -83,7 +87,7 @@ public class DevDataSeeder implements CommandLineRunner {
         // Example forecasts (next hours)
         var now = OffsetDateTime.now().withMinute(0).withSecond(0).withNano(0);
 
-        forecastRepo.saveAll(List.of(
+        List<Forecast> forecasts = List.of(
                 // Ericeira
                 Forecast.builder()
                         .spot(ericeira)
@@ -191,7 +195,12 @@ public class DevDataSeeder implements CommandLineRunner {
                         .tideHeight(1.2).waterTemperature(16)
                         .dataSource(ForecastSource.SEED)
                         .build()
-        ));
+        );
+
+        // mesmo caminho de escrita do sync com o provider
+        forecasts.stream()
+                .collect(Collectors.groupingBy(Forecast::getSpot, LinkedHashMap::new, Collectors.toList()))
+                .forEach((spot, spotForecasts) -> forecastWriter.syncRange(spot, now, now.plusHours(24), spotForecasts));
 
         System.out.println("✔ Dev seed: " + spotRepo.count() + " spots and "
                 + forecastRepo.count() + " forecasts.");
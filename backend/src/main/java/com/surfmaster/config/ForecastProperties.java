@@ -2,11 +2,14 @@ package com.surfmaster.config;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Min;
 import lombok.Getter;
 import lombok.Setter;
@@ -17,17 +20,40 @@ import lombok.Setter;
 @ConfigurationProperties(prefix = "surf.forecast")
 public class ForecastProperties {
 
+    // um provider ou lista separada por virgula (ordem = precedencia na agregacao)
     private String provider = "windguru";
 
     @Min(1)
     private int ttlMinutes = 60;
 
+    // chamadas simultaneas ao provider durante o sync
+    @Min(1)
+    private int syncConcurrency = 8;
+
     private Stormglass stormglass = new Stormglass();
 
+    private Store store = new Store();
+
+    private Quota quota = new Quota();
+
+    private Refresh refresh = new Refresh();
+
+    private Aggregation aggregation = new Aggregation();
+
+    private Resilience resilience = new Resilience();
+
     public Duration ttl() {
         return Duration.ofMinutes(ttlMinutes);
     }
 
+    // o prazo da agregacao corta o provider: todas as tentativas e esperas precisam caber nele
+    @AssertTrue(message = "surf.forecast.aggregation.timeout-seconds must be longer than the resilience attempts"
+            + " (max-retries + 1) x attempt-timeout-seconds plus the retry backoff")
+    public boolean isAggregationTimeoutCoveringRetries() {
+        return !resilience.isEnabled()
+                || aggregation.getTimeoutSeconds() * 1000L > resilience.worstCaseFetchMillis();
+    }
+
     @Getter
     @Setter
     public static class Stormglass {
@@ -39,6 +65,9 @@ public class ForecastProperties {
         @Min(1)
         private int horizonHours = 24;
 
+        // spots na mesma celula (graus) compartilham uma chamada; 0 = uma chamada por spot
+        private double gridResolutionDegrees = 0.1;
+
         private List<String> params = new ArrayList<>(List.of(
                 "swellHeight",
                 "swellDirection",
@@ -48,4 +77,121 @@ public class ForecastProperties {
                 "waterTemperature"
         ));
     }
+
+    @Getter
+    @Setter
+    public static class Store {
+        private boolean enabled = true;
+
+        // pontos mais antigos que isso saem da memoria e sao lidos do banco
+        @Min(1)
+        private int retentionHours = 168;
+
+        // arquivo do snapshot mapeado em memoria; vazio desliga
+        private String snapshotPath;
+
+        // syncs dentro desse intervalo geram uma unica reescrita do snapshot
+        private Duration snapshotDebounce = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Quota {
+        // chamadas ao provider por dia (UTC); 0 = sem limite
+        @Min(0)
+        private int dailyLimit = 0;
+
+        // token bucket: ritmo sustentado e rajada maxima
+        private double requestsPerSecond = 1.0;
+
+        @Min(1)
+        private int burst = 5;
+
+        // meia-vida da demanda (leituras) usada para priorizar spots
+        private double demandHalfLifeHours = 6.0;
+    }
+
+    @Getter
+    @Setter
+    public static class Refresh {
+        private boolean enabled = true;
+
+        // intervalo entre verificacoes de spots vencidos
+        @Min(1)
+        private int tickSeconds = 60;
+
+        // fracao do TTL usada para espalhar os spots (0 = todos vencem juntos)
+        private double jitterFraction = 0.2;
+
+        // deve ser maior que o tick para o lider renovar antes de expirar
+        @Min(1)
+        private int leaseSeconds = 180;
+    }
+
+    @Getter
+    @Setter
+    public static class Aggregation {
+        // mesma hora vinda de varios providers: PRECEDENCE (primeiro valor presente) ou WEIGHTED (media ponderada)
+        private MergeStrategy merge = MergeStrategy.PRECEDENCE;
+
+        // prazo de cada provider; quem passa dele fica fora do resultado
+        @Min(1)
+        private int timeoutSeconds = 40;
+
+        // peso por provider (nome do ForecastSource) no modo WEIGHTED; ausente = 1
+        private Map<String, Double> weights = new LinkedHashMap<>();
+    }
+
+    @Getter
+    @Setter
+    public static class Resilience {
+        private boolean enabled = true;
+
+        // prazo de cada tentativa (o hedge conta como outra tentativa)
+        @Min(1)
+        private int attemptTimeoutSeconds = 10;
+
+        // retry com backoff exponencial e jitter, so para 429/5xx/timeout/IO
+        @Min(0)
+        private int maxRetries = 2;
+        @Min(1)
+        private long retryBackoffMillis = 500;
+        @Min(1)
+        private long retryMaxBackoffMillis = 5000;
+        private double retryJitter = 0.5;
+
+        // segunda requisicao quando a primeira passa do p95 recente
+        private boolean hedgeEnabled = true;
+        @Min(1)
+        private int hedgeMinSamples = 20;
+        @Min(1)
+        private long hedgeMinDelayMillis = 200;
+        @Min(1)
+        private int latencyWindow = 100;
+
+        // circuito abre com taxa de falha alta nas ultimas chamadas
+        @Min(1)
+        private int breakerWindow = 10;
+        @Min(1)
+        private int breakerMinimumCalls = 5;
+        private double breakerFailureRate = 0.5;
+        @Min(1)
+        private int breakerOpenSeconds = 30;
+
+        /** Longest a fetch can take: every attempt timing out plus the longest jittered backoffs. */
+        public long worstCaseFetchMillis() {
+            long total = (maxRetries + 1L) * attemptTimeoutSeconds * 1000L;
+            double jitter = Math.max(0.0, Math.min(1.0, retryJitter));
+            for (int retry = 0; retry < maxRetries; retry++) {
+                double backoff = retryBackoffMillis * Math.pow(2, retry) * (1 + jitter);
+                total += (long) Math.ceil(Math.min(backoff, retryMaxBackoffMillis));
+            }
+            return total;
+        }
+    }
+
+    public enum MergeStrategy {
+        PRECEDENCE,
+        WEIGHTED
+    }
 }
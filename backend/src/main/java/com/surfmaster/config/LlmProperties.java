@@ -1,8 +1,11 @@
 package com.surfmaster.config;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Getter;
 import lombok.Setter;
@@ -24,4 +27,35 @@ public class LlmProperties {
     private String embeddingProvider = "huggingface";
     private String embeddingEndpoint = "https://api-inference.huggingface.co/models/BAAI/bge-base-en-v1.5";
     private String embeddingApiKey;
+    // textos por requisicao de embedding e requisicoes em paralelo (embedAll)
+    private int embeddingBatchSize = 32;
+    private int embeddingConcurrency = 4;
+    // embeda os spots em lote no startup, fora do caminho do chat
+    private boolean embeddingWarmUp = true;
+    // provider de embeddings falhou: nenhuma chamada nova por esse tempo
+    private Duration embeddingFailureBackoff = Duration.ofSeconds(30);
+    // arquivo com os embeddings dos spots (sobrevive a restart); vazio = so em memoria
+    private String embeddingStorePath;
+    // mudancas dentro desse intervalo geram uma unica reescrita do arquivo
+    private Duration embeddingStoreWriteDebounce = Duration.ofSeconds(5);
+    // float32 (4 bytes por dimensao) ou int8 quantizado (1 byte, similaridade aproximada)
+    private EmbeddingPrecision embeddingPrecision = EmbeddingPrecision.FLOAT32;
+
+    private QueryCache queryCache = new QueryCache();
+
+    @Getter
+    @Setter
+    public static class QueryCache {
+        /** LRU capacity of the question embedding cache; 0 disables it. */
+        @Min(0)
+        private int maxEntries = 1000;
+
+        /** How long a cached question embedding is reused. */
+        private Duration ttl = Duration.ofHours(6);
+    }
+
+    public enum EmbeddingPrecision {
+        FLOAT32,
+        INT8
+    }
 }
@@ -0,0 +1,60 @@
+package com.surfmaster.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import com.surfmaster.service.scoring.DirectionScoring;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "surf.recommendation")
+public class RecommendationProperties {
+
+    // threads do pool de scoring; 0 = um por core
+    @Min(0)
+    private int scoringParallelism = 0;
+
+    // abaixo disso o scoring roda na thread do request
+    @Min(1)
+    private int parallelThreshold = 32;
+
+    // maior topK aceito por request
+    @Min(1)
+    private int maxTopK = 50;
+
+    // como a direcao do forecast e comparada com a direcao ideal do spot
+    private DirectionScoring directionScoring = DirectionScoring.EXACT;
+
+    private Cache cache = new Cache();
+
+    public int effectiveScoringParallelism() {
+        return scoringParallelism > 0 ? scoringParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        // capacidade do LRU; 0 desliga o cache
+        @Min(0)
+        private int maxEntries = 1000;
+
+        // requests na mesma celula lat/lon compartilham a entrada
+        @DecimalMin("0.001")
+        private double cellDegrees = 0.05;
+
+        // maxDistanceKm arredondado para cima neste multiplo
+        @DecimalMin("0.1")
+        private double radiusBucketKm = 5.0;
+
+        // depois disso recalcula mesmo sem sync invalidando
+        private Duration ttl = Duration.ofMinutes(15);
+    }
+}
@@ -0,0 +1,19 @@
+package com.surfmaster.config;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ScoringPoolConfig {
+
+    /**
+     * Dedicated pool for per-spot recommendation scoring, kept apart from the
+     * common pool so request bursts don't starve other parallel work.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool recommendationScoringPool(RecommendationProperties properties) {
+        return new ForkJoinPool(properties.effectiveScoringParallelism());
+    }
+}
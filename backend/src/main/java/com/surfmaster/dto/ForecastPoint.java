@@ -0,0 +1,20 @@
+package com.surfmaster.dto;
+
+import java.time.OffsetDateTime;
+
+import com.surfmaster.entities.Direction;
+
+/**
+ * Read-only slice of a forecast row carrying only what the recommendation scorer uses.
+ * Built straight from JPQL so no managed {@code Forecast} entity is hydrated.
+ */
+public record ForecastPoint(
+        Long spotId,
+        OffsetDateTime timestamp,
+        Double swellHeight,
+        Direction swellDirection,
+        Double swellDirectionDegrees,
+        Double windSpeed,
+        Direction windDirection,
+        Double windDirectionDegrees
+) {}
@@ -2,4 +2,15 @@ package com.surfmaster.entities;
 
 public enum Direction {
     N, NE, E, SE, S, SW, W, NW;
+
+    private static final Direction[] VALUES = values();
+
+    // setor de 45 graus mais proximo do bearing
+    public static Direction fromDegrees(Double degrees) {
+        if (degrees == null || degrees.isNaN()) {
+            return null;
+        }
+        double normalized = (degrees % 360 + 360) % 360;
+        return VALUES[(int) Math.round(normalized / 45.0) % VALUES.length];
+    }
 }
@@ -13,11 +13,14 @@ import java.time.OffsetDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_forecast_spot_timestamp", columnNames = {"spot_id", "timestamp"}))
 public class Forecast {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // ids em blocos de 50: IDENTITY desliga o batch de INSERT do Hibernate
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "forecast_seq")
+    @SequenceGenerator(name = "forecast_seq", sequenceName = "forecast_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -32,11 +35,16 @@ public class Forecast {
     @Enumerated(EnumType.STRING)
     private Direction swellDirection;
 
+    // bearing bruto do provider (graus), quando disponivel
+    private Double swellDirectionDegrees;
+
     private Double windSpeed;
 
     @Enumerated(EnumType.STRING)
     private Direction windDirection;
 
+    private Double windDirectionDegrees;
+
     private Double tideHeight;
 
     private int waterTemperature;
@@ -0,0 +1,8 @@
+package com.surfmaster.entities;
+
+import java.util.Set;
+
+/**
+ * Published after new forecasts are persisted for the given spots.
+ */
+public record ForecastsUpdatedEvent(Set<Long> spotIds) {}
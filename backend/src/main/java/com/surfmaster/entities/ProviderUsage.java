@@ -0,0 +1,47 @@
+package com.surfmaster.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Calls made to one forecast provider on one UTC day. Kept in the database so the daily
+ * quota survives restarts and is shared by every instance.
+ * Rows are only ever inserted through {@code save} (see {@link SchedulerLease}); the count
+ * is raised with a conditional update so concurrent callers never exceed the limit.
+ */
+@Entity
+@IdClass(ProviderUsage.Key.class)
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class ProviderUsage implements Persistable<ProviderUsage.Key> {
+
+    @Id
+    private String provider;
+
+    @Id
+    private LocalDate quotaDay;
+
+    private int used;
+
+    @Override
+    public Key getId() {
+        return new Key(provider, quotaDay);
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String provider;
+        private LocalDate quotaDay;
+    }
+}
@@ -0,0 +1,35 @@
+package com.surfmaster.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Named lease used to elect a single instance for background jobs.
+ * Rows are only ever inserted through {@code save}, so {@link #isNew()} is always true:
+ * a concurrent insert fails on the primary key instead of overwriting the holder.
+ */
+@Entity
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class SchedulerLease implements Persistable<String> {
+
+    @Id
+    private String name;
+
+    private String owner;
+
+    private OffsetDateTime expiresAt;
+
+    @Override
+    public String getId() {
+        return name;
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -0,0 +1,25 @@
+package com.surfmaster.entities;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JPA listener that turns spot lifecycle callbacks into {@link SpotChangedEvent}s.
+ * Instantiated through Spring's Hibernate bean container, so injection works here.
+ */
+@RequiredArgsConstructor
+public class SpotChangeListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Spot spot) {
+        publisher.publishEvent(new SpotChangedEvent(spot.getId()));
+    }
+}
@@ -0,0 +1,7 @@
+package com.surfmaster.entities;
+
+/**
+ * Published after a {@link Spot} is inserted, updated or removed so in-memory
+ * caches built from the spot catalog can be invalidated.
+ */
+public record SpotChangedEvent(Long spotId) {}
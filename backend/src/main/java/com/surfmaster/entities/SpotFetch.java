@@ -0,0 +1,21 @@
+package com.surfmaster.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Last successful provider fetch of a spot, written in the same transaction as its
+ * forecasts, so it is the database's record of which syncs have landed.
+ */
+@Entity
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class SpotFetch {
+
+    @Id
+    private Long spotId;
+
+    private OffsetDateTime fetchedAt;
+}
@@ -0,0 +1,122 @@
+package com.surfmaster.forecast.grid;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.surfmaster.entities.Spot;
+
+/**
+ * Groups spots into the cells of a provider's forecast grid.
+ * <p>
+ * A provider with a grid of {@code r} degrees answers the same forecast for every point in a
+ * {@code r x r} cell, so one call per cell is enough: the cell is fetched at its centre
+ * ({@link #fetchPoint}) and the result fans out to the members, whatever their order.
+ * Spots without coordinates, or a resolution of 0, give one cell per spot.
+ */
+public final class ProviderGrid {
+
+    private ProviderGrid() {
+    }
+
+    /**
+     * Spots sharing one provider call. The first member represents the cell when cells are
+     * ordered; the call itself is made at the cell's {@link ProviderGrid#fetchPoint centre}.
+     */
+    public record Cell(List<Spot> spots) {
+
+        public Cell {
+            if (spots.isEmpty()) {
+                throw new IllegalArgumentException("A grid cell needs at least one spot");
+            }
+            spots = List.copyOf(spots);
+        }
+
+        public Spot representative() {
+            return spots.get(0);
+        }
+    }
+
+    /**
+     * Cells in order of their first spot; members keep the input order.
+     */
+    public static List<Cell> group(List<Spot> spots, double resolutionDegrees) {
+        Map<Long, List<Spot>> cells = new LinkedHashMap<>();
+        List<List<Spot>> grouped = new ArrayList<>();
+        for (Spot spot : spots) {
+            Long key = cellKey(spot, resolutionDegrees);
+            if (key == null) {
+                grouped.add(List.of(spot));
+            } else {
+                cells.computeIfAbsent(key, k -> {
+                    List<Spot> members = new ArrayList<>();
+                    grouped.add(members);
+                    return members;
+                }).add(spot);
+            }
+        }
+        return grouped.stream().map(Cell::new).toList();
+    }
+
+    /**
+     * The selected spots plus every spot of {@code all} that shares a cell with one of them,
+     * in the order of {@code all}. Lets a refresh of one spot also refresh its cell mates,
+     * which costs no extra provider call.
+     */
+    public static List<Spot> withCellMates(List<Spot> selected, List<Spot> all, double resolutionDegrees) {
+        if (resolutionDegrees <= 0 || selected.isEmpty()) {
+            return selected;
+        }
+        Set<Long> keys = new HashSet<>();
+        for (Spot spot : selected) {
+            Long key = cellKey(spot, resolutionDegrees);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        List<Spot> expanded = new ArrayList<>();
+        for (Spot spot : all) {
+            Long key = cellKey(spot, resolutionDegrees);
+            if (key != null ? keys.contains(key) : selected.contains(spot)) {
+                expanded.add(spot);
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * The point a cell is fetched at: a copy of {@code spot} (same id and name, for logs) moved
+     * to the centre of its cell, so every member gets the same data no matter which of them
+     * leads the call. Returns {@code spot} itself when it is not on the grid.
+     */
+    public static Spot fetchPoint(Spot spot, double resolutionDegrees) {
+        if (cellKey(spot, resolutionDegrees) == null) {
+            return spot;
+        }
+        return Spot.builder()
+                .id(spot.getId())
+                .name(spot.getName())
+                .latitude(center(spot.getLatitude(), resolutionDegrees))
+                .longitude(center(spot.getLongitude(), resolutionDegrees))
+                .build();
+    }
+
+    // arredonda para nao mandar 38.95000000000001 ao provider
+    private static double center(double coordinate, double resolutionDegrees) {
+        double center = (Math.floor(coordinate / resolutionDegrees) + 0.5) * resolutionDegrees;
+        return Math.round(center * 1e6) / 1e6;
+    }
+
+    // null quando o spot nao entra na grade (sem resolucao ou sem coordenadas)
+    static Long cellKey(Spot spot, double resolutionDegrees) {
+        if (resolutionDegrees <= 0 || spot.getLatitude() == null || spot.getLongitude() == null) {
+            return null;
+        }
+        long lat = (long) Math.floor(spot.getLatitude() / resolutionDegrees);
+        long lon = (long) Math.floor(spot.getLongitude() / resolutionDegrees);
+        return (lat << 32) ^ (lon & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,265 @@
+package com.surfmaster.forecast.providers;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.ForecastSource;
+import com.surfmaster.entities.Spot;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Queries several providers in parallel and merges their answers hour by hour.
+ * <p>
+ * Every provider runs under its own timeout; one that is slow or fails is logged and left
+ * out, so the result degrades to the sources that answered. The fetch only fails when no
+ * provider answers. Hours are merged by {@link ForecastProperties.MergeStrategy}: PRECEDENCE
+ * takes each field from the first provider (configuration order) that has it, WEIGHTED
+ * averages the fields using the configured per-provider weights.
+ */
+@Slf4j
+public class AggregatingForecastProvider implements ForecastProvider {
+
+    private final List<ForecastProvider> providers;
+    private final ForecastProperties.Aggregation config;
+
+    public AggregatingForecastProvider(List<ForecastProvider> providers, ForecastProperties.Aggregation config) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("At least one forecast provider is required");
+        }
+        this.providers = List.copyOf(providers);
+        this.config = config;
+    }
+
+    // fonte principal: a de maior precedencia
+    @Override
+    public ForecastSource getSource() {
+        return providers.get(0).getSource();
+    }
+
+    @Override
+    public boolean supports(Spot spot) {
+        return providers.stream().anyMatch(provider -> provider.supports(spot));
+    }
+
+    // a celula precisa servir a todos: vale a grade mais fina (0 se algum for pontual)
+    @Override
+    public double gridResolutionDegrees() {
+        return providers.stream().mapToDouble(ForecastProvider::gridResolutionDegrees).min().orElse(0);
+    }
+
+    @Override
+    public List<Forecast> fetch(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+        return fetchAsync(spot, from, to).block();
+    }
+
+    @Override
+    public Mono<List<Forecast>> fetchAsync(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+        List<ForecastProvider> eligible = providers.stream().filter(provider -> provider.supports(spot)).toList();
+        if (eligible.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        Duration timeout = Duration.ofSeconds(config.getTimeoutSeconds());
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        return Flux.range(0, eligible.size())
+                .flatMap(i -> {
+                    ForecastProvider provider = eligible.get(i);
+                    return Mono.defer(() -> provider.fetchAsync(spot, from, to))
+                            .timeout(timeout)
+                            .map(forecasts -> new Contribution(i, provider.getSource(), weightOf(provider.getSource()), forecasts))
+                            .onErrorResume(e -> {
+                                log.warn("Forecast provider {} left out for spot {}: {}", provider.getSource(), spot.getId(), e.toString());
+                                failures.add(e);
+                                return Mono.empty();
+                            });
+                }, eligible.size())
+                .collectList()
+                .flatMap(contributions -> {
+                    if (contributions.isEmpty() && !failures.isEmpty()) {
+                        return Mono.error(failures.get(0));
+                    }
+                    List<Contribution> ordered = new ArrayList<>(contributions);
+                    ordered.sort((a, b) -> Integer.compare(a.order(), b.order()));
+                    return Mono.just(merge(spot, ordered, config.getMerge()));
+                });
+    }
+
+    double weightOf(ForecastSource source) {
+        for (Map.Entry<String, Double> entry : config.getWeights().entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(source.name()) && entry.getValue() != null) {
+                return entry.getValue();
+            }
+        }
+        return 1.0;
+    }
+
+    record Contribution(int order, ForecastSource source, double weight, List<Forecast> forecasts) {}
+
+    private record Sample(Forecast forecast, ForecastSource source, double weight) {}
+
+    static List<Forecast> merge(Spot spot, List<Contribution> contributions, ForecastProperties.MergeStrategy strategy) {
+        Map<Long, List<Sample>> byHour = new TreeMap<>();
+        for (Contribution contribution : contributions) {
+            for (Forecast forecast : contribution.forecasts()) {
+                if (forecast.getTimestamp() == null) {
+                    continue;
+                }
+                byHour.computeIfAbsent(forecast.getTimestamp().toEpochSecond(), k -> new ArrayList<>())
+                        .add(new Sample(forecast, contribution.source(), contribution.weight()));
+            }
+        }
+
+        List<Forecast> merged = new ArrayList<>(byHour.size());
+        for (List<Sample> samples : byHour.values()) {
+            merged.add(strategy == ForecastProperties.MergeStrategy.WEIGHTED
+                    ? weighted(spot, samples)
+                    : byPrecedence(spot, samples));
+        }
+        return merged;
+    }
+
+    private static Forecast byPrecedence(Spot spot, List<Sample> samples) {
+        Forecast first = samples.get(0).forecast();
+        return Forecast.builder()
+                .spot(spot)
+                .timestamp(first.getTimestamp())
+                .swellHeight(firstPresent(samples, Forecast::getSwellHeight))
+                .swellPeriod(firstNonZero(samples, Forecast::getSwellPeriod))
+                .swellDirection(firstPresent(samples, Forecast::getSwellDirection))
+                .swellDirectionDegrees(firstPresent(samples, Forecast::getSwellDirectionDegrees))
+                .windSpeed(firstPresent(samples, Forecast::getWindSpeed))
+                .windDirection(firstPresent(samples, Forecast::getWindDirection))
+                .windDirectionDegrees(firstPresent(samples, Forecast::getWindDirectionDegrees))
+                .tideHeight(firstPresent(samples, Forecast::getTideHeight))
+                .waterTemperature(firstNonZero(samples, Forecast::getWaterTemperature))
+                .dataSource(samples.get(0).source())
+                .build();
+    }
+
+    private static Forecast weighted(Spot spot, List<Sample> samples) {
+        Double swellDegrees = circularMean(samples, Forecast::getSwellDirectionDegrees);
+        Double windDegrees = circularMean(samples, Forecast::getWindDirectionDegrees);
+        return Forecast.builder()
+                .spot(spot)
+                .timestamp(samples.get(0).forecast().getTimestamp())
+                .swellHeight(mean(samples, Forecast::getSwellHeight))
+                .swellPeriod(roundedMean(samples, Forecast::getSwellPeriod))
+                .swellDirection(swellDegrees != null ? Direction.fromDegrees(swellDegrees) : vote(samples, Forecast::getSwellDirection))
+                .swellDirectionDegrees(swellDegrees)
+                .windSpeed(mean(samples, Forecast::getWindSpeed))
+                .windDirection(windDegrees != null ? Direction.fromDegrees(windDegrees) : vote(samples, Forecast::getWindDirection))
+                .windDirectionDegrees(windDegrees)
+                .tideHeight(mean(samples, Forecast::getTideHeight))
+                .waterTemperature(roundedMean(samples, Forecast::getWaterTemperature))
+                .dataSource(heaviest(samples).source())
+                .build();
+    }
+
+    private static <T> T firstPresent(List<Sample> samples, Function<Forecast, T> field) {
+        for (Sample sample : samples) {
+            T value = field.apply(sample.forecast());
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    // periodo e temperatura usam 0 como "sem valor"
+    private static int firstNonZero(List<Sample> samples, ToIntFunction<Forecast> field) {
+        for (Sample sample : samples) {
+            int value = field.applyAsInt(sample.forecast());
+            if (value != 0) {
+                return value;
+            }
+        }
+        return 0;
+    }
+
+    private static Double mean(List<Sample> samples, Function<Forecast, Double> field) {
+        double sum = 0;
+        double weights = 0;
+        for (Sample sample : samples) {
+            Double value = field.apply(sample.forecast());
+            if (value != null && sample.weight() > 0) {
+                sum += value * sample.weight();
+                weights += sample.weight();
+            }
+        }
+        return weights > 0 ? sum / weights : firstPresent(samples, field);
+    }
+
+    private static int roundedMean(List<Sample> samples, ToIntFunction<Forecast> field) {
+        Double mean = mean(samples, f -> {
+            int value = field.applyAsInt(f);
+            return value != 0 ? (double) value : null;
+        });
+        return mean != null ? (int) Math.round(mean) : 0;
+    }
+
+    // media de angulos pelo vetor resultante (350 e 10 dao 0, nao 180)
+    private static Double circularMean(List<Sample> samples, Function<Forecast, Double> field) {
+        double x = 0;
+        double y = 0;
+        boolean any = false;
+        for (Sample sample : samples) {
+            Double degrees = field.apply(sample.forecast());
+            if (degrees != null && sample.weight() > 0) {
+                double radians = Math.toRadians(degrees);
+                x += Math.cos(radians) * sample.weight();
+                y += Math.sin(radians) * sample.weight();
+                any = true;
+            }
+        }
+        if (!any) {
+            return firstPresent(samples, field);
+        }
+        if (Math.hypot(x, y) < 1e-9) {
+            // direcoes opostas se anulam: fica a de maior precedencia
+            return firstPresent(samples, field);
+        }
+        double mean = Math.toDegrees(Math.atan2(y, x));
+        return mean < 0 ? mean + 360 : mean;
+    }
+
+    private static Direction vote(List<Sample> samples, Function<Forecast, Direction> field) {
+        Map<Direction, Double> totals = new TreeMap<>();
+        Direction best = null;
+        double bestWeight = -1;
+        for (Sample sample : samples) {
+            Direction direction = field.apply(sample.forecast());
+            if (direction == null) {
+                continue;
+            }
+            double total = totals.merge(direction, Math.max(0, sample.weight()), Double::sum);
+            if (total > bestWeight) {
+                best = direction;
+                bestWeight = total;
+            }
+        }
+        return best;
+    }
+
+    private static Sample heaviest(List<Sample> samples) {
+        Sample best = samples.get(0);
+        for (Sample sample : samples) {
+            if (sample.weight() > best.weight()) {
+                best = sample;
+            }
+        }
+        return best;
+    }
+}
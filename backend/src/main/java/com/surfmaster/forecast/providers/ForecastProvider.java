@@ -7,9 +7,29 @@ import com.surfmaster.entities.Forecast;
 import com.surfmaster.entities.ForecastSource;
 import com.surfmaster.entities.Spot;
 
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 public interface ForecastProvider {
     ForecastSource getSource();
     boolean supports(Spot spot);
 
+    /**
+     * Size in degrees of the provider's forecast grid: spots in the same cell get the same
+     * forecast, so the sync fetches each cell once. 0 means point forecasts (no coalescing).
+     */
+    default double gridResolutionDegrees() {
+        return 0;
+    }
+
     List<Forecast> fetch(Spot spot, OffsetDateTime from, OffsetDateTime to);
+
+    /**
+     * Non-blocking variant used by the concurrent sync. Providers with a reactive client
+     * should override it; the default just moves the blocking call off the caller thread.
+     */
+    default Mono<List<Forecast>> fetchAsync(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+        return Mono.fromCallable(() -> fetch(spot, from, to))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
 }
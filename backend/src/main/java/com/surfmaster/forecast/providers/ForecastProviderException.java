@@ -0,0 +1,30 @@
+package com.surfmaster.forecast.providers;
+
+/**
+ * Failure of an upstream forecast provider. {@link #isRetryable()} says whether trying the
+ * same request again can help (throttling, 5xx) or not (bad key, bad request, open circuit).
+ */
+public class ForecastProviderException extends IllegalStateException {
+
+    private final int status;
+    private final boolean retryable;
+
+    public ForecastProviderException(String message, int status) {
+        this(message, status, status == 429 || status >= 500);
+    }
+
+    public ForecastProviderException(String message, int status, boolean retryable) {
+        super(message);
+        this.status = status;
+        this.retryable = retryable;
+    }
+
+    /** HTTP status of the upstream response, or -1 when there was none. */
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
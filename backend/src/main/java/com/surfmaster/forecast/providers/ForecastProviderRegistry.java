@@ -1,16 +1,25 @@
 package com.surfmaster.forecast.providers;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.time.OffsetDateTime;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.stereotype.Component;
 
 import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.entities.Forecast;
 import com.surfmaster.entities.ForecastSource;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.providers.resilience.ResilientForecastProvider;
+import com.surfmaster.forecast.quota.ProviderQuotaScheduler;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
 
 @Component
 @RequiredArgsConstructor
@@ -19,27 +28,102 @@ public class ForecastProviderRegistry {
 
     private final List<ForecastProvider> providers;
     private final ForecastProperties forecastProperties;
+    private final ProviderQuotaScheduler quotaScheduler;
 
+    // um decorador por provider: o estado do circuito e das latencias precisa sobreviver entre syncs
+    private final Map<ForecastSource, ForecastProvider> resilientProviders = new ConcurrentHashMap<>();
+
+    /**
+     * The provider used for syncs: the configured one, or an {@link AggregatingForecastProvider}
+     * over all of them when several are configured.
+     */
     public Optional<ForecastProvider> getConfiguredProvider() {
-        ForecastSource desiredSource = resolveConfiguredSource();
-        if (desiredSource == null) {
+        List<ForecastProvider> configured = getConfiguredProviders();
+        if (configured.isEmpty()) {
             return Optional.empty();
         }
-        return providers.stream()
-                .filter(provider -> provider.getSource() == desiredSource)
-                .findFirst();
+        if (configured.size() == 1) {
+            return Optional.of(configured.get(0));
+        }
+        return Optional.of(new AggregatingForecastProvider(configured, forecastProperties.getAggregation()));
+    }
+
+    /**
+     * Configured providers that exist, in configuration (precedence) order, each wrapped in
+     * a {@link ResilientForecastProvider} unless resilience is disabled. Either way every
+     * upstream request takes a permit from the {@link ProviderQuotaScheduler} for its own
+     * provider, so retries, hedges and aggregated calls all count against the quota.
+     */
+    public List<ForecastProvider> getConfiguredProviders() {
+        List<ForecastProvider> configured = new ArrayList<>();
+        for (ForecastSource source : resolveConfiguredSources()) {
+            providers.stream()
+                    .filter(provider -> provider.getSource() == source)
+                    .findFirst()
+                    .ifPresentOrElse(provider -> configured.add(withResilience(provider)),
+                            () -> log.debug("No forecast provider available for {}", source));
+        }
+        return configured;
+    }
+
+    private ForecastProvider withResilience(ForecastProvider provider) {
+        ForecastProperties.Resilience resilience = forecastProperties.getResilience();
+        if (!resilience.isEnabled()) {
+            return new Metered(provider, quotaScheduler);
+        }
+        return resilientProviders.computeIfAbsent(provider.getSource(),
+                source -> new ResilientForecastProvider(provider, resilience, () -> quotaScheduler.permit(source)));
+    }
+
+    // sem resiliencia cada fetch e uma requisicao: uma permissao por fetch
+    private record Metered(ForecastProvider delegate, ProviderQuotaScheduler quotaScheduler) implements ForecastProvider {
+
+        @Override
+        public ForecastSource getSource() {
+            return delegate.getSource();
+        }
+
+        @Override
+        public boolean supports(Spot spot) {
+            return delegate.supports(spot);
+        }
+
+        @Override
+        public double gridResolutionDegrees() {
+            return delegate.gridResolutionDegrees();
+        }
+
+        @Override
+        public List<Forecast> fetch(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+            return fetchAsync(spot, from, to).block();
+        }
+
+        @Override
+        public Mono<List<Forecast>> fetchAsync(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+            return quotaScheduler.permit(delegate.getSource())
+                    .then(Mono.defer(() -> delegate.fetchAsync(spot, from, to)));
+        }
     }
 
-    private ForecastSource resolveConfiguredSource() {
-        String providerName = forecastProperties.getProvider();
-        if (providerName == null || providerName.isBlank()) {
-            return null;
+    private List<ForecastSource> resolveConfiguredSources() {
+        String providerNames = forecastProperties.getProvider();
+        if (providerNames == null || providerNames.isBlank()) {
+            return List.of();
         }
-        try {
-            return ForecastSource.valueOf(providerName.trim().toUpperCase(Locale.ROOT));
-        } catch (IllegalArgumentException ex) {
-            log.warn("Unsupported forecast provider configured: {}", providerName);
-            return null;
+        List<ForecastSource> sources = new ArrayList<>();
+        for (String providerName : providerNames.split(",")) {
+            if (providerName.isBlank()) {
+                continue;
+            }
+            try {
+                ForecastSource source = ForecastSource.valueOf(providerName.trim().toUpperCase(Locale.ROOT));
+                if (!sources.contains(source)) {
+                    sources.add(source);
+                }
+            } catch (IllegalArgumentException ex) {
+                log.warn("Unsupported forecast provider configured: {}", providerName);
+            }
         }
+        return sources;
     }
 }
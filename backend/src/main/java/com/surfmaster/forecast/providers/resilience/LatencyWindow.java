@@ -0,0 +1,34 @@
+package com.surfmaster.forecast.providers.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the last successful calls, used to pick the hedging delay.
+ */
+final class LatencyWindow {
+
+    private final long[] millis;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity) {
+        this.millis = new long[Math.max(1, capacity)];
+    }
+
+    synchronized void record(long latencyMillis) {
+        millis[next] = latencyMillis;
+        next = (next + 1) % millis.length;
+        size = Math.min(size + 1, millis.length);
+    }
+
+    /** The {@code quantile} of the window, or -1 with fewer than {@code minSamples} samples. */
+    synchronized long percentile(double quantile, int minSamples) {
+        if (size == 0 || size < minSamples) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(millis, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+}
@@ -0,0 +1,177 @@
+package com.surfmaster.forecast.providers.resilience;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.ForecastSource;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.providers.ForecastProvider;
+import com.surfmaster.forecast.providers.ForecastProviderException;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+import reactor.util.retry.Retry;
+
+/**
+ * Decorates a {@link ForecastProvider} with a per-attempt timeout, a circuit breaker,
+ * jittered exponential retries for transient failures (429, 5xx, timeouts, I/O) and a
+ * hedged second request when the first one outlives the recent p95 latency.
+ * <p>
+ * An open circuit fails fast without calling upstream, so a provider that is down costs
+ * every spot one rejected call instead of a timeout. Hedging only starts once enough
+ * latencies were seen to estimate the p95.
+ * <p>
+ * Every upstream request, retries and hedges included, first takes a permit (the provider's
+ * daily quota and rate limit). A refused permit ends the fetch without a retry and does not
+ * count against the circuit.
+ */
+@Slf4j
+public class ResilientForecastProvider implements ForecastProvider {
+
+    private final ForecastProvider delegate;
+    private final ForecastProperties.Resilience config;
+    private final CircuitBreaker breaker;
+    private final LatencyWindow latencies;
+    private final Supplier<Mono<Void>> permit;
+    private final LongSupplier nanoClock;
+
+    public ResilientForecastProvider(ForecastProvider delegate, ForecastProperties.Resilience config) {
+        this(delegate, config, Mono::empty);
+    }
+
+    public ResilientForecastProvider(ForecastProvider delegate, ForecastProperties.Resilience config,
+                                     Supplier<Mono<Void>> permit) {
+        this(delegate, config, permit, System::nanoTime);
+    }
+
+    ResilientForecastProvider(ForecastProvider delegate, ForecastProperties.Resilience config,
+                              Supplier<Mono<Void>> permit, LongSupplier nanoClock) {
+        this.delegate = delegate;
+        this.config = config;
+        this.permit = permit;
+        this.nanoClock = nanoClock;
+        this.breaker = new CircuitBreaker(config.getBreakerWindow(), config.getBreakerMinimumCalls(),
+                config.getBreakerFailureRate(), Duration.ofSeconds(config.getBreakerOpenSeconds()), nanoClock);
+        this.latencies = new LatencyWindow(config.getLatencyWindow());
+    }
+
+    @Override
+    public ForecastSource getSource() {
+        return delegate.getSource();
+    }
+
+    @Override
+    public boolean supports(Spot spot) {
+        return delegate.supports(spot);
+    }
+
+    @Override
+    public double gridResolutionDegrees() {
+        return delegate.gridResolutionDegrees();
+    }
+
+    @Override
+    public List<Forecast> fetch(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+        return fetchAsync(spot, from, to).block();
+    }
+
+    @Override
+    public Mono<List<Forecast>> fetchAsync(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+        return Mono.defer(() -> hedged(spot, from, to))
+                .retryWhen(Retry.backoff(config.getMaxRetries(), Duration.ofMillis(config.getRetryBackoffMillis()))
+                        .maxBackoff(Duration.ofMillis(config.getRetryMaxBackoffMillis()))
+                        .jitter(Math.max(0.0, Math.min(1.0, config.getRetryJitter())))
+                        .filter(ResilientForecastProvider::isRetryable)
+                        .doBeforeRetry(signal -> log.debug("Retrying {} for spot {} after: {}",
+                                getSource(), spot.getId(), signal.failure().toString()))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    CircuitBreaker.State circuitState() {
+        return breaker.state();
+    }
+
+    /**
+     * One attempt. If it is still running after the hedge delay a second identical request
+     * goes out and the first value wins (the other is cancelled). An error before the hedge
+     * is sent ends the attempt right away; after it, only both failing does.
+     */
+    private Mono<List<Forecast>> hedged(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+        long delay = hedgeDelayMillis();
+        if (delay < 0) {
+            return call(spot, from, to);
+        }
+        AtomicBoolean hedgeSent = new AtomicBoolean();
+        AtomicInteger errors = new AtomicInteger();
+        Mono<Signal<List<Forecast>>> primary = call(spot, from, to).materialize();
+        Mono<Signal<List<Forecast>>> hedge = Mono.delay(Duration.ofMillis(delay))
+                .then(Mono.defer(() -> {
+                    hedgeSent.set(true);
+                    log.debug("Hedging {} request for spot {} after {} ms", getSource(), spot.getId(), delay);
+                    return call(spot, from, to).materialize();
+                }));
+        return Flux.merge(primary, hedge)
+                .filter(signal -> signal.isOnNext() || !hedgeSent.get() || errors.incrementAndGet() == 2)
+                .next()
+                .dematerialize();
+    }
+
+    // a permissao vem antes do circuito e do timeout: quota esgotada nao e falha do provider
+    private Mono<List<Forecast>> call(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+        return Mono.defer(permit).then(Mono.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                return Mono.error(new ForecastProviderException("Forecast provider " + getSource() + " circuit is open", -1, false));
+            }
+            long started = nanoClock.getAsLong();
+            return delegate.fetchAsync(spot, from, to)
+                    .defaultIfEmpty(List.of())
+                    .timeout(Duration.ofSeconds(config.getAttemptTimeoutSeconds()))
+                    .doOnSuccess(forecasts -> {
+                        breaker.onSuccess();
+                        latencies.record((nanoClock.getAsLong() - started) / 1_000_000L);
+                    })
+                    .doOnError(e -> {
+                        if (breaker.onFailure()) {
+                            log.warn("Circuit opened for forecast provider {} for {}s after: {}",
+                                    getSource(), config.getBreakerOpenSeconds(), e.toString());
+                        }
+                    })
+                    .doOnCancel(breaker::onCancel);
+        }));
+    }
+
+    private long hedgeDelayMillis() {
+        if (!config.isHedgeEnabled()) {
+            return -1;
+        }
+        long p95 = latencies.percentile(0.95, config.getHedgeMinSamples());
+        return p95 < 0 ? -1 : Math.max(config.getHedgeMinDelayMillis(), p95);
+    }
+
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof ForecastProviderException providerError) {
+            return providerError.isRetryable();
+        }
+        if (e instanceof WebClientResponseException responseError) {
+            int status = responseError.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return e instanceof TimeoutException
+                || e instanceof WebClientRequestException
+                || e instanceof IOException;
+    }
+}
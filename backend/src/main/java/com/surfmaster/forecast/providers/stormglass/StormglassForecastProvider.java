@@ -1,23 +1,33 @@
 package com.surfmaster.forecast.providers.stormglass;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.StreamReadFeature;
 import com.surfmaster.config.ForecastProperties;
 import com.surfmaster.entities.Direction;
 import com.surfmaster.entities.Forecast;
 import com.surfmaster.entities.ForecastSource;
 import com.surfmaster.entities.Spot;
 import com.surfmaster.forecast.providers.ForecastProvider;
+import com.surfmaster.forecast.providers.ForecastProviderException;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,7 +37,10 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class StormglassForecastProvider implements ForecastProvider {
 
-    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+            .build();
 
     private final ForecastProperties forecastProperties;
     private final WebClient client;
@@ -49,25 +62,37 @@ public class StormglassForecastProvider implements ForecastProvider {
         return spot != null && spot.getLatitude() != null && spot.getLongitude() != null;
     }
 
+    @Override
+    public double gridResolutionDegrees() {
+        return Math.max(0, forecastProperties.getStormglass().getGridResolutionDegrees());
+    }
+
     @Override
     public List<Forecast> fetch(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+        return fetchAsync(spot, from, to).block(REQUEST_TIMEOUT);
+    }
+
+    @Override
+    public Mono<List<Forecast>> fetchAsync(Spot spot, OffsetDateTime from, OffsetDateTime to) {
         if (!supports(spot)) {
-            return List.of();
+            return Mono.just(List.of());
         }
 
         OffsetDateTime effectiveFrom = from != null ? from : OffsetDateTime.now();
         OffsetDateTime effectiveTo = normalizeEnd(effectiveFrom, to);
 
-        StormglassResponse response = requestForecast(spot, effectiveFrom, effectiveTo);
-        if (response == null || response.hours() == null) {
-            return List.of();
-        }
+        return requestForecast(spot, effectiveFrom, effectiveTo)
+                .map(response -> toForecasts(spot, response))
+                .defaultIfEmpty(List.of());
+    }
 
-        return response.hours().stream()
-                .map(hour -> toForecast(spot, hour))
-                .filter(Objects::nonNull)
-                .sorted(Comparator.comparing(Forecast::getTimestamp))
-                .toList();
+    private List<Forecast> toForecasts(Spot spot, StormglassResponseParser.Hours hours) {
+        List<Forecast> forecasts = new ArrayList<>(hours.size());
+        for (int i = 0; i < hours.size(); i++) {
+            forecasts.add(toForecast(spot, hours, i));
+        }
+        forecasts.sort(Comparator.comparing(Forecast::getTimestamp));
+        return forecasts;
     }
 
     private OffsetDateTime normalizeEnd(OffsetDateTime from, OffsetDateTime requestedEnd) {
@@ -80,11 +105,11 @@ public class StormglassForecastProvider implements ForecastProvider {
         return requestedEnd;
     }
 
-    private StormglassResponse requestForecast(Spot spot, OffsetDateTime from, OffsetDateTime to) {
+    private Mono<StormglassResponseParser.Hours> requestForecast(Spot spot, OffsetDateTime from, OffsetDateTime to) {
         ForecastProperties.Stormglass config = forecastProperties.getStormglass();
         String apiKey = config.getApiKey();
         if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("Stormglass API key is not configured (surf.forecast.stormglass.api-key)");
+            return Mono.error(new IllegalStateException("Stormglass API key is not configured (surf.forecast.stormglass.api-key)"));
         }
 
         String params = String.join(",", config.getParams());
@@ -108,63 +133,47 @@ public class StormglassForecastProvider implements ForecastProvider {
                         .defaultIfEmpty("")
                         .flatMap(body -> {
                             log.warn("Stormglass API error {} for spot {}: {}", response.statusCode(), spot.getName(), body);
-                            return Mono.error(new IllegalStateException("Stormglass API error: " + response.statusCode()));
+                            return Mono.error(new ForecastProviderException("Stormglass API error: " + response.statusCode(), response.statusCode().value()));
                         }))
-                .bodyToMono(StormglassResponse.class)
-                .block(Duration.ofSeconds(30));
+                .bodyToFlux(DataBuffer.class)
+                .as(DataBufferUtils::join)
+                .map(this::parse)
+                .timeout(REQUEST_TIMEOUT);
     }
 
-    private Forecast toForecast(Spot spot, StormglassResponse.Hour hour) {
-        OffsetDateTime timestamp = hour.time();
-        if (timestamp == null) {
-            return null;
+    // le o corpo em streaming direto para colunas primitivas, sem mapas por hora
+    private StormglassResponseParser.Hours parse(DataBuffer body) {
+        try (InputStream in = body.asInputStream(true);
+             JsonParser parser = JSON_FACTORY.createParser(in)) {
+            return StormglassResponseParser.parse(parser, forecastProperties.getStormglass().getSource());
+        } catch (IOException | DateTimeException e) {
+            throw new ForecastProviderException("Invalid Stormglass response: " + e.getMessage(), -1, false);
         }
+    }
 
-        Double swellHeight = resolveValue(hour.swellHeight());
-        Double swellPeriod = resolveValue(hour.swellPeriod());
-        Double swellDirection = resolveValue(hour.swellDirection());
-        Double windSpeed = resolveValue(hour.windSpeed());
-        Double windDirection = resolveValue(hour.windDirection());
-        Double tideHeight = resolveValue(hour.tideHeight());
-        Double waterTemperature = resolveValue(hour.waterTemperature());
+    private Forecast toForecast(Spot spot, StormglassResponseParser.Hours hours, int i) {
+        Double swellDirection = boxed(hours.value(i, StormglassResponseParser.SWELL_DIRECTION));
+        Double windDirection = boxed(hours.value(i, StormglassResponseParser.WIND_DIRECTION));
+        double swellPeriod = hours.value(i, StormglassResponseParser.SWELL_PERIOD);
+        double waterTemperature = hours.value(i, StormglassResponseParser.WATER_TEMPERATURE);
 
         return Forecast.builder()
                 .spot(spot)
-                .timestamp(timestamp)
-                .swellHeight(swellHeight)
-                .swellPeriod(swellPeriod != null ? swellPeriod.intValue() : 0)
-                .swellDirection(toDirection(swellDirection))
-                .windSpeed(windSpeed)
-                .windDirection(toDirection(windDirection))
-                .tideHeight(tideHeight)
-                .waterTemperature(waterTemperature != null ? (int) Math.round(waterTemperature) : 0)
+                .timestamp(OffsetDateTime.ofInstant(Instant.ofEpochSecond(hours.epochSecond(i)), ZoneOffset.UTC))
+                .swellHeight(boxed(hours.value(i, StormglassResponseParser.SWELL_HEIGHT)))
+                .swellPeriod(Double.isNaN(swellPeriod) ? 0 : (int) swellPeriod)
+                .swellDirection(Direction.fromDegrees(swellDirection))
+                .swellDirectionDegrees(swellDirection)
+                .windSpeed(boxed(hours.value(i, StormglassResponseParser.WIND_SPEED)))
+                .windDirection(Direction.fromDegrees(windDirection))
+                .windDirectionDegrees(windDirection)
+                .tideHeight(boxed(hours.value(i, StormglassResponseParser.TIDE_HEIGHT)))
+                .waterTemperature(Double.isNaN(waterTemperature) ? 0 : (int) Math.round(waterTemperature))
                 .dataSource(ForecastSource.STORMGLASS)
                 .build();
     }
 
-    private Direction toDirection(Double degrees) {
-        if (degrees == null || DIRECTIONS.length == 0) {
-            return null;
-        }
-        double normalized = (degrees % 360 + 360) % 360;
-        int index = (int) Math.round(normalized / 45.0) % DIRECTIONS.length;
-        return DIRECTIONS[index];
-    }
-
-    private Double resolveValue(Map<String, Double> values) {
-        if (values == null || values.isEmpty()) {
-            return null;
-        }
-        String preferredSource = forecastProperties.getStormglass().getSource();
-        if (preferredSource != null) {
-            Double v = values.get(preferredSource);
-            if (v != null) {
-                return v;
-            }
-        }
-        return values.values().stream()
-                .filter(Objects::nonNull)
-                .findFirst()
-                .orElse(null);
+    private static Double boxed(double value) {
+        return Double.isNaN(value) ? null : value;
     }
 }
@@ -0,0 +1,156 @@
+package com.surfmaster.forecast.providers.stormglass;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Streaming reader for Stormglass point responses ({@code {"hours":[{"time":..., "swellHeight":
+ * {"noaa":1.2,"sg":1.3}, ...}], "meta":{...}}}).
+ * <p>
+ * Walks the tokens once and keeps, per hour and param, only the value of the preferred source
+ * (or the first non-null one, as before) in flat primitive columns: no per-hour maps, boxed
+ * doubles or intermediate records. Missing values are NaN.
+ */
+public final class StormglassResponseParser {
+
+    public static final int SWELL_HEIGHT = 0;
+    public static final int SWELL_DIRECTION = 1;
+    public static final int SWELL_PERIOD = 2;
+    public static final int WIND_SPEED = 3;
+    public static final int WIND_DIRECTION = 4;
+    public static final int TIDE_HEIGHT = 5;
+    public static final int WATER_TEMPERATURE = 6;
+    static final int PARAMS = 7;
+
+    private StormglassResponseParser() {
+    }
+
+    public static Hours parse(JsonParser parser, String preferredSource) throws IOException {
+        Hours hours = new Hours();
+        JsonToken root = parser.nextToken();
+        if (root == null) {
+            return hours;
+        }
+        if (root != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object but got " + root);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("hours".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readHour(parser, preferredSource, hours);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return hours;
+    }
+
+    private static void readHour(JsonParser parser, String preferredSource, Hours hours) throws IOException {
+        int row = hours.beginRow();
+        boolean hasTime = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("time".equals(field)) {
+                if (token == JsonToken.VALUE_STRING) {
+                    hours.epochSeconds[row] = OffsetDateTime.parse(parser.getText()).toEpochSecond();
+                    hasTime = true;
+                }
+                continue;
+            }
+            int param = paramIndex(field);
+            if (param < 0) {
+                parser.skipChildren();
+            } else {
+                hours.values[row * PARAMS + param] = readValue(parser, token, preferredSource);
+            }
+        }
+        // hora sem timestamp e descartada
+        if (hasTime) {
+            hours.size++;
+        }
+    }
+
+    // fonte preferida se tiver valor, senao o primeiro valor nao nulo
+    private static double readValue(JsonParser parser, JsonToken token, String preferredSource) throws IOException {
+        if (token.isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return Double.NaN;
+        }
+        double preferred = Double.NaN;
+        double first = Double.NaN;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String source = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!value.isNumeric()) {
+                parser.skipChildren();
+                continue;
+            }
+            // so converte o texto do numero quando ele pode ser usado
+            boolean isPreferred = source.equals(preferredSource);
+            if (isPreferred || Double.isNaN(first)) {
+                double v = parser.getDoubleValue();
+                if (Double.isNaN(first)) {
+                    first = v;
+                }
+                if (isPreferred) {
+                    preferred = v;
+                }
+            }
+        }
+        return Double.isNaN(preferred) ? first : preferred;
+    }
+
+    private static int paramIndex(String field) {
+        return switch (field) {
+            case "swellHeight" -> SWELL_HEIGHT;
+            case "swellDirection" -> SWELL_DIRECTION;
+            case "swellPeriod" -> SWELL_PERIOD;
+            case "windSpeed" -> WIND_SPEED;
+            case "windDirection" -> WIND_DIRECTION;
+            case "tideHeight" -> TIDE_HEIGHT;
+            case "waterTemperature" -> WATER_TEMPERATURE;
+            default -> -1;
+        };
+    }
+
+    /** Parsed hours in document order: epoch seconds plus one NaN-for-missing column per param. */
+    public static final class Hours {
+
+        private long[] epochSeconds = new long[32];
+        private double[] values = new double[32 * PARAMS];
+        private int size;
+
+        public int size() {
+            return size;
+        }
+
+        public long epochSecond(int hour) {
+            return epochSeconds[hour];
+        }
+
+        public double value(int hour, int param) {
+            return values[hour * PARAMS + param];
+        }
+
+        // linha de trabalho em size; so entra no resultado se tiver timestamp
+        private int beginRow() {
+            if (size == epochSeconds.length) {
+                epochSeconds = Arrays.copyOf(epochSeconds, size * 2);
+                values = Arrays.copyOf(values, size * 2 * PARAMS);
+            }
+            Arrays.fill(values, size * PARAMS, (size + 1) * PARAMS, Double.NaN);
+            return size;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.surfmaster.forecast.quota;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@code /actuator/forecastquota}: provider budget, pacing and the most demanded spots.
+ */
+@Component
+@Endpoint(id = "forecastquota")
+@RequiredArgsConstructor
+public class ForecastQuotaEndpoint {
+
+    private final ProviderQuotaScheduler quotaScheduler;
+
+    @ReadOperation
+    public Map<String, Object> quota() {
+        return quotaScheduler.state();
+    }
+}
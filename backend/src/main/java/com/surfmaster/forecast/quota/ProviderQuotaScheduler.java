@@ -0,0 +1,218 @@
+package com.surfmaster.forecast.quota;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.entities.ForecastSource;
+import com.surfmaster.entities.ProviderUsage;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.grid.ProviderGrid;
+import com.surfmaster.forecast.store.ForecastStore;
+import com.surfmaster.repository.ProviderUsageRepository;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Spends the provider's daily request budget where it avoids the most stale reads.
+ * <p>
+ * Due spots are ranked by {@code demand x staleness} (decayed recent reads times hours since
+ * the last fetch) and cut to what is left of today's quota. Each upstream request, retries
+ * and hedges included, then takes a permit that counts against the quota and is paced by a
+ * token bucket (see {@code ForecastProviderRegistry}). Usage is counted per
+ * provider and UTC day in the database ({@link ProviderUsage}), so restarts and other
+ * instances see the same budget.
+ */
+@Component
+public class ProviderQuotaScheduler {
+
+    // spot nunca buscado conta como tao velho quanto isso
+    static final double MAX_STALENESS_HOURS = 48.0;
+    // spots sem leitura ainda sao ordenados pela idade
+    private static final double BASE_DEMAND = 0.01;
+
+    private final ForecastProperties forecastProperties;
+    private final SpotDemandTracker demandTracker;
+    private final ForecastStore forecastStore;
+    private final ProviderUsageRepository usageRepository;
+    private final Clock clock;
+    private final TokenBucket tokenBucket;
+
+    // so observabilidade: fica em memoria
+    private LocalDate skippedDay;
+    private int skippedToday;
+
+    @Autowired
+    public ProviderQuotaScheduler(ForecastProperties forecastProperties, SpotDemandTracker demandTracker,
+                                  ForecastStore forecastStore, ProviderUsageRepository usageRepository, Clock clock) {
+        this(forecastProperties, demandTracker, forecastStore, usageRepository, clock, System::nanoTime);
+    }
+
+    ProviderQuotaScheduler(ForecastProperties forecastProperties, SpotDemandTracker demandTracker,
+                           ForecastStore forecastStore, ProviderUsageRepository usageRepository,
+                           Clock clock, LongSupplier nanoClock) {
+        this.forecastProperties = forecastProperties;
+        this.demandTracker = demandTracker;
+        this.forecastStore = forecastStore;
+        this.usageRepository = usageRepository;
+        this.clock = clock;
+        ForecastProperties.Quota quota = forecastProperties.getQuota();
+        this.tokenBucket = new TokenBucket(quota.getBurst(), quota.getRequestsPerSecond(), nanoClock);
+    }
+
+    /**
+     * Orders the due spots by priority and keeps only as many as the provider's quota for
+     * today allows.
+     */
+    public List<Spot> prioritize(List<Spot> due, ForecastSource provider) {
+        return prioritizeCells(ProviderGrid.group(due, 0), provider).stream()
+                .map(ProviderGrid.Cell::representative)
+                .toList();
+    }
+
+    /**
+     * Same for grid cells, one provider call each. A cell ranks by the summed priority of its
+     * spots, and its most urgent spot becomes its representative.
+     */
+    public List<ProviderGrid.Cell> prioritizeCells(List<ProviderGrid.Cell> due, ForecastSource provider) {
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        Map<Spot, Double> priorities = new IdentityHashMap<>();
+        for (ProviderGrid.Cell cell : due) {
+            cell.spots().forEach(spot -> priorities.put(spot, priority(spot, now)));
+        }
+        Comparator<Spot> byPriority = Comparator.comparingDouble((Spot spot) -> priorities.get(spot)).reversed()
+                .thenComparing(Spot::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+        List<ProviderGrid.Cell> ordered = due.stream()
+                .map(cell -> new ProviderGrid.Cell(cell.spots().stream().sorted(byPriority).toList()))
+                .sorted(Comparator.comparingDouble((ProviderGrid.Cell cell) -> cell.spots().stream()
+                                .mapToDouble(priorities::get).sum()).reversed()
+                        .thenComparing(ProviderGrid.Cell::representative, byPriority))
+                .toList();
+
+        int remaining = remainingToday(provider);
+        if (remaining >= ordered.size()) {
+            return ordered;
+        }
+        synchronized (this) {
+            rollSkippedDay();
+            skippedToday += ordered.size() - remaining;
+        }
+        return ordered.subList(0, remaining);
+    }
+
+    public double priority(Spot spot, OffsetDateTime now) {
+        OffsetDateTime lastFetch = forecastStore.lastFetch(spot.getId());
+        double stalenessHours = lastFetch == null
+                ? MAX_STALENESS_HOURS
+                : Math.min(MAX_STALENESS_HOURS, Math.max(0, Duration.between(lastFetch, now).toMinutes() / 60.0));
+        return (BASE_DEMAND + demandTracker.demand(spot.getId())) * stalenessHours;
+    }
+
+    /**
+     * Permit for one call to {@code provider}: fails when its quota for today is spent,
+     * otherwise completes once the token bucket allows the call.
+     */
+    public Mono<Void> permit(ForecastSource provider) {
+        // contagem no banco bloqueia: fora das threads do cliente HTTP
+        return Mono.fromCallable(() -> tryConsume(provider))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(granted -> {
+                    if (!granted) {
+                        return Mono.error(new IllegalStateException("Daily forecast provider quota exhausted for " + provider));
+                    }
+                    long waitNanos = tokenBucket.reserve();
+                    return waitNanos == 0 ? Mono.<Void>empty() : Mono.delay(Duration.ofNanos(waitNanos)).then();
+                });
+    }
+
+    /** Calls to the provider left today, or {@link Integer#MAX_VALUE} when there is no daily limit. */
+    public int remainingToday(ForecastSource provider) {
+        int limit = forecastProperties.getQuota().getDailyLimit();
+        if (limit <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        int used = usageRepository.findById(new ProviderUsage.Key(provider.name(), today()))
+                .map(ProviderUsage::getUsed)
+                .orElse(0);
+        return Math.max(0, limit - used);
+    }
+
+    public Map<String, Object> state() {
+        LocalDate today = today();
+        int limit = forecastProperties.getQuota().getDailyLimit();
+        Map<String, Integer> used = new LinkedHashMap<>();
+        Map<String, Integer> remaining = new LinkedHashMap<>();
+        usageRepository.findByQuotaDay(today).forEach(usage -> {
+            used.put(usage.getProvider(), usage.getUsed());
+            remaining.put(usage.getProvider(), Math.max(0, limit - usage.getUsed()));
+        });
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("dailyLimit", limit);
+        state.put("usedToday", used);
+        state.put("remainingToday", limit <= 0 ? null : remaining);
+        synchronized (this) {
+            rollSkippedDay();
+            state.put("skippedToday", skippedToday);
+        }
+        state.put("resetsAt", today.plusDays(1).atStartOfDay().atOffset(ZoneOffset.UTC));
+        state.put("tokensAvailable", Math.max(0, tokenBucket.available()));
+        state.put("requestsPerSecond", forecastProperties.getQuota().getRequestsPerSecond());
+
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        Map<Long, Double> topDemand = new LinkedHashMap<>();
+        demandTracker.snapshot().entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(10)
+                .forEach(e -> topDemand.put(e.getKey(), Math.round(e.getValue() * 100) / 100.0));
+        state.put("topDemand", topDemand);
+        state.put("at", now);
+        return state;
+    }
+
+    private boolean tryConsume(ForecastSource provider) {
+        String name = provider.name();
+        LocalDate today = today();
+        int limit = forecastProperties.getQuota().getDailyLimit();
+        // sem limite ainda conta, para o endpoint mostrar o uso
+        int cap = limit <= 0 ? Integer.MAX_VALUE : limit;
+        if (usageRepository.tryConsume(name, today, cap) == 1) {
+            return true;
+        }
+        if (usageRepository.existsById(new ProviderUsage.Key(name, today))) {
+            return false;
+        }
+        try {
+            usageRepository.saveAndFlush(new ProviderUsage(name, today, 1));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // outra instancia criou a linha do dia primeiro
+            return usageRepository.tryConsume(name, today, cap) == 1;
+        }
+    }
+
+    private LocalDate today() {
+        return LocalDate.now(clock.withZone(ZoneOffset.UTC));
+    }
+
+    private void rollSkippedDay() {
+        LocalDate today = today();
+        if (!today.equals(skippedDay)) {
+            skippedDay = today;
+            skippedToday = 0;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.surfmaster.forecast.quota;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.surfmaster.config.ForecastProperties;
+
+/**
+ * Exponentially decayed read counter per spot. Forecast listings and recommendations record
+ * the spots they read; the sync scheduler spends provider quota on the busiest ones first.
+ */
+@Component
+public class SpotDemandTracker {
+
+    private final ForecastProperties forecastProperties;
+    private final LongSupplier nanoClock;
+    private final Map<Long, Demand> demandBySpot = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SpotDemandTracker(ForecastProperties forecastProperties) {
+        this(forecastProperties, System::nanoTime);
+    }
+
+    SpotDemandTracker(ForecastProperties forecastProperties, LongSupplier nanoClock) {
+        this.forecastProperties = forecastProperties;
+        this.nanoClock = nanoClock;
+    }
+
+    public void record(Long spotId) {
+        if (spotId != null) {
+            demandBySpot.computeIfAbsent(spotId, id -> new Demand()).add(nanoClock.getAsLong(), halfLifeNanos());
+        }
+    }
+
+    public void recordAll(Collection<Long> spotIds) {
+        spotIds.forEach(this::record);
+    }
+
+    /** Decayed number of recent reads of the spot. */
+    public double demand(Long spotId) {
+        Demand demand = demandBySpot.get(spotId);
+        return demand != null ? demand.valueAt(nanoClock.getAsLong(), halfLifeNanos()) : 0.0;
+    }
+
+    Map<Long, Double> snapshot() {
+        long now = nanoClock.getAsLong();
+        double halfLife = halfLifeNanos();
+        Map<Long, Double> values = new HashMap<>();
+        demandBySpot.forEach((spotId, demand) -> values.put(spotId, demand.valueAt(now, halfLife)));
+        return values;
+    }
+
+    private double halfLifeNanos() {
+        return forecastProperties.getQuota().getDemandHalfLifeHours() * 3_600_000_000_000.0;
+    }
+
+    private static final class Demand {
+        private double value;
+        private long updatedAt;
+
+        synchronized void add(long now, double halfLifeNanos) {
+            value = valueAt(now, halfLifeNanos) + 1.0;
+            updatedAt = now;
+        }
+
+        synchronized double valueAt(long now, double halfLifeNanos) {
+            if (value == 0.0 || halfLifeNanos <= 0) {
+                return value;
+            }
+            return value * Math.pow(0.5, (now - updatedAt) / halfLifeNanos);
+        }
+    }
+}
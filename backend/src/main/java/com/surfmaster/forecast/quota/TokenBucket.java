@@ -0,0 +1,50 @@
+package com.surfmaster.forecast.quota;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Reservation-style token bucket: a caller always gets a slot and is told how long to wait
+ * for it, so concurrent callers are spaced out instead of rejected.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(int capacity, double tokensPerSecond, LongSupplier nanoClock) {
+        if (tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("Token bucket rate must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes one token, possibly borrowing from the future.
+     *
+     * @return nanoseconds the caller must wait before using its token
+     */
+    synchronized long reserve() {
+        refill();
+        tokens -= 1.0;
+        return tokens >= 0 ? 0L : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
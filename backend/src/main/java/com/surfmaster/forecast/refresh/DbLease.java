@@ -0,0 +1,74 @@
+package com.surfmaster.forecast.refresh;
+
+import java.net.InetAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.surfmaster.entities.SchedulerLease;
+import com.surfmaster.repository.SchedulerLeaseRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Time-bounded lease stored in the application database. Only the instance holding a
+ * lease runs the job behind it; a crashed holder loses it once {@code expiresAt} passes.
+ */
+@Component
+@Slf4j
+public class DbLease {
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final Clock clock;
+    private final String owner;
+
+    public DbLease(SchedulerLeaseRepository leaseRepository, Clock clock) {
+        this.leaseRepository = leaseRepository;
+        this.clock = clock;
+        this.owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Takes or renews the lease for {@code duration}.
+     *
+     * @return true when this instance holds the lease afterwards
+     */
+    public boolean tryAcquire(String name, Duration duration) {
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        OffsetDateTime expiresAt = now.plus(duration);
+        if (leaseRepository.tryTake(name, owner, now, expiresAt) == 1) {
+            return true;
+        }
+        if (leaseRepository.existsById(name)) {
+            return false;
+        }
+        try {
+            leaseRepository.saveAndFlush(new SchedulerLease(name, owner, expiresAt));
+            log.info("Lease {} created by {}", name, owner);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // outra instancia criou a linha primeiro
+            return false;
+        }
+    }
+
+    public void release(String name) {
+        leaseRepository.release(name, owner, OffsetDateTime.now(clock));
+    }
+
+    public String owner() {
+        return owner;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
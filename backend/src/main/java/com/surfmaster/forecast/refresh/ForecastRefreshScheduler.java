@@ -0,0 +1,182 @@
+package com.surfmaster.forecast.refresh;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.dto.ForecastSyncResponse;
+import com.surfmaster.entities.ForecastsUpdatedEvent;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.grid.ProviderGrid;
+import com.surfmaster.forecast.providers.ForecastProvider;
+import com.surfmaster.forecast.providers.ForecastProviderRegistry;
+import com.surfmaster.forecast.store.ForecastStore;
+import com.surfmaster.repository.SpotRepository;
+import com.surfmaster.service.ForecastService;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps forecasts fresh without manual syncs.
+ * <p>
+ * Every tick the lease holder looks for spots whose data is older than their due age and
+ * syncs just those. The due age is {@code ttl x (1 - jitter x phase)}, with a fixed
+ * per-spot phase in [0, 1): spots drift apart instead of expiring together, and spots
+ * never fetched are spread over the first {@code jitter x ttl} after startup. The lease is
+ * renewed every third of its duration while a sync runs.
+ * <p>
+ * Every instance, leader or not, also pulls the syncs committed elsewhere into its
+ * {@link ForecastStore} on each tick and announces them as a {@link ForecastsUpdatedEvent},
+ * so its caches are invalidated too.
+ */
+@Component
+@Slf4j
+public class ForecastRefreshScheduler {
+
+    static final String LEASE_NAME = "forecast-refresh";
+
+    private final ForecastProperties forecastProperties;
+    private final ForecastProviderRegistry forecastProviderRegistry;
+    private final ForecastService forecastService;
+    private final ForecastStore forecastStore;
+    private final SpotRepository spotRepository;
+    private final DbLease lease;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock;
+    private final OffsetDateTime startedAt;
+    private final Map<Long, OffsetDateTime> lastAttempt = new ConcurrentHashMap<>();
+
+    public ForecastRefreshScheduler(ForecastProperties forecastProperties, ForecastProviderRegistry forecastProviderRegistry,
+                                    ForecastService forecastService, ForecastStore forecastStore,
+                                    SpotRepository spotRepository, DbLease lease,
+                                    ApplicationEventPublisher eventPublisher, Clock clock) {
+        this.forecastProperties = forecastProperties;
+        this.forecastProviderRegistry = forecastProviderRegistry;
+        this.forecastService = forecastService;
+        this.forecastStore = forecastStore;
+        this.spotRepository = spotRepository;
+        this.lease = lease;
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.startedAt = OffsetDateTime.now(clock);
+    }
+
+    @Scheduled(
+            initialDelayString = "${surf.forecast.refresh.tick-seconds:60}",
+            fixedDelayString = "${surf.forecast.refresh.tick-seconds:60}",
+            timeUnit = TimeUnit.SECONDS
+    )
+    public void tick() {
+        pullRemoteSyncs();
+
+        ForecastProperties.Refresh config = forecastProperties.getRefresh();
+        Optional<ForecastProvider> provider = forecastProviderRegistry.getConfiguredProvider();
+        if (!config.isEnabled() || provider.isEmpty()) {
+            return;
+        }
+        Duration leaseDuration = Duration.ofSeconds(config.getLeaseSeconds());
+        if (!lease.tryAcquire(LEASE_NAME, leaseDuration)) {
+            log.debug("Forecast refresh lease held by another instance");
+            return;
+        }
+
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        List<Spot> spots = spotRepository.findAll();
+        List<Spot> due = dueSpots(spots, now);
+        if (due.isEmpty()) {
+            return;
+        }
+        // vizinhos na mesma celula vem na mesma chamada ao provider: atualiza junto
+        due = ProviderGrid.withCellMates(due, spots, provider.get().gridResolutionDegrees());
+        due.forEach(spot -> lastAttempt.put(spot.getId(), now));
+        Disposable renewal = renewWhileSyncing(leaseDuration);
+        try {
+            ForecastSyncResponse response = forecastService.syncSpots(due, null, null, true);
+            log.info("Background refresh synced {} forecasts for {} due spots", response.totalForecastsSaved(), due.size());
+        } catch (RuntimeException e) {
+            log.warn("Background forecast refresh failed: {}", e.getMessage());
+        } finally {
+            renewal.dispose();
+        }
+    }
+
+    // sync longo (retries, espera de quota) nao pode deixar o lease expirar no meio
+    private Disposable renewWhileSyncing(Duration leaseDuration) {
+        Duration every = leaseDuration.dividedBy(3);
+        return Flux.interval(every, every, Schedulers.boundedElastic())
+                .subscribe(i -> {
+                    try {
+                        if (!lease.tryAcquire(LEASE_NAME, leaseDuration)) {
+                            log.warn("Forecast refresh lease lost during a sync; another instance may refresh the same spots");
+                        }
+                    } catch (RuntimeException e) {
+                        log.warn("Could not renew forecast refresh lease: {}", e.getMessage());
+                    }
+                });
+    }
+
+    private void pullRemoteSyncs() {
+        try {
+            Set<Long> changed = forecastStore.refreshFromDatabase();
+            if (!changed.isEmpty()) {
+                eventPublisher.publishEvent(new ForecastsUpdatedEvent(changed));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not pull forecast syncs from the database: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        try {
+            lease.release(LEASE_NAME);
+        } catch (RuntimeException e) {
+            log.debug("Could not release forecast refresh lease: {}", e.getMessage());
+        }
+    }
+
+    List<Spot> dueSpots(List<Spot> spots, OffsetDateTime now) {
+        // spot que falhou (ou ficou sem quota) espera um quarto do TTL antes de tentar de novo
+        OffsetDateTime retryAfter = now.minus(forecastProperties.ttl().dividedBy(4));
+        return spots.stream()
+                .filter(spot -> !now.isBefore(dueAt(spot)))
+                .filter(spot -> {
+                    OffsetDateTime attempt = lastAttempt.get(spot.getId());
+                    return attempt == null || attempt.isBefore(retryAfter);
+                })
+                .toList();
+    }
+
+    OffsetDateTime dueAt(Spot spot) {
+        Duration ttl = forecastProperties.ttl();
+        double jitter = Math.max(0.0, Math.min(1.0, forecastProperties.getRefresh().getJitterFraction()));
+        long spreadSeconds = (long) (ttl.toSeconds() * jitter * phase(spot.getId()));
+
+        OffsetDateTime lastFetch = forecastStore.lastFetch(spot.getId());
+        return lastFetch == null
+                ? startedAt.plusSeconds(spreadSeconds)
+                : lastFetch.plus(ttl).minusSeconds(spreadSeconds);
+    }
+
+    // fase fixa em [0, 1) por spot (mistura de Fibonacci no id)
+    static double phase(Long spotId) {
+        long h = (spotId != null ? spotId : 0L) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        return (h >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,366 @@
+package com.surfmaster.forecast.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import com.surfmaster.dto.ForecastDto;
+import com.surfmaster.dto.ForecastPoint;
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.ForecastSource;
+
+/**
+ * Immutable, time-ordered forecast series of one spot stored column by column in a single
+ * buffer. Blocks are built on a plain heap buffer; only blocks reopened from the snapshot
+ * wrap a slice of its memory-mapped file. Every sync replaces a spot's block, so a direct
+ * buffer per block would only churn native memory that is freed when the GC gets to it.
+ * <p>
+ * A point costs {@value #POINT_BYTES} bytes in one primitive array against several hundred
+ * for a managed {@code Forecast} (boxed doubles, {@code OffsetDateTime}, spot proxy and
+ * Hibernate snapshot). Missing doubles are {@code NaN}, missing enums are {@code -1},
+ * unknown ids are {@code 0}.
+ */
+public final class ForecastBlock {
+
+    static final byte NONE = -1;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final ForecastSource[] SOURCES = ForecastSource.values();
+
+    // colunas de 8 bytes, depois de 4, depois de 1: cada coluna fica alinhada
+    private static final int ID = 0;
+    private static final int EPOCH = 1;
+    private static final int SWELL_HEIGHT = 2;
+    private static final int WIND_SPEED = 3;
+    private static final int TIDE_HEIGHT = 4;
+    private static final int SWELL_PERIOD = 0;
+    private static final int SWELL_DEGREES = 1;
+    private static final int WIND_DEGREES = 2;
+    private static final int WATER_TEMPERATURE = 3;
+    private static final int SWELL_DIRECTION = 0;
+    private static final int WIND_DIRECTION = 1;
+    private static final int DATA_SOURCE = 2;
+    private static final int WIDE_COLUMNS = 5;
+    private static final int INT_COLUMNS = 4;
+    private static final int BYTE_COLUMNS = 3;
+
+    static final int POINT_BYTES = WIDE_COLUMNS * 8 + INT_COLUMNS * 4 + BYTE_COLUMNS;
+
+    private final long spotId;
+    private final int size;
+    private final ByteBuffer data;
+    private final int intBase;
+    private final int byteBase;
+
+    private ForecastBlock(long spotId, int size, ByteBuffer data) {
+        this.spotId = spotId;
+        this.size = size;
+        this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+        this.intBase = WIDE_COLUMNS * 8 * size;
+        this.byteBase = intBase + INT_COLUMNS * 4 * size;
+    }
+
+    private ForecastBlock(long spotId, int size) {
+        this(spotId, size, ByteBuffer.allocate(size * POINT_BYTES));
+    }
+
+    /**
+     * Wraps {@code size * POINT_BYTES} bytes previously obtained from {@link #data()}.
+     */
+    static ForecastBlock wrap(long spotId, int size, ByteBuffer data) {
+        if (data.remaining() != size * POINT_BYTES) {
+            throw new IllegalArgumentException("Forecast block of " + size + " points needs "
+                    + size * POINT_BYTES + " bytes, got " + data.remaining());
+        }
+        return new ForecastBlock(spotId, size, data.slice());
+    }
+
+    /** Read-only view of the raw columns, for the snapshot writer. */
+    ByteBuffer data() {
+        return data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static ForecastBlock empty(long spotId) {
+        return new ForecastBlock(spotId, 0);
+    }
+
+    /**
+     * @param forecasts rows of a single spot; sorted here by timestamp
+     */
+    public static ForecastBlock of(long spotId, List<Forecast> forecasts) {
+        Forecast[] sorted = forecasts.stream()
+                .filter(f -> f.getTimestamp() != null)
+                .sorted((a, b) -> Long.compare(a.getTimestamp().toEpochSecond(), b.getTimestamp().toEpochSecond()))
+                .toArray(Forecast[]::new);
+
+        ForecastBlock block = new ForecastBlock(spotId, sorted.length);
+        for (int i = 0; i < sorted.length; i++) {
+            Forecast f = sorted[i];
+            block.putLong(ID, i, f.getId() != null ? f.getId() : 0L);
+            block.putLong(EPOCH, i, f.getTimestamp().toEpochSecond());
+            block.putDouble(SWELL_HEIGHT, i, orNaN(f.getSwellHeight()));
+            block.putInt(SWELL_PERIOD, i, f.getSwellPeriod());
+            block.putByte(SWELL_DIRECTION, i, ordinal(f.getSwellDirection()));
+            block.putFloat(SWELL_DEGREES, i, (float) orNaN(f.getSwellDirectionDegrees()));
+            block.putDouble(WIND_SPEED, i, orNaN(f.getWindSpeed()));
+            block.putByte(WIND_DIRECTION, i, ordinal(f.getWindDirection()));
+            block.putFloat(WIND_DEGREES, i, (float) orNaN(f.getWindDirectionDegrees()));
+            block.putDouble(TIDE_HEIGHT, i, orNaN(f.getTideHeight()));
+            block.putInt(WATER_TEMPERATURE, i, f.getWaterTemperature());
+            block.putByte(DATA_SOURCE, i, ordinal(f.getDataSource()));
+        }
+        return block;
+    }
+
+    /**
+     * Builds a block from scorer projections (e.g. the database fallback); columns the
+     * projection does not carry are left empty.
+     *
+     * @param points rows of a single spot, sorted by timestamp
+     */
+    public static ForecastBlock ofPoints(long spotId, List<ForecastPoint> points) {
+        ForecastBlock block = new ForecastBlock(spotId, points.size());
+        for (int i = 0; i < points.size(); i++) {
+            ForecastPoint p = points.get(i);
+            block.putLong(EPOCH, i, p.timestamp().toEpochSecond());
+            block.putDouble(SWELL_HEIGHT, i, orNaN(p.swellHeight()));
+            block.putByte(SWELL_DIRECTION, i, ordinal(p.swellDirection()));
+            block.putFloat(SWELL_DEGREES, i, (float) orNaN(p.swellDirectionDegrees()));
+            block.putDouble(WIND_SPEED, i, orNaN(p.windSpeed()));
+            block.putByte(WIND_DIRECTION, i, ordinal(p.windDirection()));
+            block.putFloat(WIND_DEGREES, i, (float) orNaN(p.windDirectionDegrees()));
+            block.putDouble(TIDE_HEIGHT, i, Double.NaN);
+            block.putByte(DATA_SOURCE, i, NONE);
+        }
+        return block;
+    }
+
+    /**
+     * Copy of this block where every point in {@code [fromEpoch, toEpoch]} is
+     * replaced by {@code incoming}; on equal timestamps the incoming point wins.
+     */
+    public ForecastBlock replaceRange(long fromEpoch, long toEpoch, ForecastBlock incoming) {
+        int keepBefore = lowerBound(fromEpoch);
+        int keepAfter = upperBound(toEpoch);
+        ForecastBlock merged = new ForecastBlock(spotId, keepBefore + (size - keepAfter) + incoming.size);
+
+        int out = 0;
+        int i = 0;
+        int j = 0;
+        int k = keepAfter;
+        while (i < keepBefore || j < incoming.size || k < size) {
+            // candidatos: resto antes do intervalo, novos, resto depois do intervalo
+            long own = i < keepBefore ? epochSecond(i) : (k < size ? epochSecond(k) : Long.MAX_VALUE);
+            long other = j < incoming.size ? incoming.epochSecond(j) : Long.MAX_VALUE;
+            if (other <= own) {
+                if (other == own) {
+                    if (i < keepBefore) i++; else k++;
+                }
+                copy(incoming, j++, merged, out++);
+            } else if (i < keepBefore) {
+                copy(this, i++, merged, out++);
+            } else {
+                copy(this, k++, merged, out++);
+            }
+        }
+        return out == merged.size ? merged : merged.truncate(out);
+    }
+
+    /**
+     * Drops the points older than {@code epoch}; returns {@code this} when nothing changes.
+     */
+    public ForecastBlock dropBefore(long epoch) {
+        int from = lowerBound(epoch);
+        if (from == 0) {
+            return this;
+        }
+        ForecastBlock kept = new ForecastBlock(spotId, size - from);
+        for (int i = from; i < size; i++) {
+            copy(this, i, kept, i - from);
+        }
+        return kept;
+    }
+
+    /** First index whose timestamp is {@code >= epoch}. */
+    public int lowerBound(long epoch) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochSecond(mid) < epoch) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** First index whose timestamp is {@code > epoch}. */
+    public int upperBound(long epoch) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochSecond(mid) <= epoch) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    public long spotId() {
+        return spotId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long epochSecond(int i) {
+        return getLong(EPOCH, i);
+    }
+
+    public double swellHeight(int i) {
+        return getDouble(SWELL_HEIGHT, i);
+    }
+
+    public Direction swellDirection(int i) {
+        return direction(getByte(SWELL_DIRECTION, i));
+    }
+
+    public double swellDirectionDegrees(int i) {
+        return getFloat(SWELL_DEGREES, i);
+    }
+
+    public double windSpeed(int i) {
+        return getDouble(WIND_SPEED, i);
+    }
+
+    public Direction windDirection(int i) {
+        return direction(getByte(WIND_DIRECTION, i));
+    }
+
+    public double windDirectionDegrees(int i) {
+        return getFloat(WIND_DEGREES, i);
+    }
+
+    /**
+     * Copies the timestamps of {@code [from, to)} into a fresh array.
+     */
+    public long[] epochSeconds(int from, int to) {
+        long[] out = new long[to - from];
+        for (int i = from; i < to; i++) {
+            out[i - from] = epochSecond(i);
+        }
+        return out;
+    }
+
+    public OffsetDateTime timestamp(int i) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond(i)), ZoneOffset.UTC);
+    }
+
+    public ForecastDto toDto(int i) {
+        long id = getLong(ID, i);
+        byte source = getByte(DATA_SOURCE, i);
+        return new ForecastDto(
+                id != 0L ? id : null,
+                spotId,
+                timestamp(i),
+                boxed(swellHeight(i)),
+                getInt(SWELL_PERIOD, i),
+                swellDirection(i),
+                boxed(windSpeed(i)),
+                windDirection(i),
+                boxed(getDouble(TIDE_HEIGHT, i)),
+                getInt(WATER_TEMPERATURE, i),
+                source != NONE ? SOURCES[source] : null
+        );
+    }
+
+    public ForecastPoint toPoint(int i) {
+        return new ForecastPoint(
+                spotId,
+                timestamp(i),
+                boxed(swellHeight(i)),
+                swellDirection(i),
+                boxed(swellDirectionDegrees(i)),
+                boxed(windSpeed(i)),
+                windDirection(i),
+                boxed(windDirectionDegrees(i))
+        );
+    }
+
+    private ForecastBlock truncate(int newSize) {
+        ForecastBlock copy = new ForecastBlock(spotId, newSize);
+        for (int i = 0; i < newSize; i++) {
+            copy(this, i, copy, i);
+        }
+        return copy;
+    }
+
+    private static void copy(ForecastBlock src, int i, ForecastBlock dst, int j) {
+        for (int c = 0; c < WIDE_COLUMNS; c++) {
+            dst.putLong(c, j, src.getLong(c, i));
+        }
+        for (int c = 0; c < INT_COLUMNS; c++) {
+            dst.putInt(c, j, src.getInt(c, i));
+        }
+        for (int c = 0; c < BYTE_COLUMNS; c++) {
+            dst.putByte(c, j, src.getByte(c, i));
+        }
+    }
+
+    private long getLong(int column, int i) {
+        return data.getLong((column * size + i) << 3);
+    }
+
+    private double getDouble(int column, int i) {
+        return data.getDouble((column * size + i) << 3);
+    }
+
+    private int getInt(int column, int i) {
+        return data.getInt(intBase + ((column * size + i) << 2));
+    }
+
+    private float getFloat(int column, int i) {
+        return data.getFloat(intBase + ((column * size + i) << 2));
+    }
+
+    private byte getByte(int column, int i) {
+        return data.get(byteBase + column * size + i);
+    }
+
+    private void putLong(int column, int i, long value) {
+        data.putLong((column * size + i) << 3, value);
+    }
+
+    private void putDouble(int column, int i, double value) {
+        data.putDouble((column * size + i) << 3, value);
+    }
+
+    private void putInt(int column, int i, int value) {
+        data.putInt(intBase + ((column * size + i) << 2), value);
+    }
+
+    private void putFloat(int column, int i, float value) {
+        data.putFloat(intBase + ((column * size + i) << 2), value);
+    }
+
+    private void putByte(int column, int i, byte value) {
+        data.put(byteBase + column * size + i, value);
+    }
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    private static Double boxed(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return value != null ? (byte) value.ordinal() : NONE;
+    }
+
+    private static Direction direction(byte ordinal) {
+        return ordinal != NONE ? DIRECTIONS[ordinal] : null;
+    }
+}
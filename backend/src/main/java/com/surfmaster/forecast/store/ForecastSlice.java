@@ -0,0 +1,51 @@
+package com.surfmaster.forecast.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.surfmaster.dto.ForecastDto;
+import com.surfmaster.dto.ForecastPoint;
+
+/**
+ * View over the points {@code [start, end)} of a {@link ForecastBlock}; no columns are copied.
+ */
+public record ForecastSlice(ForecastBlock block, int start, int end) {
+
+    public static ForecastSlice of(ForecastBlock block) {
+        return new ForecastSlice(block, 0, block.size());
+    }
+
+    /**
+     * Groups scorer projections (sorted by spot and timestamp) into one slice per spot.
+     */
+    public static Map<Long, ForecastSlice> bySpot(List<ForecastPoint> points) {
+        Map<Long, ForecastSlice> slices = new HashMap<>();
+        points.stream()
+                .collect(Collectors.groupingBy(ForecastPoint::spotId))
+                .forEach((spotId, spotPoints) -> slices.put(spotId, of(ForecastBlock.ofPoints(spotId, spotPoints))));
+        return slices;
+    }
+
+    public long spotId() {
+        return block.spotId();
+    }
+
+    public int size() {
+        return end - start;
+    }
+
+    public boolean isEmpty() {
+        return end <= start;
+    }
+
+    public List<ForecastDto> toDtos() {
+        List<ForecastDto> dtos = new ArrayList<>(size());
+        for (int i = start; i < end; i++) {
+            dtos.add(block.toDto(i));
+        }
+        return dtos;
+    }
+}
@@ -0,0 +1,165 @@
+package com.surfmaster.forecast.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+import com.surfmaster.config.ForecastProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Binary snapshot of the {@link ForecastStore} on local disk, read and written through
+ * {@link FileChannel#map}. Blocks read back are slices of the mapping, so reopening the
+ * file costs a header scan and the forecast bytes never land on the GC heap.
+ * <p>
+ * Layout (little-endian, 8-byte aligned): a header with magic, version, creation time,
+ * coverage start and spot count, then one record per spot with its id, last provider
+ * fetch, point count and the raw {@link ForecastBlock} columns.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ForecastSnapshot {
+
+    static final int MAGIC = 0x53464d53; // "SMFS"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int SPOT_HEADER_BYTES = 24;
+    private static final long NO_FETCH = Long.MIN_VALUE;
+
+    private final ForecastProperties forecastProperties;
+
+    public record Contents(
+            long createdAtEpoch,
+            long coveredFromEpoch,
+            Map<Long, ForecastBlock> blocks,
+            Map<Long, Long> lastFetchEpochBySpot
+    ) {}
+
+    public boolean isEnabled() {
+        String path = forecastProperties.getStore().getSnapshotPath();
+        return path != null && !path.isBlank();
+    }
+
+    /**
+     * Maps the snapshot file; empty when disabled, missing or unreadable.
+     */
+    public Optional<Contents> read() {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        Path path = path();
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // o mapeamento continua valido depois de fechar o canal
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Optional.of(decode(mapped.order(ByteOrder.LITTLE_ENDIAN)));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable forecast snapshot {}: {}", path, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes a new snapshot next to the current one and swaps it in atomically, so readers
+     * of the old mapping are never affected.
+     */
+    public void write(long coveredFromEpoch, Map<Long, ForecastBlock> blocks, Map<Long, Long> lastFetchEpochBySpot) throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Set<Long> spotIds = new HashSet<>(blocks.keySet());
+        spotIds.addAll(lastFetchEpochBySpot.keySet());
+
+        long total = HEADER_BYTES;
+        for (Long spotId : spotIds) {
+            ForecastBlock block = blocks.get(spotId);
+            total += SPOT_HEADER_BYTES + align(block != null ? (long) block.size() * ForecastBlock.POINT_BYTES : 0);
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Forecast snapshot too large to map: " + total + " bytes");
+        }
+
+        Path path = path();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(VERSION)
+                    .putLong(System.currentTimeMillis() / 1000)
+                    .putLong(coveredFromEpoch)
+                    .putInt(spotIds.size()).putInt(0);
+            for (Long spotId : spotIds) {
+                ForecastBlock block = blocks.get(spotId);
+                int size = block != null ? block.size() : 0;
+                out.putLong(spotId)
+                        .putLong(lastFetchEpochBySpot.getOrDefault(spotId, NO_FETCH))
+                        .putInt(size).putInt(0);
+                if (size > 0) {
+                    out.put(block.data());
+                }
+                out.position((int) align(out.position()));
+            }
+            out.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Contents decode(ByteBuffer in) {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IllegalStateException("not a forecast snapshot (version " + VERSION + ")");
+        }
+        long createdAt = in.getLong();
+        long coveredFrom = in.getLong();
+        int spots = in.getInt();
+        in.getInt();
+
+        Map<Long, ForecastBlock> blocks = new HashMap<>();
+        Map<Long, Long> lastFetch = new HashMap<>();
+        for (int s = 0; s < spots; s++) {
+            long spotId = in.getLong();
+            long fetchedAt = in.getLong();
+            int size = in.getInt();
+            in.getInt();
+            if (fetchedAt != NO_FETCH) {
+                lastFetch.put(spotId, fetchedAt);
+            }
+            if (size > 0) {
+                int bytes = size * ForecastBlock.POINT_BYTES;
+                blocks.put(spotId, ForecastBlock.wrap(spotId, size, in.slice(in.position(), bytes)));
+                in.position(in.position() + bytes);
+            }
+            in.position((int) align(in.position()));
+        }
+        return new Contents(createdAt, coveredFrom, blocks, lastFetch);
+    }
+
+    private Path path() {
+        return Path.of(forecastProperties.getStore().getSnapshotPath());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
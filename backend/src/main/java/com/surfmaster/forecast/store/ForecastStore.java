@@ -0,0 +1,317 @@
+package com.surfmaster.forecast.store;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.ForecastsUpdatedEvent;
+import com.surfmaster.entities.SpotFetch;
+import com.surfmaster.repository.ForecastRepository;
+import com.surfmaster.repository.SpotFetchRepository;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * In-memory columnar copy of the recent forecasts, one {@link ForecastBlock} per spot.
+ * <p>
+ * Reopened from the {@link ForecastSnapshot} (or loaded from the database when the snapshot
+ * missed a sync recorded in {@link SpotFetch}) once the application is ready and kept current
+ * by the sync, which swaps a spot's block after its transaction commits. Syncs committed by
+ * other instances are picked up by {@link #refreshFromDatabase}. Reads are lock-free; ranges
+ * older than the retention window are not covered and must go to the database.
+ * <p>
+ * The last fetch of each spot comes from {@link SpotFetch}, so an instance that takes over
+ * the refresh lease knows what is already fresh.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ForecastStore {
+
+    private final ForecastRepository forecastRepository;
+    private final SpotFetchRepository spotFetchRepository;
+    private final ForecastProperties forecastProperties;
+    private final ForecastSnapshot snapshot;
+
+    // um arquivo so: escritas do snapshot nao se sobrepoem
+    private final Object snapshotLock = new Object();
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+
+    private final Map<Long, ForecastBlock> blocks = new ConcurrentHashMap<>();
+    private final Map<Long, Long> lastFetchBySpot = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+    private volatile long coveredFromEpoch = Long.MAX_VALUE;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public synchronized void load() {
+        if (!forecastProperties.getStore().isEnabled()) {
+            loadFetchTimes();
+            return;
+        }
+        long cutoff = retentionCutoff();
+
+        Optional<ForecastSnapshot.Contents> restored = snapshot.read().filter(this::isCurrent);
+        if (restored.isPresent()) {
+            ForecastSnapshot.Contents contents = restored.get();
+            blocks.clear();
+            contents.blocks().forEach((spotId, block) -> blocks.put(spotId, block.dropBefore(cutoff)));
+            lastFetchBySpot.putAll(contents.lastFetchEpochBySpot());
+            loadFetchTimes();
+            coveredFromEpoch = Math.max(contents.coveredFromEpoch(), cutoff);
+            loaded = true;
+            log.info("Forecast store restored {} points for {} spots from snapshot", pointCount(), blocks.size());
+            return;
+        }
+
+        List<Forecast> rows = forecastRepository.findAllFromOrderedBySpot(
+                        OffsetDateTime.ofInstant(Instant.ofEpochSecond(cutoff), ZoneOffset.UTC)).stream()
+                .filter(f -> f.getSpot() != null)
+                .toList();
+
+        // linhas vem agrupadas por spot
+        blocks.clear();
+        int from = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i == rows.size() || !spotIdOf(rows.get(i)).equals(spotIdOf(rows.get(from)))) {
+                Long spotId = spotIdOf(rows.get(from));
+                blocks.put(spotId, ForecastBlock.of(spotId, rows.subList(from, i)));
+                from = i;
+            }
+        }
+        loadFetchTimes();
+        coveredFromEpoch = cutoff;
+        loaded = true;
+        log.info("Forecast store loaded {} points for {} spots", rows.size(), blocks.size());
+    }
+
+    /**
+     * Reloads the spots whose fetch recorded in the database is newer than the one this store
+     * has seen, i.e. syncs committed by another instance. Runs on every instance each refresh
+     * tick, so a store that does not hold the refresh lease lags the database by one tick.
+     *
+     * @return ids of the spots reloaded
+     */
+    @Transactional
+    public Set<Long> refreshFromDatabase() {
+        Set<Long> changed = new HashSet<>();
+        for (SpotFetch fetch : spotFetchRepository.findAll()) {
+            if (fetch.getFetchedAt() == null) {
+                continue;
+            }
+            long fetchedAt = fetch.getFetchedAt().toEpochSecond();
+            Long seen = lastFetchBySpot.get(fetch.getSpotId());
+            if (seen != null && seen >= fetchedAt) {
+                continue;
+            }
+            if (!forecastProperties.getStore().isEnabled()) {
+                // store desligado: so o horario do fetch importa
+                recordFetch(fetch.getSpotId(), fetchedAt);
+                changed.add(fetch.getSpotId());
+                continue;
+            }
+            if (!loaded) {
+                // a carga inicial ainda vai ler o banco; o proximo tick confere de novo
+                continue;
+            }
+            changed.add(fetch.getSpotId());
+            long cutoff = retentionCutoff();
+            List<Forecast> rows = forecastRepository.findBySpotIdAfter(fetch.getSpotId(),
+                    OffsetDateTime.ofInstant(Instant.ofEpochSecond(cutoff), ZoneOffset.UTC));
+            reload(fetch.getSpotId(), ForecastBlock.of(fetch.getSpotId(), rows), fetchedAt);
+        }
+        if (!changed.isEmpty()) {
+            log.info("Forecast store picked up syncs of spots {} written by another instance", changed);
+        }
+        return changed;
+    }
+
+    private synchronized void reload(Long spotId, ForecastBlock block, long fetchedAt) {
+        blocks.put(spotId, block);
+        lastFetchBySpot.merge(spotId, fetchedAt, Math::max);
+    }
+
+    // o banco e a fonte do ultimo fetch: vale para restart e para quem assume o lease
+    private void loadFetchTimes() {
+        for (SpotFetch fetch : spotFetchRepository.findAll()) {
+            if (fetch.getFetchedAt() != null) {
+                lastFetchBySpot.merge(fetch.getSpotId(), fetch.getFetchedAt().toEpochSecond(), Math::max);
+            }
+        }
+    }
+
+    // snapshot que nao viu o ultimo fetch gravado de algum spot esta atrasado em relacao ao banco
+    private boolean isCurrent(ForecastSnapshot.Contents contents) {
+        for (SpotFetch fetch : spotFetchRepository.findAll()) {
+            Long seen = contents.lastFetchEpochBySpot().get(fetch.getSpotId());
+            if (fetch.getFetchedAt() != null && (seen == null || seen < fetch.getFetchedAt().toEpochSecond())) {
+                log.info("Forecast snapshot misses the sync of spot {} at {}; loading from the database",
+                        fetch.getSpotId(), fetch.getFetchedAt());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Schedules a snapshot rewrite once a sync has committed, so a restart reopens the latest
+     * data. Syncs landing within {@code snapshot-debounce} of each other share one write, done
+     * on a background thread.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onForecastsUpdated(ForecastsUpdatedEvent event) {
+        if (!loaded || !snapshot.isEnabled() || !snapshotPending.compareAndSet(false, true)) {
+            return;
+        }
+        Mono.delay(forecastProperties.getStore().getSnapshotDebounce())
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(tick -> {
+                    // liberado antes de escrever: um sync durante a escrita agenda outra
+                    snapshotPending.set(false);
+                    writeSnapshot();
+                });
+    }
+
+    /**
+     * Writes the snapshot now. The store lock is only held to copy the block references, not
+     * for the file write.
+     */
+    @PreDestroy
+    public void writeSnapshot() {
+        if (!loaded || !snapshot.isEnabled()) {
+            return;
+        }
+        synchronized (snapshotLock) {
+            long coveredFrom;
+            Map<Long, ForecastBlock> blocksCopy;
+            Map<Long, Long> lastFetchCopy;
+            synchronized (this) {
+                coveredFrom = coveredFromEpoch;
+                blocksCopy = Map.copyOf(blocks);
+                lastFetchCopy = Map.copyOf(lastFetchBySpot);
+            }
+            try {
+                snapshot.write(coveredFrom, blocksCopy, lastFetchCopy);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not write forecast snapshot: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Last successful provider fetch for the spot, or {@code null} if unknown.
+     */
+    public OffsetDateTime lastFetch(Long spotId) {
+        Long epoch = lastFetchBySpot.get(spotId);
+        return epoch != null ? OffsetDateTime.ofInstant(Instant.ofEpochSecond(epoch), ZoneOffset.UTC) : null;
+    }
+
+    /**
+     * Records a provider fetch. Inside a transaction it waits for the commit, after the block
+     * swap of the same sync, so a snapshot never claims a fetch whose points it lacks.
+     */
+    public void markFetched(Long spotId, OffsetDateTime at) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recordFetch(spotId, at.toEpochSecond());
+                }
+            });
+        } else {
+            recordFetch(spotId, at.toEpochSecond());
+        }
+    }
+
+    private synchronized void recordFetch(Long spotId, long epoch) {
+        lastFetchBySpot.merge(spotId, epoch, Math::max);
+    }
+
+    /**
+     * True when every forecast at or after {@code from} is held in memory.
+     */
+    public boolean covers(OffsetDateTime from) {
+        return loaded && from != null && from.toEpochSecond() >= coveredFromEpoch;
+    }
+
+    /**
+     * Points of the spot in {@code [from, to]} ({@code to} may be null for open-ended),
+     * or {@code null} when the spot has no block.
+     */
+    public ForecastSlice slice(Long spotId, OffsetDateTime from, OffsetDateTime to) {
+        ForecastBlock block = blocks.get(spotId);
+        if (block == null) {
+            return null;
+        }
+        int start = block.lowerBound(from.toEpochSecond());
+        int end = to != null ? block.upperBound(to.toEpochSecond()) : block.size();
+        return new ForecastSlice(block, start, Math.max(start, end));
+    }
+
+    /**
+     * Replaces the spot's points in {@code [from, to]} with {@code saved}. Inside a
+     * transaction the swap waits for the commit so readers never see rolled-back rows.
+     */
+    public void replace(Long spotId, OffsetDateTime from, OffsetDateTime to, List<Forecast> saved) {
+        if (!forecastProperties.getStore().isEnabled()) {
+            return;
+        }
+        ForecastBlock incoming = ForecastBlock.of(spotId, new ArrayList<>(saved));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(spotId, from.toEpochSecond(), to.toEpochSecond(), incoming);
+                }
+            });
+        } else {
+            apply(spotId, from.toEpochSecond(), to.toEpochSecond(), incoming);
+        }
+    }
+
+    public int pointCount() {
+        return blocks.values().stream().mapToInt(ForecastBlock::size).sum();
+    }
+
+    private synchronized void apply(Long spotId, long from, long to, ForecastBlock incoming) {
+        long cutoff = retentionCutoff();
+        blocks.compute(spotId, (id, current) -> (current != null ? current : ForecastBlock.empty(id))
+                .replaceRange(from, to, incoming)
+                .dropBefore(cutoff));
+        if (loaded && cutoff > coveredFromEpoch) {
+            coveredFromEpoch = cutoff;
+        }
+    }
+
+    private long retentionCutoff() {
+        return OffsetDateTime.now().minusHours(forecastProperties.getStore().getRetentionHours()).toEpochSecond();
+    }
+
+    private static Long spotIdOf(Forecast f) {
+        return f.getSpot().getId();
+    }
+}
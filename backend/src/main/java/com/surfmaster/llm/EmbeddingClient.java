@@ -1,5 +1,37 @@
 package com.surfmaster.llm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
 public interface EmbeddingClient {
     double[] embed(String text);
+
+    /**
+     * Embeddings of all texts, in input order. Clients that accept several inputs per request
+     * override this; the default embeds one text at a time.
+     */
+    default List<double[]> embedAll(List<String> texts) {
+        return texts.stream().map(this::embed).toList();
+    }
+
+    /**
+     * Embeds the texts batch by batch and hands each batch to {@code onBatch} as soon as it
+     * completes, with the input indexes it covers and their embeddings. A failing batch does
+     * not stop the others.
+     *
+     * @return input indexes whose batch failed (empty when everything was embedded)
+     */
+    default List<Integer> embedInBatches(List<String> texts, BiConsumer<List<Integer>, List<double[]>> onBatch) {
+        List<Integer> failed = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            try {
+                double[] embedding = embed(texts.get(i));
+                onBatch.accept(List.of(i), List.of(embedding));
+            } catch (RuntimeException e) {
+                failed.add(i);
+            }
+        }
+        return failed;
+    }
 }
@@ -2,9 +2,12 @@ package com.surfmaster.llm.huggingface;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -17,6 +20,7 @@ import com.surfmaster.llm.EmbeddingClient;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Component
@@ -36,32 +40,130 @@ public class HuggingFaceEmbeddingClient implements EmbeddingClient {
 
     @Override
     public double[] embed(String text) {
-        if (properties.getEmbeddingApiKey() == null || properties.getEmbeddingApiKey().isBlank()) {
-            throw new IllegalStateException("SURF_HF_API_KEY not configured for embeddings.");
-        }
+        requireApiKey();
         if (text == null || text.isBlank()) {
             return new double[16];
         }
 
-        String endpoint = resolveEndpoint();
-        Map<String, Object> payload = buildPayload(endpoint, text);
-
         log.debug("HuggingFace embedding request length={}", text.length());
-        JsonNode response = client.post()
-                .uri(endpoint)
+        JsonNode response = request(text).block();
+        if (response == null || response.isEmpty()) {
+            throw new IllegalStateException("HuggingFace embeddings returned empty response");
+        }
+        return meanPool(response);
+    }
+
+    /**
+     * Sends the texts in batches of {@code surf.llm.embedding-batch-size} inputs per request,
+     * with up to {@code surf.llm.embedding-concurrency} requests in flight, and returns the
+     * embeddings in input order. Fails if any batch fails.
+     */
+    @Override
+    public List<double[]> embedAll(List<String> texts) {
+        double[][] vectors = new double[texts.size()][];
+        List<Throwable> errors = new ArrayList<>();
+        List<Integer> failed = embedInBatches(texts, (indexes, embeddings) -> {
+            for (int i = 0; i < indexes.size(); i++) {
+                vectors[indexes.get(i)] = embeddings.get(i);
+            }
+        }, errors);
+        if (!failed.isEmpty()) {
+            Throwable first = errors.get(0);
+            throw first instanceof RuntimeException re ? re : new IllegalStateException(first.getMessage(), first);
+        }
+        return Arrays.asList(vectors);
+    }
+
+    /**
+     * Same batching as {@link #embedAll}, but each batch is handed over as it completes and a
+     * failing batch only loses its own texts.
+     */
+    @Override
+    public List<Integer> embedInBatches(List<String> texts, BiConsumer<List<Integer>, List<double[]>> onBatch) {
+        return embedInBatches(texts, onBatch, new ArrayList<>());
+    }
+
+    private List<Integer> embedInBatches(List<String> texts, BiConsumer<List<Integer>, List<double[]>> onBatch,
+                                         List<Throwable> errors) {
+        requireApiKey();
+        List<Integer> pending = new ArrayList<>();
+        List<Integer> blank = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.isBlank()) {
+                blank.add(i);
+            } else {
+                pending.add(i);
+            }
+        }
+        if (!blank.isEmpty()) {
+            onBatch.accept(blank, blank.stream().map(i -> new double[16]).toList());
+        }
+        int batchSize = Math.max(1, properties.getEmbeddingBatchSize());
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            batches.add(pending.subList(from, Math.min(from + batchSize, pending.size())));
+        }
+
+        log.debug("HuggingFace embedding {} texts in {} batches", pending.size(), batches.size());
+        List<Integer> failed = Collections.synchronizedList(new ArrayList<>());
+        Flux.fromIterable(batches)
+                .flatMap(batch -> request(batch.stream().map(texts::get).toList())
+                                .switchIfEmpty(Mono.error(new IllegalStateException("HuggingFace embeddings returned empty response")))
+                                .map(response -> toVectors(batch, response))
+                                // entrega em serie: quem recebe nao precisa ser thread-safe
+                                .doOnNext(vectors -> {
+                                    synchronized (onBatch) {
+                                        onBatch.accept(batch, vectors);
+                                    }
+                                })
+                                .onErrorResume(e -> {
+                                    log.warn("HuggingFace embedding batch of {} texts failed: {}", batch.size(), e.toString());
+                                    synchronized (errors) {
+                                        errors.add(e);
+                                    }
+                                    failed.addAll(batch);
+                                    return Mono.empty();
+                                }),
+                        Math.max(1, properties.getEmbeddingConcurrency()))
+                .blockLast();
+        List<Integer> sorted = new ArrayList<>(failed);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private List<double[]> toVectors(List<Integer> batch, JsonNode response) {
+        if (!response.isArray() || response.size() != batch.size()) {
+            throw new IllegalStateException("HuggingFace embeddings returned " + response.size()
+                    + " vectors for " + batch.size() + " inputs");
+        }
+        List<double[]> vectors = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            vectors.add(meanPool(response.get(i)));
+        }
+        return vectors;
+    }
+
+    // inputs: um texto ou uma lista deles
+    private Mono<JsonNode> request(Object inputs) {
+        return client.post()
+                .uri(resolveEndpoint())
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + properties.getEmbeddingApiKey())
-                .bodyValue(payload)
+                .bodyValue(buildPayload(inputs))
                 .retrieve()
                 .onStatus(status -> status.isError(), resp -> resp.bodyToMono(String.class)
+                        .defaultIfEmpty(resp.statusCode().toString())
                         .flatMap(body -> Mono.error(new IllegalStateException("HuggingFace embeddings error: " + body))))
                 .bodyToMono(JsonNode.class)
-                .block(Duration.ofSeconds(60));
+                .timeout(Duration.ofSeconds(60));
+    }
 
-        if (response == null || response.isEmpty()) {
-            throw new IllegalStateException("HuggingFace embeddings returned empty response");
+    // um vetor por texto: ja agregado, ou media dos vetores por token
+    private double[] meanPool(JsonNode embedding) {
+        if (embedding.isEmpty()) {
+            throw new IllegalStateException("HuggingFace embeddings returned an empty vector");
         }
-
-        List<List<Double>> tokens = normalizeEmbeddings(response);
+        List<List<Double>> tokens = normalizeEmbeddings(embedding);
         int dimensions = tokens.get(0).size();
         double[] vector = new double[dimensions];
         for (List<Double> token : tokens) {
@@ -75,9 +177,15 @@ public class HuggingFaceEmbeddingClient implements EmbeddingClient {
         return vector;
     }
 
-    private Map<String, Object> buildPayload(String endpoint, String text) {
+    private void requireApiKey() {
+        if (properties.getEmbeddingApiKey() == null || properties.getEmbeddingApiKey().isBlank()) {
+            throw new IllegalStateException("SURF_HF_API_KEY not configured for embeddings.");
+        }
+    }
+
+    private Map<String, Object> buildPayload(Object inputs) {
         Map<String, Object> payload = new HashMap<>();
-        payload.put("inputs", text);
+        payload.put("inputs", inputs);
         payload.put("options", Map.of("wait_for_model", true));
         return payload;
     }
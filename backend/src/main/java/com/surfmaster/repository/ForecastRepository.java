@@ -1,12 +1,16 @@
 package com.surfmaster.repository;
 
 
+import com.surfmaster.dto.ForecastPoint;
 import com.surfmaster.entities.Forecast;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface ForecastRepository extends JpaRepository<Forecast, Long> {
@@ -14,21 +18,33 @@ public interface ForecastRepository extends JpaRepository<Forecast, Long> {
     @Query("select f from Forecast f where f.spot.id = :spotId and f.timestamp >= :from order by f.timestamp asc")
     public List<Forecast> findBySpotIdAfter(Long spotId, OffsetDateTime from);
 
+    // carga do ForecastStore: so leitura, sem snapshot de dirty checking
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select f from Forecast f where f.timestamp >= :from order by f.spot.id asc, f.timestamp asc")
+    List<Forecast> findAllFromOrderedBySpot(OffsetDateTime from);
+
+    // diff do sync: linhas atuais do spot, sem dirty checking
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     @Query("""
         select f from Forecast f
-        join fetch f.spot
-        where f.timestamp >= :from
+        where f.spot.id = :spotId
+            and f.timestamp >= :from
             and f.timestamp <= :to
     """)
-    List<Forecast> findAllInRangeWithSpot(OffsetDateTime from, OffsetDateTime to);
+    List<Forecast> findBySpotIdBetween(Long spotId, OffsetDateTime from, OffsetDateTime to);
 
-    @Modifying
     @Query("""
-        delete from Forecast f
-        where f.spot.id = :spotId
+        select new com.surfmaster.dto.ForecastPoint(
+            f.spot.id, f.timestamp,
+            f.swellHeight, f.swellDirection, f.swellDirectionDegrees,
+            f.windSpeed, f.windDirection, f.windDirectionDegrees
+        )
+        from Forecast f
+        where f.spot.id in :spotIds
             and f.timestamp >= :from
             and f.timestamp <= :to
+        order by f.spot.id asc, f.timestamp asc
     """)
-    void deleteAllForSpotBetween(Long spotId, OffsetDateTime from, OffsetDateTime to);
+    List<ForecastPoint> findPointsForSpotsInRange(Collection<Long> spotIds, OffsetDateTime from, OffsetDateTime to);
 
 }
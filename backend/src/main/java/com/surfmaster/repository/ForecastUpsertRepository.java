@@ -0,0 +1,145 @@
+package com.surfmaster.repository;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Repository;
+
+import com.surfmaster.entities.Forecast;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Batched JDBC upsert of forecast rows keyed by {@code (spot_id, timestamp)}: one round-trip
+ * per batch instead of one statement per row. New rows take ids from {@code forecast_seq} in
+ * blocks of {@link #ID_BLOCK}, read the same way as Hibernate's pooled optimizer (a sequence
+ * value {@code v} owns {@code v-49..v}), so mixed JPA/JDBC writes never collide. Uses
+ * {@code INSERT ... ON CONFLICT} on Postgres and {@code MERGE ... KEY} on H2.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ForecastUpsertRepository {
+
+    static final int BATCH_SIZE = 500;
+    // mesmo allocationSize do @SequenceGenerator de Forecast
+    static final int ID_BLOCK = 50;
+
+    private static final String COLUMNS = """
+            id, spot_id, timestamp, swell_height, swell_period, swell_direction, swell_direction_degrees,
+            wind_speed, wind_direction, wind_direction_degrees, tide_height, water_temperature, data_source""";
+    private static final String PLACEHOLDERS = "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?";
+
+    private static final String POSTGRES_UPSERT = "insert into forecast (" + COLUMNS + ") values (" + PLACEHOLDERS + """
+            )
+            on conflict (spot_id, timestamp) do update set
+                swell_height = excluded.swell_height,
+                swell_period = excluded.swell_period,
+                swell_direction = excluded.swell_direction,
+                swell_direction_degrees = excluded.swell_direction_degrees,
+                wind_speed = excluded.wind_speed,
+                wind_direction = excluded.wind_direction,
+                wind_direction_degrees = excluded.wind_direction_degrees,
+                tide_height = excluded.tide_height,
+                water_temperature = excluded.water_temperature,
+                data_source = excluded.data_source""";
+
+    private static final String H2_MERGE = "merge into forecast (" + COLUMNS + ") key (spot_id, timestamp) values (" + PLACEHOLDERS + ")";
+
+    private static final Dialect POSTGRES = new Dialect(POSTGRES_UPSERT, "select nextval('forecast_seq')");
+    private static final Dialect H2 = new Dialect(H2_MERGE, "select next value for forecast_seq");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Dialect dialect;
+
+    /**
+     * Inserts or updates the given rows (each with its spot set). Rows without an id get one
+     * from the sequence first; rows that already exist must carry their current id.
+     * Must run inside a transaction.
+     *
+     * @return number of rows sent to the database
+     */
+    public int upsertAll(List<Forecast> forecasts) {
+        if (forecasts.isEmpty()) {
+            return 0;
+        }
+        assignIds(forecasts);
+        jdbcTemplate.batchUpdate(dialect().upsert(), forecasts, BATCH_SIZE, ForecastUpsertRepository::bind);
+        return forecasts.size();
+    }
+
+    private void assignIds(List<Forecast> forecasts) {
+        long next = 0;
+        long last = -1;
+        for (Forecast forecast : forecasts) {
+            if (forecast.getId() != null) {
+                continue;
+            }
+            if (next > last) {
+                last = nextSequenceValue();
+                // o primeiro valor da sequence (1) nao tem bloco inteiro abaixo dele
+                next = Math.max(1, last - ID_BLOCK + 1);
+            }
+            forecast.setId(next++);
+        }
+    }
+
+    private long nextSequenceValue() {
+        Long value = jdbcTemplate.queryForObject(dialect().nextId(), Long.class);
+        if (value == null) {
+            throw new IllegalStateException("forecast_seq returned no value");
+        }
+        return value;
+    }
+
+    private Dialect dialect() {
+        Dialect current = dialect;
+        if (current == null) {
+            current = dialectFor(databaseProduct());
+            dialect = current;
+        }
+        return current;
+    }
+
+    static Dialect dialectFor(String databaseProduct) {
+        if (databaseProduct.startsWith("PostgreSQL")) {
+            return POSTGRES;
+        }
+        if (databaseProduct.startsWith("H2")) {
+            return H2;
+        }
+        throw new IllegalStateException("Forecast upsert not supported on " + databaseProduct);
+    }
+
+    private String databaseProduct() {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), DatabaseMetaData::getDatabaseProductName);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not detect the database for forecast upserts", e);
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Forecast f) throws SQLException {
+        ps.setLong(1, f.getId());
+        ps.setLong(2, f.getSpot().getId());
+        ps.setObject(3, f.getTimestamp());
+        ps.setObject(4, f.getSwellHeight(), Types.DOUBLE);
+        ps.setInt(5, f.getSwellPeriod());
+        ps.setString(6, f.getSwellDirection() != null ? f.getSwellDirection().name() : null);
+        ps.setObject(7, f.getSwellDirectionDegrees(), Types.DOUBLE);
+        ps.setObject(8, f.getWindSpeed(), Types.DOUBLE);
+        ps.setString(9, f.getWindDirection() != null ? f.getWindDirection().name() : null);
+        ps.setObject(10, f.getWindDirectionDegrees(), Types.DOUBLE);
+        ps.setObject(11, f.getTideHeight(), Types.DOUBLE);
+        ps.setInt(12, f.getWaterTemperature());
+        ps.setString(13, f.getDataSource() != null ? f.getDataSource().name() : null);
+    }
+
+    record Dialect(String upsert, String nextId) {
+    }
+}
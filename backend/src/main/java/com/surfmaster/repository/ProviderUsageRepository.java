@@ -0,0 +1,27 @@
+package com.surfmaster.repository;
+
+import com.surfmaster.entities.ProviderUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import jakarta.transaction.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ProviderUsageRepository extends JpaRepository<ProviderUsage, ProviderUsage.Key> {
+
+    // conta uma chamada so se ainda cabe no limite do dia
+    @Transactional
+    @Modifying
+    @Query("""
+        update ProviderUsage u
+        set u.used = u.used + 1
+        where u.provider = :provider
+            and u.quotaDay = :quotaDay
+            and u.used < :limit
+    """)
+    int tryConsume(String provider, LocalDate quotaDay, int limit);
+
+    List<ProviderUsage> findByQuotaDay(LocalDate quotaDay);
+}
@@ -0,0 +1,28 @@
+package com.surfmaster.repository;
+
+import com.surfmaster.entities.SchedulerLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import jakarta.transaction.Transactional;
+
+import java.time.OffsetDateTime;
+
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, String> {
+
+    // renova se ja e nosso, toma se expirou
+    @Transactional
+    @Modifying
+    @Query("""
+        update SchedulerLease l
+        set l.owner = :owner, l.expiresAt = :expiresAt
+        where l.name = :name
+            and (l.owner = :owner or l.expiresAt < :now)
+    """)
+    int tryTake(String name, String owner, OffsetDateTime now, OffsetDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("update SchedulerLease l set l.expiresAt = :now where l.name = :name and l.owner = :owner")
+    int release(String name, String owner, OffsetDateTime now);
+}
@@ -0,0 +1,7 @@
+package com.surfmaster.repository;
+
+import com.surfmaster.entities.SpotFetch;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SpotFetchRepository extends JpaRepository<SpotFetch, Long> {
+}
@@ -0,0 +1,108 @@
+package com.surfmaster.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Finds the best contiguous run of forecasts covering at least {@code minHours} hours.
+ * <p>
+ * A window is as good as its worst point, so the best window is the one whose minimum
+ * score is highest. Each point covers the time up to the next one (the last point of a run
+ * repeats the run's previous step), so the length comes from timestamps and not from the
+ * point count: half-hourly data needs twice the points of hourly data. Gaps longer than an
+ * hour split runs. For every start the shortest long-enough window is found with two
+ * pointers and a monotonic deque, in O(n); the winner is then stretched over neighbouring
+ * points that do not lower it.
+ */
+final class BestWindowFinder {
+
+    static final long HOUR_SECONDS = 3600;
+
+    record Window(int start, int end, int peak, double score) {}
+
+    private BestWindowFinder() {
+    }
+
+    /**
+     * @param epochSeconds forecast timestamps, sorted ascending
+     * @param scores score of each forecast point
+     * @param minHours minimum length of the window, in hours
+     * @return the best window, or {@code null} when no run is long enough
+     */
+    static Window find(long[] epochSeconds, double[] scores, int minHours) {
+        int n = scores.length;
+        long minSeconds = Math.max(1, minHours) * HOUR_SECONDS;
+
+        int bestStart = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int[] deque = new int[n];
+
+        int runStart = 0;
+        while (runStart < n) {
+            int runEnd = runStart;
+            while (runEnd + 1 < n && epochSeconds[runEnd + 1] - epochSeconds[runEnd] <= HOUR_SECONDS) {
+                runEnd++;
+            }
+
+            // deque de indices com scores crescentes; a cabeca e o minimo de [s, e].
+            // e so avanca, entao cada indice entra e sai uma vez por run
+            int head = 0;
+            int tail = 0;
+            int e = runStart - 1;
+            for (int s = runStart; s <= runEnd; s++) {
+                while (e < runEnd && (e < s || covered(epochSeconds, runStart, runEnd, s, e) < minSeconds)) {
+                    e++;
+                    while (tail > head && scores[deque[tail - 1]] >= scores[e]) {
+                        tail--;
+                    }
+                    deque[tail++] = e;
+                }
+                if (covered(epochSeconds, runStart, runEnd, s, e) < minSeconds) {
+                    break;
+                }
+                while (deque[head] < s) {
+                    head++;
+                }
+                double windowMin = scores[deque[head]];
+                if (windowMin > bestScore) {
+                    bestScore = windowMin;
+                    bestStart = s;
+                }
+            }
+            runStart = runEnd + 1;
+        }
+
+        if (bestStart < 0) {
+            return null;
+        }
+
+        int start = bestStart;
+        int end = bestStart;
+        while (end + 1 < n && epochSeconds[end + 1] - epochSeconds[end] <= HOUR_SECONDS && scores[end + 1] >= bestScore) {
+            end++;
+        }
+        while (start > 0 && epochSeconds[start] - epochSeconds[start - 1] <= HOUR_SECONDS && scores[start - 1] >= bestScore) {
+            start--;
+        }
+
+        int peak = start;
+        for (int i = start + 1; i <= end; i++) {
+            if (scores[i] > scores[peak]) peak = i;
+        }
+
+        return new Window(start, end, peak, bestScore);
+    }
+
+    // segundos cobertos por [s, e]: do primeiro ponto ate o fim do passo do ultimo
+    private static long covered(long[] epochSeconds, int runStart, int runEnd, int s, int e) {
+        long step;
+        if (e < runEnd) {
+            step = epochSeconds[e + 1] - epochSeconds[e];
+        } else if (e > runStart) {
+            step = epochSeconds[e] - epochSeconds[e - 1];
+        } else {
+            step = HOUR_SECONDS;
+        }
+        return epochSeconds[e] - epochSeconds[s] + step;
+    }
+}
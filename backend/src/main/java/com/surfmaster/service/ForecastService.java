@@ -2,19 +2,32 @@ package com.surfmaster.service;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.surfmaster.config.ForecastProperties;
 import com.surfmaster.dto.ForecastDto;
+import com.surfmaster.dto.ForecastPoint;
 import com.surfmaster.dto.ForecastSyncResponse;
 import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.ForecastsUpdatedEvent;
 import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.grid.ProviderGrid;
 import com.surfmaster.forecast.providers.ForecastProvider;
 import com.surfmaster.forecast.providers.ForecastProviderRegistry;
+import com.surfmaster.forecast.quota.ProviderQuotaScheduler;
+import com.surfmaster.forecast.quota.SpotDemandTracker;
+import com.surfmaster.forecast.store.ForecastSlice;
+import com.surfmaster.forecast.store.ForecastStore;
 import com.surfmaster.mappers.EntityMapper;
 import com.surfmaster.repository.ForecastRepository;
 import com.surfmaster.repository.SpotRepository;
@@ -22,6 +35,9 @@ import com.surfmaster.repository.SpotRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 @RequiredArgsConstructor
@@ -31,15 +47,31 @@ public class ForecastService {
     private final SpotRepository spotRepository;
     private final ForecastProviderRegistry forecastProviderRegistry;
     private final ForecastProperties forecastProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ForecastStore forecastStore;
+    private final ForecastWriter forecastWriter;
+    private final ProviderQuotaScheduler quotaScheduler;
+    private final SpotDemandTracker demandTracker;
 
-    private final Map<Long, OffsetDateTime> lastFetchBySpot = new ConcurrentHashMap<>();
+    // sync em andamento por spot: chamadas concorrentes compartilham o fetch e a gravacao
+    private final SingleFlight<Long, List<Forecast>> inFlightSyncs = new SingleFlight<>();
 
-    @Transactional
+    // sem @Transactional: leitura servida pelo store nao deve pegar conexao
     public List<ForecastDto> getForecastsForSpot(Long spotId, OffsetDateTime from, OffsetDateTime to) {
+        OffsetDateTime effectiveFrom = from != null ? from : defaultFromWindow();
+
+        // demanda so de spots que existem: id arbitrario nao pode crescer o tracker
+        if (forecastStore.covers(effectiveFrom)) {
+            ForecastSlice slice = forecastStore.slice(spotId, effectiveFrom, to);
+            if (slice != null) {
+                demandTracker.record(spotId);
+                return slice.toDtos();
+            }
+        }
+
         spotRepository.findById(spotId)
                 .orElseThrow(() -> new IllegalArgumentException("Spot not found: " + spotId));
-
-        OffsetDateTime effectiveFrom = from != null ? from : defaultFromWindow();
+        demandTracker.record(spotId);
 
         return forecastRepository.findBySpotIdAfter(spotId, effectiveFrom).stream()
                 .filter(f -> to == null || !f.getTimestamp().isAfter(to))
@@ -47,15 +79,57 @@ public class ForecastService {
                 .toList();
     }
 
+    /**
+     * Scoring view of the forecasts of the given spots, ordered by spot and timestamp.
+     */
     @Transactional
-    public List<Forecast> getForecastsBetween(
+    public List<ForecastPoint> getForecastPointsForSpots(
+            Collection<Long> spotIds,
             OffsetDateTime from,
             OffsetDateTime to
     ) {
-        return forecastRepository.findAllInRangeWithSpot(from, to);
+        if (spotIds == null || spotIds.isEmpty()) {
+            return List.of();
+        }
+        return forecastRepository.findPointsForSpotsInRange(spotIds, from, to);
     }
 
-    @Transactional
+    /**
+     * Columnar forecasts of the given spots in {@code [from, to]}, keyed by spot id.
+     * Served from the {@link ForecastStore} when it covers the range, otherwise from the
+     * database. Spots without forecasts are absent from the map.
+     */
+    public Map<Long, ForecastSlice> getForecastSlices(
+            Collection<Long> spotIds,
+            OffsetDateTime from,
+            OffsetDateTime to
+    ) {
+        if (spotIds == null || spotIds.isEmpty()) {
+            return Map.of();
+        }
+
+        if (!forecastStore.covers(from)) {
+            return ForecastSlice.bySpot(getForecastPointsForSpots(spotIds, from, to));
+        }
+
+        Map<Long, ForecastSlice> slices = new HashMap<>();
+        for (Long spotId : spotIds) {
+            ForecastSlice slice = forecastStore.slice(spotId, from, to);
+            if (slice != null && !slice.isEmpty()) {
+                slices.put(spotId, slice);
+            }
+        }
+        return slices;
+    }
+
+    /**
+     * Fetches every due spot concurrently (at most {@code surf.forecast.sync-concurrency}
+     * provider calls in flight, paced and capped by the {@link ProviderQuotaScheduler}) and
+     * persists each one in its own transaction as soon as its response arrives. Spots in the
+     * same cell of the provider's grid share one call, made at the cell's centre (see
+     * {@link ProviderGrid}). A failing spot is logged and skipped; the sync only fails when no
+     * spot could be refreshed at all.
+     */
     public ForecastSyncResponse syncWithProvider(Long spotId, OffsetDateTime from, OffsetDateTime to, boolean force) {
         ForecastProvider provider = forecastProviderRegistry.getConfiguredProvider()
                 .orElseThrow(() -> new IllegalStateException("No external forecast provider configured. Set surf.forecast.provider=stormglass to enable external sync."));
@@ -65,13 +139,68 @@ public class ForecastService {
                         .orElseThrow(() -> new IllegalArgumentException("Spot not found: " + spotId)))
                 : spotRepository.findAll();
 
+        return syncSpots(provider, targets, from, to, force);
+    }
+
+    /**
+     * Same as {@link #syncWithProvider} for an explicit set of spots, used by the background
+     * refresher once it has decided which spots are due.
+     */
+    public ForecastSyncResponse syncSpots(List<Spot> targets, OffsetDateTime from, OffsetDateTime to, boolean force) {
+        ForecastProvider provider = forecastProviderRegistry.getConfiguredProvider()
+                .orElseThrow(() -> new IllegalStateException("No external forecast provider configured. Set surf.forecast.provider=stormglass to enable external sync."));
+        return syncSpots(provider, targets, from, to, force);
+    }
+
+    private ForecastSyncResponse syncSpots(ForecastProvider provider, List<Spot> targets, OffsetDateTime from, OffsetDateTime to, boolean force) {
         if (targets.isEmpty()) {
             return new ForecastSyncResponse(0, 0, List.of());
         }
 
+        OffsetDateTime now = OffsetDateTime.now();
+        OffsetDateTime targetFrom = from != null ? from : now;
+        OffsetDateTime targetTo = determineTargetTo(targetFrom, to);
+        List<Spot> supported = targets.stream()
+                .filter(spot -> supports(provider, spot))
+                .toList();
+        // uma chamada por celula da grade do provider; a celula vence se algum spot venceu
+        List<ProviderGrid.Cell> due = ProviderGrid.group(supported, provider.gridResolutionDegrees()).stream()
+                .filter(cell -> cell.spots().stream().anyMatch(spot -> isDue(provider, spot, now, force)))
+                .toList();
+
+        // quota do dia vai para as celulas mais lidas e mais desatualizadas
+        List<ProviderGrid.Cell> planned = quotaScheduler.prioritizeCells(due, provider.getSource());
+        if (planned.size() < due.size()) {
+            log.info("Provider quota allows {} of {} due grid cells; skipping the least demanded", planned.size(), due.size());
+            if (planned.isEmpty()) {
+                throw new IllegalStateException("Daily forecast provider quota exhausted");
+            }
+        }
+        int plannedSpots = planned.stream().mapToInt(cell -> cell.spots().size()).sum();
+        if (plannedSpots > planned.size()) {
+            log.debug("Coalesced {} spots into {} provider calls", plannedSpots, planned.size());
+        }
+
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        Set<Long> writtenSpotIds = ConcurrentHashMap.newKeySet();
+        List<List<Forecast>> results = Flux.fromIterable(planned)
+                .flatMap(cell -> syncCell(provider, cell, targetFrom, targetTo, now, force, failures, writtenSpotIds),
+                        Math.max(1, forecastProperties.getSyncConcurrency()))
+                .collectList()
+                .block();
+
+        if (!failures.isEmpty() && failures.size() == plannedSpots) {
+            Throwable first = failures.get(0);
+            throw first instanceof RuntimeException re ? re : new IllegalStateException(first.getMessage(), first);
+        }
+
         List<Forecast> persisted = new ArrayList<>();
-        for (Spot spot : targets) {
-            persisted.addAll(refreshSpotForecasts(provider, spot, from, to, force));
+        for (List<Forecast> saved : results != null ? results : List.<List<Forecast>>of()) {
+            persisted.addAll(saved);
+        }
+        // resultado compartilhado ja foi anunciado por quem gravou
+        if (!writtenSpotIds.isEmpty()) {
+            eventPublisher.publishEvent(new ForecastsUpdatedEvent(Set.copyOf(writtenSpotIds)));
         }
 
         return new ForecastSyncResponse(
@@ -81,33 +210,106 @@ public class ForecastService {
         );
     }
 
-    private List<Forecast> refreshSpotForecasts(ForecastProvider provider, Spot spot, OffsetDateTime from, OffsetDateTime to, boolean force) {
+    /**
+     * One provider call for the cell's spots that are not already being synced by a
+     * concurrent caller, then one write per spot. Spots already in flight just wait for
+     * that sync's result instead of fetching and writing again. The call is dropped only
+     * when none of those spots is still due; otherwise every one of them is written, due or not.
+     */
+    private Flux<List<Forecast>> syncCell(ForecastProvider provider, ProviderGrid.Cell cell, OffsetDateTime from,
+                                          OffsetDateTime to, OffsetDateTime fetchedAt, boolean force,
+                                          List<Throwable> failures, Set<Long> writtenSpotIds) {
+        Map<Spot, SingleFlight.Flight<List<Forecast>>> flights = new LinkedHashMap<>();
+        cell.spots().forEach(spot -> flights.put(spot, inFlightSyncs.join(spot.getId())));
+        List<Spot> led = cell.spots().stream()
+                .filter(spot -> flights.get(spot).leader())
+                .toList();
+        // outro sync terminou depois da checagem de TTL: so desiste se a celula inteira ficou em dia.
+        // Senao a chamada sai de qualquer jeito e grava todos os spots da celula que lideramos
+        boolean cellCurrent = !force && led.stream().noneMatch(spot -> isDue(provider, spot, fetchedAt, false));
+        if (cellCurrent) {
+            led.forEach(spot -> inFlightSyncs.succeed(spot.getId(), flights.get(spot), null));
+        }
+
+        Flux<List<Forecast>> shared = Flux.fromIterable(cell.spots())
+                .filter(spot -> !flights.get(spot).leader())
+                .flatMap(spot -> {
+                    log.debug("Spot {} is already being synced; sharing that result", spot.getId());
+                    return flights.get(spot).result()
+                            .onErrorResume(e -> {
+                                failures.add(e);
+                                return Mono.empty();
+                            });
+                });
+        if (led.isEmpty() || cellCurrent) {
+            return shared;
+        }
+
+        // a permissao de quota e tirada por requisicao ao provider, dentro dele (ForecastProviderRegistry)
+        Spot fetchPoint = ProviderGrid.fetchPoint(led.get(0), provider.gridResolutionDegrees());
+        Flux<List<Forecast>> own = Mono.defer(() -> provider.fetchAsync(fetchPoint, from, to))
+                .flatMapMany(forecasts -> Flux.fromIterable(led)
+                        .concatMap(spot -> persist(provider, spot, from, to, forSpot(spot, forecasts), fetchedAt)
+                                .doOnSuccess(saved -> {
+                                    if (saved != null) {
+                                        writtenSpotIds.add(spot.getId());
+                                    }
+                                    inFlightSyncs.succeed(spot.getId(), flights.get(spot), saved);
+                                })
+                                .onErrorResume(e -> {
+                                    log.warn("Saving forecasts for spot {} failed: {}", spot.getId(), e.getMessage());
+                                    inFlightSyncs.fail(spot.getId(), flights.get(spot), e);
+                                    failures.add(e);
+                                    return Mono.empty();
+                                })))
+                .onErrorResume(e -> {
+                    log.warn("Forecast sync via {} failed for spots {}: {}", provider.getSource(),
+                            led.stream().map(Spot::getId).toList(), e.getMessage());
+                    led.forEach(spot -> {
+                        inFlightSyncs.fail(spot.getId(), flights.get(spot), e);
+                        failures.add(e);
+                    });
+                    return Flux.empty();
+                })
+                // cancelado no meio: libera quem ainda esperava
+                .doFinally(signal -> led.forEach(spot -> inFlightSyncs.fail(spot.getId(), flights.get(spot),
+                        new IllegalStateException("Forecast sync of spot " + spot.getId() + " was cancelled"))));
+        return Flux.merge(own, shared);
+    }
+
+    private boolean supports(ForecastProvider provider, Spot spot) {
         if (!provider.supports(spot)) {
             log.debug("Forecast provider {} does not support spot {}", provider.getSource(), spot.getId());
-            return List.of();
+            return false;
         }
+        return true;
+    }
 
-        OffsetDateTime now = OffsetDateTime.now();
-        OffsetDateTime lastFetch = lastFetchBySpot.get(spot.getId());
+    private boolean isDue(ForecastProvider provider, Spot spot, OffsetDateTime now, boolean force) {
+        OffsetDateTime lastFetch = forecastStore.lastFetch(spot.getId());
         if (!force && lastFetch != null && lastFetch.isAfter(now.minus(forecastProperties.ttl()))) {
             log.debug("Skipping spot {} because last fetch via {} happened at {}", spot.getId(), provider.getSource(), lastFetch);
-            return List.of();
+            return false;
         }
+        return true;
+    }
 
-        OffsetDateTime targetFrom = from != null ? from : now;
-        OffsetDateTime targetTo = determineTargetTo(targetFrom, to);
+    // resposta da celula copiada para cada spot: o writer altera as entidades que recebe
+    private static List<Forecast> forSpot(Spot spot, List<Forecast> forecasts) {
+        return forecasts.stream()
+                .map(forecast -> forecast.toBuilder().id(null).spot(spot).build())
+                .toList();
+    }
 
-        List<Forecast> forecasts = provider.fetch(spot, targetFrom, targetTo);
+    // JDBC bloqueia: grava fora das threads do cliente HTTP
+    private Mono<List<Forecast>> persist(ForecastProvider provider, Spot spot, OffsetDateTime from, OffsetDateTime to,
+                                         List<Forecast> forecasts, OffsetDateTime fetchedAt) {
         if (forecasts.isEmpty()) {
             log.debug("Provider {} returned no forecasts for spot {}", provider.getSource(), spot.getName());
-            return List.of();
+            return Mono.empty();
         }
-
-        forecastRepository.deleteAllForSpotBetween(spot.getId(), targetFrom, targetTo);
-        List<Forecast> saved = forecastRepository.saveAll(forecasts);
-        lastFetchBySpot.put(spot.getId(), now);
-
-        return saved;
+        return Mono.fromCallable(() -> forecastWriter.replaceForecasts(spot, from, to, forecasts, fetchedAt))
+                .subscribeOn(Schedulers.boundedElastic());
     }
 
     private OffsetDateTime determineTargetTo(OffsetDateTime from, OffsetDateTime requestedTo) {
@@ -0,0 +1,130 @@
+package com.surfmaster.service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.springframework.stereotype.Component;
+
+import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.SpotFetch;
+import com.surfmaster.forecast.store.ForecastStore;
+import com.surfmaster.repository.ForecastRepository;
+import com.surfmaster.repository.ForecastUpsertRepository;
+import com.surfmaster.repository.SpotFetchRepository;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persists the forecasts fetched for one spot in its own short transaction, so a slow or
+ * failing spot never holds a connection (or rolls back) on behalf of the others.
+ * <p>
+ * Writes are deltas: incoming points are matched to stored rows by timestamp and only new or
+ * changed hours are upserted, so a refresh where most hours are unchanged touches few rows.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ForecastWriter {
+
+    private final ForecastRepository forecastRepository;
+    private final ForecastUpsertRepository forecastUpsertRepository;
+    private final SpotFetchRepository spotFetchRepository;
+    private final ForecastStore forecastStore;
+
+    @Transactional
+    public List<Forecast> replaceForecasts(Spot spot, OffsetDateTime from, OffsetDateTime to, List<Forecast> forecasts, OffsetDateTime fetchedAt) {
+        List<Forecast> saved = syncRange(spot, from, to, forecasts);
+        spotFetchRepository.save(new SpotFetch(spot.getId(), fetchedAt));
+        forecastStore.replace(spot.getId(), from, to, saved);
+        forecastStore.markFetched(spot.getId(), fetchedAt);
+        return saved;
+    }
+
+    /**
+     * Makes the spot's rows in {@code [from, to]} match {@code forecasts}: new and changed hours
+     * are upserted in one JDBC batch, unchanged rows are left alone and rows no longer present
+     * are deleted. Does not touch the {@link ForecastStore}.
+     *
+     * @return the forecasts, one per timestamp in time order, with their row ids
+     */
+    @Transactional
+    public List<Forecast> syncRange(Spot spot, OffsetDateTime from, OffsetDateTime to, List<Forecast> forecasts) {
+        List<Forecast> incoming = latestPerTimestamp(forecasts);
+        OffsetDateTime lower = incoming.isEmpty() ? from : min(from, incoming.get(0).getTimestamp());
+        OffsetDateTime upper = incoming.isEmpty() ? to : max(to, incoming.get(incoming.size() - 1).getTimestamp());
+
+        Map<Long, Forecast> existing = new HashMap<>();
+        for (Forecast current : forecastRepository.findBySpotIdBetween(spot.getId(), lower, upper)) {
+            existing.put(epochSecond(current), current);
+        }
+
+        List<Forecast> changed = new ArrayList<>();
+        for (Forecast forecast : incoming) {
+            forecast.setSpot(spot);
+            Forecast current = existing.remove(epochSecond(forecast));
+            if (current != null) {
+                forecast.setId(current.getId());
+            }
+            if (current == null || !sameValues(current, forecast)) {
+                changed.add(forecast);
+            }
+        }
+
+        // o que sobrou em [from, to] ja nao vem do provider
+        List<Long> stale = existing.values().stream()
+                .filter(f -> !f.getTimestamp().isBefore(from) && !f.getTimestamp().isAfter(to))
+                .map(Forecast::getId)
+                .toList();
+        if (!stale.isEmpty()) {
+            forecastRepository.deleteAllByIdInBatch(stale);
+        }
+        forecastUpsertRepository.upsertAll(changed);
+
+        log.debug("Spot {}: {} forecasts, {} upserted, {} deleted", spot.getId(), incoming.size(), changed.size(), stale.size());
+        return incoming;
+    }
+
+    // ultimo valor vence quando o provider repete uma hora
+    private static List<Forecast> latestPerTimestamp(List<Forecast> forecasts) {
+        Map<Long, Forecast> byEpoch = new TreeMap<>();
+        for (Forecast forecast : forecasts) {
+            if (forecast.getTimestamp() != null) {
+                byEpoch.put(epochSecond(forecast), forecast);
+            }
+        }
+        return new ArrayList<>(byEpoch.values());
+    }
+
+    static boolean sameValues(Forecast a, Forecast b) {
+        return Objects.equals(a.getSwellHeight(), b.getSwellHeight())
+                && a.getSwellPeriod() == b.getSwellPeriod()
+                && a.getSwellDirection() == b.getSwellDirection()
+                && Objects.equals(a.getSwellDirectionDegrees(), b.getSwellDirectionDegrees())
+                && Objects.equals(a.getWindSpeed(), b.getWindSpeed())
+                && a.getWindDirection() == b.getWindDirection()
+                && Objects.equals(a.getWindDirectionDegrees(), b.getWindDirectionDegrees())
+                && Objects.equals(a.getTideHeight(), b.getTideHeight())
+                && a.getWaterTemperature() == b.getWaterTemperature()
+                && a.getDataSource() == b.getDataSource();
+    }
+
+    private static long epochSecond(Forecast forecast) {
+        return forecast.getTimestamp().toEpochSecond();
+    }
+
+    private static OffsetDateTime min(OffsetDateTime a, OffsetDateTime b) {
+        return b.isBefore(a) ? b : a;
+    }
+
+    private static OffsetDateTime max(OffsetDateTime a, OffsetDateTime b) {
+        return b.isAfter(a) ? b : a;
+    }
+}
@@ -0,0 +1,232 @@
+package com.surfmaster.service;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.surfmaster.config.RecommendationProperties;
+import com.surfmaster.dto.RecommendationRequest;
+import com.surfmaster.entities.ForecastsUpdatedEvent;
+import com.surfmaster.entities.Objective;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.SpotChangedEvent;
+import com.surfmaster.entities.UserLevel;
+import com.surfmaster.service.geo.SpotGeoIndex;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * LRU cache of recommendation results keyed by a quantized request.
+ * <p>
+ * Requests are snapped to a lat/lon cell, a radius bucket and the hourly grid of the
+ * forecasts. An entry holds the full ranking for a circle around the cell centre wide enough
+ * to contain the circle of any request mapping to its key; the caller cuts it down to its own
+ * centre, radius and topK. Entries remember which spots they looked at, are dropped when
+ * forecasts for any of those spots are synced and expire after {@code ttl}.
+ */
+@Component
+@Slf4j
+public class RecommendationCache {
+
+    record Key(long latCell, long lonCell, int radiusBucket, UserLevel level, Objective objective,
+               long startEpoch, long endEpoch, Integer minWindowHours) {}
+
+    /**
+     * Candidate spots scanned for the request and every scored window among them, best first.
+     * {@code spotIds} are the ids of the candidates, used for invalidation.
+     */
+    record Entry(OffsetDateTime generatedAt, List<Spot> candidates,
+                 List<RecommendationService.ScoredWindow> ranked, Set<Long> spotIds) {}
+
+    private record Stored(Entry entry, long expiresAtNanos) {}
+
+    private final RecommendationProperties.Cache config;
+    private final Map<Key, Stored> entries;
+    private final LongSupplier nanoTime;
+
+    // incrementado a cada invalidacao; um calculo iniciado antes dela nao e guardado
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter expirations;
+    private final Counter invalidations;
+
+    @Autowired
+    public RecommendationCache(RecommendationProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RecommendationCache(RecommendationProperties properties, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.config = properties.getCache();
+        this.nanoTime = nanoTime;
+        int maxEntries = config.getMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Stored> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder("surf.recommendation.cache.requests")
+                .tag("result", "hit")
+                .description("Recommendation requests served from cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("surf.recommendation.cache.requests")
+                .tag("result", "miss")
+                .description("Recommendation requests computed from forecasts")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("surf.recommendation.cache.evictions")
+                .description("Entries evicted by the LRU size bound")
+                .register(meterRegistry);
+        this.expirations = Counter.builder("surf.recommendation.cache.expirations")
+                .description("Entries dropped because their TTL passed")
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("surf.recommendation.cache.invalidations")
+                .description("Entries dropped because their forecasts or spots changed")
+                .register(meterRegistry);
+        Gauge.builder("surf.recommendation.cache.size", this, RecommendationCache::size)
+                .register(meterRegistry);
+        Gauge.builder("surf.recommendation.cache.hit.ratio", this, RecommendationCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.getMaxEntries() > 0;
+    }
+
+    /**
+     * Request computed for the key: centred on the cell, with the radius of the bucket plus the
+     * distance from the centre to the farthest corner of the cell (so it covers the circle of
+     * every request in the key) and the time window shrunk to whole hours (the same hourly
+     * forecast points fall inside it).
+     */
+    public RecommendationRequest canonicalize(RecommendationRequest request) {
+        Key key = keyFor(request);
+        double cell = config.getCellDegrees();
+        double latitude = Math.max(-90.0, Math.min(90.0, (key.latCell() + 0.5) * cell));
+        double longitude = (key.lonCell() + 0.5) * cell;
+        // o canto mais perto do equador e o mais distante (grau de longitude maior)
+        double halfDiagonalKm = Math.max(
+                SpotGeoIndex.distanceKm(latitude, longitude, latitude - cell / 2, longitude + cell / 2),
+                SpotGeoIndex.distanceKm(latitude, longitude, latitude + cell / 2, longitude + cell / 2));
+        return new RecommendationRequest(
+                longitude,
+                latitude,
+                request.userLevel(),
+                request.objective(),
+                key.radiusBucket() * config.getRadiusBucketKm() + halfDiagonalKm,
+                OffsetDateTime.ofInstant(Instant.ofEpochSecond(key.startEpoch()), ZoneOffset.UTC),
+                OffsetDateTime.ofInstant(Instant.ofEpochSecond(key.endEpoch()), ZoneOffset.UTC),
+                request.topK(),
+                request.minWindowHours()
+        );
+    }
+
+    public Key keyFor(RecommendationRequest request) {
+        double cell = config.getCellDegrees();
+        OffsetDateTime start = request.timeStart().truncatedTo(ChronoUnit.HOURS);
+        if (start.isBefore(request.timeStart())) {
+            start = start.plusHours(1);
+        }
+        OffsetDateTime end = request.timeEnd().truncatedTo(ChronoUnit.HOURS);
+        return new Key(
+                (long) Math.floor(request.latitude() / cell),
+                (long) Math.floor(request.longitude() / cell),
+                (int) Math.ceil(request.maxDistanceKm() / config.getRadiusBucketKm()),
+                request.userLevel(),
+                request.objective(),
+                start.toEpochSecond(),
+                end.toEpochSecond(),
+                request.minWindowHours()
+        );
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public Entry get(Key key) {
+        long now = nanoTime.getAsLong();
+        Stored stored;
+        synchronized (entries) {
+            stored = entries.get(key);
+            if (stored != null && now - stored.expiresAtNanos() >= 0) {
+                entries.remove(key);
+                expirations.increment();
+                stored = null;
+            }
+        }
+        if (stored != null) {
+            hits.increment();
+            return stored.entry();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /** Stores the entry unless something was invalidated since {@code generationAtStart}. */
+    public void put(Key key, Entry entry, long generationAtStart) {
+        synchronized (entries) {
+            if (generation.get() == generationAtStart) {
+                entries.put(key, new Stored(entry, nanoTime.getAsLong() + config.getTtl().toNanos()));
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onForecastsUpdated(ForecastsUpdatedEvent event) {
+        int removed;
+        synchronized (entries) {
+            generation.incrementAndGet();
+            int before = entries.size();
+            entries.values().removeIf(s -> s.entry().spotIds().stream().anyMatch(event.spotIds()::contains));
+            removed = before - entries.size();
+        }
+        invalidations.increment(removed);
+        log.debug("Recommendation cache dropped {} entries after forecast sync of spots {}", removed, event.spotIds());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSpotChanged(SpotChangedEvent event) {
+        // spot novo/movido pode entrar no raio de qualquer entrada
+        int removed;
+        synchronized (entries) {
+            generation.incrementAndGet();
+            removed = entries.size();
+            entries.clear();
+        }
+        invalidations.increment(removed);
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+}
@@ -2,26 +2,31 @@ package com.surfmaster.service;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
 
 import org.springframework.stereotype.Service;
 
+import com.surfmaster.config.RecommendationProperties;
+import com.surfmaster.dto.ForecastPoint;
 import com.surfmaster.dto.RecommendationItem;
 import com.surfmaster.dto.RecommendationRequest;
 import com.surfmaster.dto.RecommendationResponse;
-import com.surfmaster.entities.Direction;
-import com.surfmaster.entities.Forecast;
-import com.surfmaster.entities.Objective;
 import com.surfmaster.entities.Reason;
 import com.surfmaster.entities.ReasonType;
 import com.surfmaster.entities.Risk;
 import com.surfmaster.entities.RiskType;
 import com.surfmaster.entities.Spot;
 import com.surfmaster.entities.UserLevel;
-import com.surfmaster.repository.SpotRepository;
+import com.surfmaster.forecast.quota.SpotDemandTracker;
+import com.surfmaster.forecast.store.ForecastBlock;
+import com.surfmaster.forecast.store.ForecastSlice;
+import com.surfmaster.service.geo.SpotGeoIndex;
+import com.surfmaster.service.scoring.ScoringModelCache;
+import com.surfmaster.service.scoring.SpotScoringModel;
 
 import lombok.RequiredArgsConstructor;
 
@@ -29,143 +34,153 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class RecommendationService {
 
+    // direcao "alinhada" = dentro do setor de 45 graus em torno da ideal; no modo EXACT o match ja e 0 ou 1
+    private static final double ALIGNED_MATCH = Math.cos(Math.toRadians(22.5));
+
     private final ForecastService forecastService;
-    private final SpotRepository spotRepository;
+    private final SpotGeoIndex spotGeoIndex;
+    private final ForkJoinPool scoringPool;
+    private final RecommendationProperties recommendationProperties;
+    private final ScoringModelCache scoringModelCache;
+    private final RecommendationCache recommendationCache;
+    private final SpotDemandTracker demandTracker;
 
     public RecommendationResponse recommend(RecommendationRequest request) {
         validateRequest(request);
 
         int topK = request.topK() != null ? request.topK() : 3;
-
-        List<Forecast> forecasts = forecastService.getForecastsBetween(
-                request.timeStart(),
-                request.timeEnd()
-        );
-
-        Map<Long, List<Forecast>> forecastsBySpot = forecasts.stream()
-                .collect(Collectors.groupingBy(f -> f.getSpot().getId()));
-
-        List<RecommendationItem> items = new ArrayList<>();
-
-        for (Spot spot : spotRepository.findAll()) {
-            List<Forecast> spotForecasts = forecastsBySpot.get(spot.getId());
-            if (spotForecasts == null || spotForecasts.isEmpty()) continue;
-
-            // ordenar por timestamp
-            spotForecasts = spotForecasts.stream()
-                    .sorted(Comparator.comparing(Forecast::getTimestamp))
+        RecommendationCache.Entry result;
+        List<Spot> candidates;
+        List<ScoredWindow> winners;
+        if (recommendationCache.isEnabled()) {
+            RecommendationCache.Key key = recommendationCache.keyFor(request);
+            result = recommendationCache.get(key);
+            if (result == null) {
+                long generation = recommendationCache.generation();
+                // ranking completo: o corte de raio e topK e de cada request
+                result = compute(recommendationCache.canonicalize(request), Integer.MAX_VALUE);
+                recommendationCache.put(key, result, generation);
+            }
+            // a entrada cobre um circulo maior, centrado na celula
+            candidates = result.candidates().stream().filter(spot -> withinReach(spot, request)).toList();
+            winners = result.ranked().stream()
+                    .filter(scored -> withinReach(scored.spot(), request))
+                    .limit(topK)
                     .toList();
-
-            // V1: escolhe o melhor "ponto" (melhor hora) como janela de 1 ponto
-            RecommendationItem best = buildBestItemForSpot(spot, spotForecasts, request);
-            if (best != null) items.add(best);
+        } else {
+            result = compute(request, topK);
+            candidates = result.candidates();
+            winners = result.ranked();
         }
-
-        List<RecommendationItem> top = items.stream()
-                .sorted(Comparator.comparingDouble(i -> ((RecommendationItem) i).score() == null ? Double.NEGATIVE_INFINITY : ((RecommendationItem) i).score()).reversed())
-                .limit(topK)
-                .toList();
+        // hits do cache tambem contam como leitura dos spots
+        demandTracker.recordAll(candidates.stream().map(Spot::getId).toList());
 
         return new RecommendationResponse(
-                OffsetDateTime.now(),
+                result.generatedAt(),
                 request.timeStart(),
                 request.timeEnd(),
-                top
+                winners.stream().map(winner -> toItem(winner, request)).toList()
         );
     }
 
-    private RecommendationItem buildBestItemForSpot(Spot spot, List<Forecast> forecasts, RecommendationRequest req) {
-
-        RecommendationItem bestItem = null;
-        double bestScore = Double.NEGATIVE_INFINITY;
-
-        for (Forecast f : forecasts) {
-            double score = score(spot, f, req);
-
-            if (score > bestScore) {
-                bestScore = score;
-
-                List<Reason> reasons = buildReasons(spot, f, req, score);
-                List<Risk> risks = buildRisks(spot, f, req, score);
-
-                bestItem = new RecommendationItem(
-                        spot.getId(),
-                        spot.getName(),
-                        f.getTimestamp(),  // V1: janela = instante
-                        f.getTimestamp(),
-                        f.getTimestamp(),
-                        score,
-                        reasons,
-                        risks,
-                        confidenceFromScore(score)
-                );
-            }
-        }
-
-        return bestItem;
+    private static boolean withinReach(Spot spot, RecommendationRequest request) {
+        return spot.getLatitude() != null && spot.getLongitude() != null
+                && SpotGeoIndex.distanceKm(request.latitude(), request.longitude(),
+                        spot.getLatitude(), spot.getLongitude()) <= request.maxDistanceKm();
     }
 
-    // --------- SCORE (V1 simples) ---------
-
-    private double score(Spot spot, Forecast f, RecommendationRequest req) {
-        // swell and wind direction: 0..1
-        double swellDir = dirMatch(spot.getSwellBestDirection(), f.getSwellDirection());
-        double windDir  = dirMatch(spot.getWindBestDirection(), f.getWindDirection());
-
-        // swell altura: penaliza swell alto pra beginner
-        double swellHeightScore = swellHeightScore(f.getSwellHeight(), req.userLevel());
+    private RecommendationCache.Entry compute(RecommendationRequest request, int topK) {
+        List<Spot> nearbySpots = spotGeoIndex.findWithinRadius(
+                request.latitude(),
+                request.longitude(),
+                request.maxDistanceKm()
+        );
+        if (nearbySpots.isEmpty()) {
+            return new RecommendationCache.Entry(OffsetDateTime.now(), List.of(), List.of(), Set.of());
+        }
 
-        // penalidade de vento por objective
-        double windPenalty = windPenalty(f.getWindSpeed(), req.objective());
+        List<Long> spotIds = nearbySpots.stream().map(Spot::getId).toList();
+        Map<Long, ForecastSlice> forecastsBySpot = forecastService.getForecastSlices(
+                spotIds,
+                request.timeStart(),
+                request.timeEnd()
+        );
 
-        double windScore = windDir * (1.0 - windPenalty);
-        double swellScore = swellDir * swellHeightScore;
+        // scoring guarda so (spot, indices da janela, score); explicacoes ficam para os vencedores
+        Collector<Spot, TopK<ScoredWindow>, TopK<ScoredWindow>> topKCollector = Collector.of(
+                () -> new TopK<>(topK),
+                (heap, spot) -> {
+                    // colunas ja ordenadas por timestamp
+                    ForecastSlice spotForecasts = forecastsBySpot.get(spot.getId());
+                    if (spotForecasts == null || spotForecasts.isEmpty()) return;
+
+                    // melhor janela contigua com pelo menos minWindowHours horas
+                    BestWindowFinder.Window window = findBestWindow(spot, spotForecasts, request);
+                    if (window != null && heap.accepts(window.score(), spot.getId())) {
+                        heap.offer(window.score(), spot.getId(), new ScoredWindow(spot, spotForecasts, window));
+                    }
+                },
+                TopK::merge
+        );
 
-        // pesos
-        double score01 = 0.55 * swellScore + 0.45 * windScore;
+        // poucos spots: nao compensa sair da thread do request
+        TopK<ScoredWindow> heap = nearbySpots.size() < recommendationProperties.getParallelThreshold()
+                ? nearbySpots.stream().collect(topKCollector)
+                : scoringPool.submit(() -> nearbySpots.parallelStream().collect(topKCollector)).join();
 
-        return 100.0 * clamp01(score01);
+        return new RecommendationCache.Entry(
+                OffsetDateTime.now(), nearbySpots, heap.toSortedList(), Set.copyOf(spotIds));
     }
 
-    private double swellHeightScore(Double h, UserLevel level) {
-        if (h == null || h <= 0) return 0.0;
-
-        double maxOk = switch (level) {
-            case BEGINNER -> 1.2;
-            case INTERMEDIATE -> 2.0;
-            case ADVANCED -> 3.0;
-        };
+    // indices da janela sao relativos ao inicio do slice
+    record ScoredWindow(Spot spot, ForecastSlice forecasts, BestWindowFinder.Window window) {}
+
+    private BestWindowFinder.Window findBestWindow(Spot spot, ForecastSlice forecasts, RecommendationRequest req) {
+        SpotScoringModel model = scoringModelCache.get(spot, req.userLevel(), req.objective());
+
+        ForecastBlock block = forecasts.block();
+        int offset = forecasts.start();
+        int n = forecasts.size();
+        double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            int k = offset + i;
+            scores[i] = model.score(
+                    block.swellHeight(k),
+                    SpotScoringModel.bearingIndex(block.swellDirectionDegrees(k), block.swellDirection(k)),
+                    block.windSpeed(k),
+                    SpotScoringModel.bearingIndex(block.windDirectionDegrees(k), block.windDirection(k))
+            );
+        }
 
-        if (h <= maxOk) return 1.0;
-        double worst = maxOk * 2.0;
-        if (h >= worst) return 0.0;
-        return 1.0 - (h - maxOk) / (worst - maxOk);
+        int minWindowHours = req.minWindowHours() != null ? req.minWindowHours() : 1;
+        return BestWindowFinder.find(block.epochSeconds(offset, forecasts.end()), scores, minWindowHours);
     }
 
-    private double windPenalty(Double windSpeed, Objective objective) {
-        if (windSpeed == null) return 0.5; // conservador
-
-        // NOTE: adjust according to unit (km/h vs m/s)
-        double OK = 12.0;
-        double BAD = 25.0;
-
-        double base;
-        if (windSpeed <= OK) base = 0.0;
-        else if (windSpeed >= BAD) base = 1.0;
-        else base = (windSpeed - OK) / (BAD - OK);
-
-        double mult = switch (objective) {
-            case FUN -> 1.25;
-            case TRAINING -> 0.85;
-        };
-
-        return clamp01(base * mult);
+    private RecommendationItem toItem(ScoredWindow scored, RecommendationRequest req) {
+        Spot spot = scored.spot();
+        SpotScoringModel model = scoringModelCache.get(spot, req.userLevel(), req.objective());
+        ForecastBlock block = scored.forecasts().block();
+        int offset = scored.forecasts().start();
+        BestWindowFinder.Window window = scored.window();
+
+        // score da janela = pior hora dentro dela; reasons/risks vem do pico
+        ForecastPoint peak = block.toPoint(offset + window.peak());
+        double score = window.score();
+
+        return new RecommendationItem(
+                spot.getId(),
+                spot.getName(),
+                block.timestamp(offset + window.start()),
+                block.timestamp(offset + window.end()),
+                peak.timestamp(),
+                score,
+                buildReasons(model, peak, score),
+                buildRisks(spot, peak, req, score),
+                confidenceFromScore(score)
+        );
     }
 
-    private double dirMatch(Direction best, Direction actual) {
-        if (best == null || actual == null) return 0.0;
-        return best == actual ? 1.0 : 0.0; // V1 ultra simples
-    }
+    // --------- SCORE ---------
 
     private double confidenceFromScore(double score) {
         // score 0..100 -> confidence 0.2..0.9
@@ -179,34 +194,39 @@ public class RecommendationService {
 
     // --------- REASONS / RISKS ---------
 
-    private List<Reason> buildReasons(Spot spot, Forecast f, RecommendationRequest req, double score) {
+    // mesmo match de direcao que pontuou o spot, para o texto nao contradizer o ranking
+    private List<Reason> buildReasons(SpotScoringModel model, ForecastPoint f, double score) {
         List<Reason> reasons = new ArrayList<>();
+        double swellMatch = model.swellDirectionMatch(
+                SpotScoringModel.bearingIndex(f.swellDirectionDegrees(), f.swellDirection()));
+        double windMatch = model.windDirectionMatch(
+                SpotScoringModel.bearingIndex(f.windDirectionDegrees(), f.windDirection()));
 
-        if (spot.getSwellBestDirection() == f.getSwellDirection()) {
+        if (swellMatch >= ALIGNED_MATCH) {
             reasons.add(new Reason(ReasonType.SWELL, "Swell aligned with the spot's ideal direction"));
         } else {
             reasons.add(new Reason(ReasonType.SWELL, "Swell acceptable (not perfect but within range)"));
         }
 
-        if (spot.getWindBestDirection() == f.getWindDirection()) {
+        if (windMatch >= ALIGNED_MATCH) {
             reasons.add(new Reason(ReasonType.WIND, "Wind aligned with the spot's ideal direction"));
         } else {
             reasons.add(new Reason(ReasonType.WIND, "Wind not ideal, but penalty is under control"));
         }
 
-        reasons.add(new Reason(ReasonType.OTHER, String.format("Score V1: %.1f/100", score)));
+        reasons.add(new Reason(ReasonType.OTHER, String.format("Window score (worst hour): %.1f/100", score)));
 
         return reasons;
     }
 
-    private List<Risk> buildRisks(Spot spot, Forecast f, RecommendationRequest req, double score) {
+    private List<Risk> buildRisks(Spot spot, ForecastPoint f, RecommendationRequest req, double score) {
         List<Risk> risks = new ArrayList<>();
 
-        if (f.getWindSpeed() != null && f.getWindSpeed() > 18) {
+        if (f.windSpeed() != null && f.windSpeed() > 18) {
             risks.add(new Risk(RiskType.STRONG_WIND, "Moderate/strong wind may ruin wave formation"));
         }
 
-        if (req.userLevel() == UserLevel.BEGINNER && f.getSwellHeight() != null && f.getSwellHeight() > 1.2) {
+        if (req.userLevel() == UserLevel.BEGINNER && f.swellHeight() != null && f.swellHeight() > 1.2) {
             risks.add(new Risk(RiskType.TOO_BIG_FOR_LEVEL, "Swell height may be above the ideal range for beginners"));
         }
 
@@ -249,6 +269,14 @@ public class RecommendationService {
             throw new IllegalArgumentException("Objective cannot be null");
         }
 
+        if (request.topK() != null && request.topK() < 0) {
+            throw new IllegalArgumentException("Top K cannot be negative");
+        }
+
+        if (request.topK() != null && request.topK() > recommendationProperties.getMaxTopK()) {
+            throw new IllegalArgumentException("Top K must be at most " + recommendationProperties.getMaxTopK());
+        }
+
         if (request.maxDistanceKm() == null || request.maxDistanceKm() <= 0 || request.maxDistanceKm() > 200.0) {
             throw new IllegalArgumentException("Max distance must be positive and less than or equal to 200 km");
         }
@@ -256,5 +284,9 @@ public class RecommendationService {
         if (request.timeStart() == null || request.timeEnd() == null || request.timeEnd().isBefore(request.timeStart())) {
             throw new IllegalArgumentException("Invalid time range");
         }
+
+        if (request.minWindowHours() != null && request.minWindowHours() < 1) {
+            throw new IllegalArgumentException("Min window hours must be at least 1");
+        }
     }
 }
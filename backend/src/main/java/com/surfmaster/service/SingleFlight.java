@@ -0,0 +1,57 @@
+package com.surfmaster.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Per-key single flight: the first caller to {@link #join} a key leads the work, later
+ * callers get the leader's result until it is completed. Completing removes the key, so the
+ * next caller starts a fresh flight; followers that joined just before still see the result
+ * because the sink replays it.
+ */
+final class SingleFlight<K, V> {
+
+    /** A caller's stake in one key. Only the leader completes it. */
+    record Flight<V>(Sinks.One<V> sink, boolean leader) {
+
+        Mono<V> result() {
+            return sink.asMono();
+        }
+    }
+
+    private final Map<K, Sinks.One<V>> inFlight = new ConcurrentHashMap<>();
+
+    Flight<V> join(K key) {
+        Sinks.One<V> mine = Sinks.one();
+        Sinks.One<V> existing = inFlight.putIfAbsent(key, mine);
+        return existing == null ? new Flight<>(mine, true) : new Flight<>(existing, false);
+    }
+
+    // valor null completa vazio; completar de novo nao tem efeito
+    void succeed(K key, Flight<V> flight, V value) {
+        if (!flight.leader()) {
+            return;
+        }
+        inFlight.remove(key, flight.sink());
+        if (value == null) {
+            flight.sink().tryEmitEmpty();
+        } else {
+            flight.sink().tryEmitValue(value);
+        }
+    }
+
+    void fail(K key, Flight<V> flight, Throwable error) {
+        if (!flight.leader()) {
+            return;
+        }
+        inFlight.remove(key, flight.sink());
+        flight.sink().tryEmitError(error);
+    }
+
+    int size() {
+        return inFlight.size();
+    }
+}
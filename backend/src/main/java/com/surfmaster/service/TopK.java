@@ -0,0 +1,70 @@
+package com.surfmaster.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Fixed-size min-heap keeping the {@code capacity} highest scored values.
+ * Ties are broken by the lower id so results don't depend on arrival order.
+ * Not thread-safe: each thread fills its own instance and they are merged afterwards.
+ */
+final class TopK<T> {
+
+    private record Entry<T>(double score, long id, T value) {}
+
+    // pior primeiro: menor score, e no empate o maior id
+    private static final Comparator<Entry<?>> WORST_FIRST = Comparator
+            .<Entry<?>>comparingDouble(Entry::score)
+            .thenComparing(Comparator.<Entry<?>>comparingLong(Entry::id).reversed());
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int capacity;
+    private final PriorityQueue<Entry<T>> heap;
+
+    TopK(int capacity) {
+        this.capacity = capacity;
+        // cresce sob demanda: capacity grande nao pode virar alocacao antecipada
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(capacity, INITIAL_CAPACITY)), WORST_FIRST);
+    }
+
+    /** Whether a value with this score would currently make it into the heap. */
+    boolean accepts(double score, long id) {
+        if (capacity <= 0) return false;
+        if (heap.size() < capacity) return true;
+        Entry<T> worst = heap.peek();
+        return score > worst.score() || (score == worst.score() && id < worst.id());
+    }
+
+    void offer(double score, long id, T value) {
+        offer(new Entry<>(score, id, value));
+    }
+
+    TopK<T> merge(TopK<T> other) {
+        other.heap.forEach(this::offer);
+        return this;
+    }
+
+    /** Values ordered from best to worst. */
+    List<T> toSortedList() {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort(WORST_FIRST.reversed());
+        List<T> values = new ArrayList<>(entries.size());
+        for (Entry<T> e : entries) {
+            values.add(e.value());
+        }
+        return values;
+    }
+
+    private void offer(Entry<T> entry) {
+        if (capacity <= 0) return;
+        if (heap.size() < capacity) {
+            heap.add(entry);
+        } else if (WORST_FIRST.compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+}
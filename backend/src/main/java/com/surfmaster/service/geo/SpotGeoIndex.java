@@ -0,0 +1,148 @@
+package com.surfmaster.service.geo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.SpotChangedEvent;
+import com.surfmaster.repository.SpotRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory lat/lon grid over the spot catalog.
+ * Radius queries only visit the cells overlapping the search bounding box,
+ * so their cost depends on the spots nearby instead of on the whole catalog.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SpotGeoIndex {
+
+    static final double CELL_DEGREES = 0.5;
+    static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+    private static final int LON_CELLS = (int) Math.ceil(360.0 / CELL_DEGREES);
+
+    private final SpotRepository spotRepository;
+
+    // cada invalidacao incrementa; um grid montado antes dela nunca volta a valer
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Grid grid;
+
+    public List<Spot> findWithinRadius(double latitude, double longitude, double radiusKm) {
+        Grid current = grid();
+        if (current.cells.isEmpty()) {
+            return List.of();
+        }
+
+        double dLat = radiusKm / KM_PER_DEGREE_LAT;
+        int minLatCell = latCell(Math.max(-90.0, latitude - dLat));
+        int maxLatCell = latCell(Math.min(90.0, latitude + dLat));
+
+        // perto dos polos (ou raios enormes) a caixa cobre todas as longitudes
+        double cosLat = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(latitude) + dLat)));
+        double dLon = radiusKm / (KM_PER_DEGREE_LAT * cosLat);
+        int minLonCell = rawLonCell(longitude - dLon);
+        int lonSpan = dLon >= 180.0
+                ? LON_CELLS
+                : Math.min(LON_CELLS, rawLonCell(longitude + dLon) - minLonCell + 1);
+
+        List<Spot> result = new ArrayList<>();
+        for (int la = minLatCell; la <= maxLatCell; la++) {
+            for (int i = 0; i < lonSpan; i++) {
+                int lo = Math.floorMod(minLonCell + i, LON_CELLS);
+                List<Entry> bucket = current.cells.get(key(la, lo));
+                if (bucket == null) continue;
+                for (Entry e : bucket) {
+                    if (distanceKm(latitude, longitude, e.latitude, e.longitude) <= radiusKm) {
+                        result.add(e.spot);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private Grid build(long builtAt) {
+        Map<Long, List<Entry>> cells = new HashMap<>();
+        int indexed = 0;
+        for (Spot spot : spotRepository.findAll()) {
+            if (spot.getLatitude() == null || spot.getLongitude() == null) continue;
+            double lat = spot.getLatitude();
+            double lon = spot.getLongitude();
+            cells.computeIfAbsent(key(latCell(lat), lonCell(lon)), k -> new ArrayList<>())
+                    .add(new Entry(lat, lon, spot));
+            indexed++;
+        }
+        log.debug("Spot geo index rebuilt with {} spots in {} cells", indexed, cells.size());
+        return new Grid(cells, builtAt);
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSpotChanged(SpotChangedEvent event) {
+        invalidate();
+    }
+
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dPhi / 2) * Math.sin(dPhi / 2)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.sin(dLambda / 2) * Math.sin(dLambda / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Grid of the current generation, rebuilt if a spot changed since it was built. The
+     * generation is read before the catalog, so a change that lands during a rebuild leaves
+     * the new grid already stale and the next query rebuilds again.
+     */
+    private Grid grid() {
+        Grid current = grid;
+        if (current == null || current.generation() != generation.get()) {
+            synchronized (this) {
+                current = grid;
+                long wanted = generation.get();
+                if (current == null || current.generation() != wanted) {
+                    current = build(wanted);
+                    grid = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static int latCell(double lat) {
+        return (int) Math.floor((lat + 90.0) / CELL_DEGREES);
+    }
+
+    // sem wrap: pode sair de [0, LON_CELLS) quando a caixa cruza o antimeridiano
+    private static int rawLonCell(double lon) {
+        return (int) Math.floor((lon + 180.0) / CELL_DEGREES);
+    }
+
+    private static int lonCell(double lon) {
+        return Math.floorMod(rawLonCell(lon), LON_CELLS);
+    }
+
+    private static long key(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+    }
+
+    private record Entry(double latitude, double longitude, Spot spot) {}
+
+    private record Grid(Map<Long, List<Entry>> cells, long generation) {}
+}
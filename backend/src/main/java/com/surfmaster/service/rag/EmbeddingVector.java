@@ -0,0 +1,105 @@
+package com.surfmaster.service.rag;
+
+import com.surfmaster.config.LlmProperties.EmbeddingPrecision;
+
+/**
+ * A spot embedding normalized to unit length once, when it is stored, so similarity to a
+ * query is a single dot product. {@link Float32} keeps 4 bytes per dimension; {@link Int8}
+ * keeps 1 byte plus a per-vector scale (symmetric scalar quantization), with a similarity
+ * error around 1e-3 for 768-dim vectors.
+ */
+sealed interface EmbeddingVector permits EmbeddingVector.Float32, EmbeddingVector.Int8 {
+
+    int dimensions();
+
+    /** Similarity to a query already passed through {@link #normalize}. */
+    double similarity(float[] query);
+
+    double similarity(EmbeddingVector other);
+
+    static EmbeddingVector encode(double[] raw, EmbeddingPrecision precision) {
+        float[] unit = normalize(raw);
+        return precision == EmbeddingPrecision.INT8 ? Int8.quantize(unit) : new Float32(unit);
+    }
+
+    /** Unit-length float copy of the vector (all zeros if the vector is zero). */
+    static float[] normalize(double[] vector) {
+        double norm = 0;
+        for (double v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] unit = new float[vector.length];
+        if (norm == 0) {
+            return unit;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    record Float32(float[] values) implements EmbeddingVector {
+
+        @Override
+        public int dimensions() {
+            return values.length;
+        }
+
+        @Override
+        public double similarity(float[] query) {
+            return query.length == values.length ? VectorMath.dot(query, values) : 0.0;
+        }
+
+        @Override
+        public double similarity(EmbeddingVector other) {
+            return other.similarity(values);
+        }
+    }
+
+    record Int8(byte[] codes, float scale) implements EmbeddingVector {
+
+        static Int8 quantize(float[] unit) {
+            float max = 0;
+            for (float v : unit) {
+                max = Math.max(max, Math.abs(v));
+            }
+            float scale = max / 127f;
+            byte[] codes = new byte[unit.length];
+            if (scale > 0) {
+                for (int i = 0; i < unit.length; i++) {
+                    codes[i] = (byte) Math.round(unit[i] / scale);
+                }
+            }
+            return new Int8(codes, scale);
+        }
+
+        @Override
+        public int dimensions() {
+            return codes.length;
+        }
+
+        @Override
+        public double similarity(float[] query) {
+            return query.length == codes.length ? VectorMath.dot(query, codes) * scale : 0.0;
+        }
+
+        @Override
+        public double similarity(EmbeddingVector other) {
+            if (other instanceof Int8 int8) {
+                return int8.codes.length == codes.length
+                        ? VectorMath.dot(codes, int8.codes) * (double) scale * int8.scale
+                        : 0.0;
+            }
+            return other.similarity(toFloats());
+        }
+
+        float[] toFloats() {
+            float[] values = new float[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                values[i] = codes[i] * scale;
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.surfmaster.service.rag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process HNSW graph (Malkov and Yashunin) for cosine nearest-neighbour search.
+ * <p>
+ * Stored vectors are unit-length {@link EmbeddingVector}s, so similarity is a dot product.
+ * The index keeps the caller's vector rather than a copy. Each node lives on
+ * layers {@code 0..level} with a level drawn from an exponential distribution. A search
+ * walks greedily down the sparse upper layers and then runs a beam of width {@code ef} on
+ * layer 0, visiting a few hundred nodes instead of the whole catalog.
+ * <p>
+ * Updating an id inserts a new node and tombstones the old one. Tombstones still route
+ * searches but are never returned. The graph is rebuilt once they outnumber the live
+ * nodes. Searches share a read lock; inserts and removals take the write lock.
+ */
+final class HnswIndex {
+
+    record Hit(long id, double similarity) {}
+
+    private record Candidate(int node, double similarity) {}
+
+    // similaridade de um ponto fixo (consulta ou no novo) ate um no do grafo
+    @FunctionalInterface
+    private interface Similarity {
+        double to(EmbeddingVector vector);
+    }
+
+    private static final Comparator<Candidate> CLOSEST_FIRST =
+            Comparator.comparingDouble(Candidate::similarity).reversed();
+    private static final Comparator<Candidate> FARTHEST_FIRST =
+            Comparator.comparingDouble(Candidate::similarity);
+
+    private final int m;
+    private final int maxLayer0;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private EmbeddingVector[] vectors = new EmbeddingVector[16];
+    private long[] ids = new long[16];
+    // vizinhos por no e camada (array no tamanho exato, trocado a cada mudanca)
+    private int[][][] neighbors = new int[16][][];
+    private final BitSet deleted = new BitSet();
+    private final Map<Long, Integer> nodeById = new HashMap<>();
+    private int nodeCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int dimensions = -1;
+
+    HnswIndex(int m, int efConstruction, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW needs m >= 2");
+        }
+        this.m = m;
+        this.maxLayer0 = 2 * m;
+        this.efConstruction = Math.max(m, efConstruction);
+        this.levelFactor = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+    }
+
+    /** Live (searchable) vectors. */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return nodeById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void upsert(long id, EmbeddingVector vector) {
+        lock.writeLock().lock();
+        try {
+            if (dimensions >= 0 && vector.dimensions() != dimensions) {
+                throw new IllegalArgumentException("Vector has " + vector.dimensions() + " dimensions, index has " + dimensions);
+            }
+            dimensions = vector.dimensions();
+            Integer previous = nodeById.remove(id);
+            if (previous != null) {
+                deleted.set(previous);
+            }
+            insert(id, vector);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node != null) {
+                deleted.set(node);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate top {@code k} by cosine similarity to a query from
+     * {@link EmbeddingVector#normalize}, best first. A larger {@code ef} trades time for recall.
+     */
+    List<Hit> search(float[] q, int k, int ef) {
+        if (k <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || q.length != dimensions) {
+                return List.of();
+            }
+            Similarity query = vector -> vector.similarity(q);
+            int current = entryPoint;
+            for (int layer = maxLevel; layer > 0; layer--) {
+                current = greedyClosest(query, current, layer);
+            }
+            List<Candidate> found = searchLayer(query, current, Math.max(ef, k), 0);
+            List<Hit> hits = new ArrayList<>(k);
+            for (Candidate c : found) {
+                if (!deleted.get(c.node())) {
+                    hits.add(new Hit(ids[c.node()], c.similarity()));
+                    if (hits.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(long id, EmbeddingVector vector) {
+        int level = (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelFactor);
+        int node = newNode(id, vector, level);
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedyClosest(vector::similarity, current, layer);
+        }
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            List<Candidate> candidates = searchLayer(vector::similarity, current, efConstruction, layer);
+            int[] selected = selectNeighbors(candidates, maxNeighbors(layer));
+            neighbors[node][layer] = selected;
+            for (int other : selected) {
+                connect(other, node, layer);
+            }
+            current = candidates.get(0).node();
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    private int newNode(long id, EmbeddingVector vector, int level) {
+        if (nodeCount == vectors.length) {
+            int capacity = nodeCount * 2;
+            vectors = Arrays.copyOf(vectors, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            neighbors = Arrays.copyOf(neighbors, capacity);
+        }
+        int node = nodeCount++;
+        vectors[node] = vector;
+        ids[node] = id;
+        neighbors[node] = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            neighbors[node][layer] = new int[0];
+        }
+        nodeById.put(id, node);
+        return node;
+    }
+
+    // liga o vizinho de volta; passou do limite, repoda a lista dele com a mesma heuristica
+    private void connect(int node, int newNeighbor, int layer) {
+        int[] current = neighbors[node][layer];
+        int[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = newNeighbor;
+        int limit = maxNeighbors(layer);
+        if (grown.length <= limit) {
+            neighbors[node][layer] = grown;
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(grown.length);
+        for (int other : grown) {
+            candidates.add(new Candidate(other, vectors[node].similarity(vectors[other])));
+        }
+        candidates.sort(CLOSEST_FIRST);
+        neighbors[node][layer] = selectNeighbors(candidates, limit);
+    }
+
+    /**
+     * HNSW neighbour heuristic: walking candidates from the closest, keep one only if it is
+     * closer to the new node than to every neighbour already kept, so edges spread over
+     * different directions instead of all pointing into one cluster. Free slots are then
+     * filled with the closest pruned candidates.
+     */
+    private int[] selectNeighbors(List<Candidate> closestFirst, int limit) {
+        List<Candidate> kept = new ArrayList<>(limit);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate c : closestFirst) {
+            if (kept.size() == limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate k : kept) {
+                if (vectors[c.node()].similarity(vectors[k.node()]) > c.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? kept : pruned).add(c);
+        }
+        for (int i = 0; kept.size() < limit && i < pruned.size(); i++) {
+            kept.add(pruned.get(i));
+        }
+        int[] selected = new int[kept.size()];
+        for (int i = 0; i < selected.length; i++) {
+            selected[i] = kept.get(i).node();
+        }
+        return selected;
+    }
+
+    private int greedyClosest(Similarity query, int start, int layer) {
+        int current = start;
+        double best = query.to(vectors[current]);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int other : neighborsOf(current, layer)) {
+                double similarity = query.to(vectors[other]);
+                if (similarity > best) {
+                    best = similarity;
+                    current = other;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    // busca em feixe: devolve ate ef nos, do mais proximo ao mais distante
+    private List<Candidate> searchLayer(Similarity query, int start, int ef, int layer) {
+        BitSet visited = new BitSet(nodeCount);
+        visited.set(start);
+        Candidate first = new Candidate(start, query.to(vectors[start]));
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(CLOSEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(FARTHEST_FIRST);
+        frontier.add(first);
+        results.add(first);
+
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (results.size() >= ef && closest.similarity() < results.peek().similarity()) {
+                break;
+            }
+            for (int other : neighborsOf(closest.node(), layer)) {
+                if (visited.get(other)) {
+                    continue;
+                }
+                visited.set(other);
+                double similarity = query.to(vectors[other]);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(other, similarity);
+                    frontier.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> ordered = new ArrayList<>(results);
+        ordered.sort(CLOSEST_FIRST);
+        return ordered;
+    }
+
+    private int[] neighborsOf(int node, int layer) {
+        int[][] layers = neighbors[node];
+        return layer < layers.length ? layers[layer] : new int[0];
+    }
+
+    private int maxNeighbors(int layer) {
+        return layer == 0 ? maxLayer0 : m;
+    }
+
+    // lapides demais pioram a busca: reconstroi so com os vivos
+    private void compactIfNeeded() {
+        int tombstones = nodeCount - nodeById.size();
+        if (tombstones <= Math.max(16, nodeById.size())) {
+            return;
+        }
+        long[] liveIds = new long[nodeById.size()];
+        EmbeddingVector[] liveVectors = new EmbeddingVector[nodeById.size()];
+        int i = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (!deleted.get(node)) {
+                liveIds[i] = ids[node];
+                liveVectors[i++] = vectors[node];
+            }
+        }
+        vectors = new EmbeddingVector[Math.max(16, liveIds.length)];
+        ids = new long[vectors.length];
+        neighbors = new int[vectors.length][][];
+        deleted.clear();
+        nodeById.clear();
+        nodeCount = 0;
+        entryPoint = -1;
+        maxLevel = -1;
+        for (int n = 0; n < liveIds.length; n++) {
+            insert(liveIds[n], liveVectors[n]);
+        }
+    }
+}
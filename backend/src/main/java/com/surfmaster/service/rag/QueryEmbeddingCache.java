@@ -0,0 +1,142 @@
+package com.surfmaster.service.rag;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.surfmaster.config.LlmProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * LRU cache of chat question embeddings, keyed by the normalized question text.
+ * <p>
+ * Questions are lowercased, have whitespace collapsed and numbers written one canonical way
+ * ({@code "2,50"} and {@code "2.5"} are the same), and the normalized text is what gets
+ * embedded. Repeated or templated questions from the UI therefore reuse one embedding no
+ * matter who asked first. Entries expire after {@code surf.llm.query-cache.ttl}; failed
+ * embeddings are not cached.
+ */
+@Component
+public class QueryEmbeddingCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern NUMBER = Pattern.compile("\\d+(?:[.,]\\d+)?");
+
+    private record Entry(float[] embedding, long expiresAtNanos) {}
+
+    private final LlmProperties.QueryCache config;
+    private final LongSupplier nanoTime;
+    private final Map<String, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter expirations;
+
+    @Autowired
+    public QueryEmbeddingCache(LlmProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    QueryEmbeddingCache(LlmProperties properties, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.config = properties.getQueryCache();
+        this.nanoTime = nanoTime;
+        int maxEntries = config.getMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder("surf.rag.query.cache.requests")
+                .tag("result", "hit")
+                .description("Chat questions whose embedding came from cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("surf.rag.query.cache.requests")
+                .tag("result", "miss")
+                .description("Chat questions sent to the embedding provider")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("surf.rag.query.cache.evictions")
+                .description("Entries evicted by the LRU size bound")
+                .register(meterRegistry);
+        this.expirations = Counter.builder("surf.rag.query.cache.expirations")
+                .description("Entries dropped because their TTL passed")
+                .register(meterRegistry);
+        Gauge.builder("surf.rag.query.cache.size", this, QueryEmbeddingCache::size)
+                .register(meterRegistry);
+        Gauge.builder("surf.rag.query.cache.hit.ratio", this, QueryEmbeddingCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Embedding of the normalized question, computed with {@code embed} (which receives the
+     * normalized text and returns null on failure) on a miss. The returned array is shared:
+     * callers must not modify it.
+     */
+    public float[] get(String question, Function<String, float[]> embed) {
+        String key = normalize(question);
+        if (config.getMaxEntries() <= 0) {
+            return embed.apply(key);
+        }
+        long now = nanoTime.getAsLong();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.expiresAtNanos() < 0) {
+                hits.increment();
+                return entry.embedding();
+            }
+            if (entry != null) {
+                entries.remove(key);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        // fora do lock: a chamada ao provider pode levar segundos
+        float[] embedding = embed.apply(key);
+        if (embedding != null) {
+            synchronized (entries) {
+                entries.put(key, new Entry(embedding, nanoTime.getAsLong() + config.getTtl().toNanos()));
+            }
+        }
+        return embedding;
+    }
+
+    static String normalize(String question) {
+        String text = WHITESPACE.matcher(question.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+        Matcher matcher = NUMBER.matcher(text);
+        StringBuilder canonical = new StringBuilder(text.length());
+        while (matcher.find()) {
+            String number = new BigDecimal(matcher.group().replace(',', '.')).stripTrailingZeros().toPlainString();
+            matcher.appendReplacement(canonical, number);
+        }
+        matcher.appendTail(canonical);
+        return canonical.toString();
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+}
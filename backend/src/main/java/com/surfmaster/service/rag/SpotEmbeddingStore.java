@@ -0,0 +1,283 @@
+package com.surfmaster.service.rag;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.surfmaster.config.LlmProperties;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Spot embeddings keyed by spot id and a SHA-256 of the embedding model plus the spot
+ * description, kept in memory and in a local file ({@code surf.llm.embedding-store-path}).
+ * <p>
+ * A lookup only hits when the stored hash matches the current description, so editing a
+ * spot's notes or metadata (or switching models) re-embeds it on next use. The file is
+ * loaded at startup, so a restart pays no embedding calls for unchanged spots. Changes are
+ * written back atomically on a background thread: everything saved or removed within
+ * {@code surf.llm.embedding-store-write-debounce} shares one rewrite, and shutdown flushes
+ * what is pending. Entries of spots no longer in the catalog are dropped.
+ * <p>
+ * Vectors are kept as unit-length {@link EmbeddingVector}s in the configured
+ * {@code surf.llm.embedding-precision}. Entries of another precision, and version 1 files
+ * of raw doubles, are converted on load.
+ * <p>
+ * Layout (big-endian): magic, version and entry count, then per entry the spot id, the
+ * 32-byte hash, a precision tag, the dimension count and the vector (floats, or the int8
+ * scale followed by the codes).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SpotEmbeddingStore {
+
+    static final int MAGIC = 0x534d4542; // "SMEB"
+    static final int VERSION = 2;
+    private static final int VERSION_DOUBLES = 1;
+    private static final int HASH_BYTES = 32;
+    private static final byte TAG_FLOAT32 = 0;
+    private static final byte TAG_INT8 = 1;
+
+    private final LlmProperties llmProperties;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean writePending = new AtomicBoolean();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private record Entry(byte[] hash, EmbeddingVector vector) {}
+
+    // antes do aquecimento do indice de RAG, que le daqui
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void load() {
+        if (!isPersistent()) {
+            return;
+        }
+        Path path = path();
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != VERSION_DOUBLES) {
+                throw new IllegalStateException("not a spot embedding store (version " + VERSION + ")");
+            }
+            int count = in.readInt();
+            boolean converted = version != VERSION;
+            for (int e = 0; e < count; e++) {
+                long spotId = in.readLong();
+                byte[] hash = in.readNBytes(HASH_BYTES);
+                EmbeddingVector vector = version == VERSION ? readVector(in) : readDoubles(in);
+                EmbeddingVector configured = inConfiguredPrecision(vector);
+                converted |= configured != vector;
+                entries.putIfAbsent(spotId, new Entry(hash, configured));
+            }
+            log.info("Loaded {} spot embeddings from {}", count, path);
+            if (converted) {
+                dirty.set(true);
+                flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable spot embedding store {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Stored embedding of the spot if it was computed from this exact description, else null.
+     */
+    public EmbeddingVector find(Long spotId, String description) {
+        Entry entry = entries.get(spotId);
+        return entry != null && MessageDigest.isEqual(entry.hash(), hash(description)) ? entry.vector() : null;
+    }
+
+    /**
+     * Normalizes (and quantizes, if configured) the raw embedding, stores it and returns the
+     * stored vector. The file is rewritten later, in the background.
+     */
+    public EmbeddingVector save(Long spotId, String description, double[] raw) {
+        EmbeddingVector vector = put(spotId, description, raw);
+        scheduleWrite();
+        return vector;
+    }
+
+    /**
+     * {@link #save} for a batch (the three lists are index-aligned), sharing one rewrite.
+     */
+    public List<EmbeddingVector> saveAll(List<Long> spotIds, List<String> descriptions, List<double[]> raw) {
+        List<EmbeddingVector> vectors = new ArrayList<>(spotIds.size());
+        for (int i = 0; i < spotIds.size(); i++) {
+            vectors.add(put(spotIds.get(i), descriptions.get(i), raw.get(i)));
+        }
+        scheduleWrite();
+        return vectors;
+    }
+
+    /** Drops the embedding of a deleted spot. */
+    public void remove(Long spotId) {
+        if (entries.remove(spotId) != null) {
+            scheduleWrite();
+        }
+    }
+
+    /** Drops the embeddings of every spot not in {@code spotIds} (the current catalog). */
+    public void retainOnly(Set<Long> spotIds) {
+        if (entries.keySet().retainAll(spotIds)) {
+            scheduleWrite();
+        }
+    }
+
+    private EmbeddingVector put(Long spotId, String description, double[] raw) {
+        EmbeddingVector vector = EmbeddingVector.encode(raw, llmProperties.getEmbeddingPrecision());
+        entries.put(spotId, new Entry(hash(description), vector));
+        return vector;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // lotes seguidos (aquecimento em varios lotes, spots editados) geram uma so reescrita, fora da thread do chat
+    private void scheduleWrite() {
+        dirty.set(true);
+        if (!isPersistent() || !writePending.compareAndSet(false, true)) {
+            return;
+        }
+        Mono.delay(llmProperties.getEmbeddingStoreWriteDebounce())
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(tick -> {
+                    // liberado antes de escrever: uma mudanca durante a escrita agenda outra
+                    writePending.set(false);
+                    flush();
+                });
+    }
+
+    /**
+     * Rewrites the file now if anything changed since the last write. Writes to a temporary
+     * file and swaps it in, so a concurrent reader never sees half a file.
+     */
+    @PreDestroy
+    public synchronized void flush() {
+        if (!isPersistent() || !dirty.getAndSet(false)) {
+            return;
+        }
+        Path path = path();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Map<Long, Entry> current = Map.copyOf(entries);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(current.size());
+                for (Map.Entry<Long, Entry> e : current.entrySet()) {
+                    out.writeLong(e.getKey());
+                    out.write(e.getValue().hash());
+                    writeVector(out, e.getValue().vector());
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write spot embedding store {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static void writeVector(DataOutputStream out, EmbeddingVector vector) throws IOException {
+        if (vector instanceof EmbeddingVector.Int8 int8) {
+            out.writeByte(TAG_INT8);
+            out.writeInt(int8.codes().length);
+            out.writeFloat(int8.scale());
+            out.write(int8.codes());
+        } else {
+            float[] values = ((EmbeddingVector.Float32) vector).values();
+            out.writeByte(TAG_FLOAT32);
+            out.writeInt(values.length);
+            for (float v : values) {
+                out.writeFloat(v);
+            }
+        }
+    }
+
+    private static EmbeddingVector readVector(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        int dimensions = in.readInt();
+        if (tag == TAG_INT8) {
+            float scale = in.readFloat();
+            return new EmbeddingVector.Int8(in.readNBytes(dimensions), scale);
+        }
+        if (tag != TAG_FLOAT32) {
+            throw new IllegalStateException("unknown vector precision tag " + tag);
+        }
+        float[] values = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            values[i] = in.readFloat();
+        }
+        return new EmbeddingVector.Float32(values);
+    }
+
+    // formato 1: double cru, sem normalizar
+    private EmbeddingVector readDoubles(DataInputStream in) throws IOException {
+        double[] raw = new double[in.readInt()];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = in.readDouble();
+        }
+        return EmbeddingVector.encode(raw, llmProperties.getEmbeddingPrecision());
+    }
+
+    private EmbeddingVector inConfiguredPrecision(EmbeddingVector vector) {
+        boolean int8 = llmProperties.getEmbeddingPrecision() == LlmProperties.EmbeddingPrecision.INT8;
+        if (int8 && vector instanceof EmbeddingVector.Float32 f) {
+            return EmbeddingVector.Int8.quantize(f.values());
+        }
+        if (!int8 && vector instanceof EmbeddingVector.Int8 q) {
+            return new EmbeddingVector.Float32(q.toFloats());
+        }
+        return vector;
+    }
+
+    byte[] hash(String description) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(llmProperties.getEmbeddingModel()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return digest.digest(description.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private boolean isPersistent() {
+        String path = llmProperties.getEmbeddingStorePath();
+        return path != null && !path.isBlank();
+    }
+
+    private Path path() {
+        return Path.of(llmProperties.getEmbeddingStorePath());
+    }
+}
@@ -1,26 +1,44 @@
 package com.surfmaster.service.rag;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import com.surfmaster.config.LlmProperties;
 import com.surfmaster.entities.Direction;
 import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.SpotChangedEvent;
 import com.surfmaster.entities.UserLevel;
 import com.surfmaster.llm.EmbeddingClient;
 import com.surfmaster.repository.SpotRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 @RequiredArgsConstructor
@@ -29,11 +47,36 @@ public class SpotRagService {
 
     private final SpotRepository spotRepository;
     private final EmbeddingClient embeddingClient;
-
-    private final Map<Long, double[]> spotEmbeddings = new ConcurrentHashMap<>();
+    private final SpotEmbeddingStore spotEmbeddingStore;
+    private final LlmProperties llmProperties;
+    private final QueryEmbeddingCache queryEmbeddingCache;
 
     private static final Pattern SWELL_VALUE = Pattern.compile("(\\d+(?:[\\.,]\\d+)?)");
 
+    private static final int TOP_SPOTS = 3;
+    // vizinhos por similaridade que seguem para as heuristicas
+    static final int CANDIDATES = 50;
+    private static final int EF_SEARCH = 100;
+    private static final Duration MIN_RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(10);
+    private static final String EMBEDDING_FALLBACK_REASON =
+            "Could not generate BGE embeddings (HuggingFace). Using basic heuristics.";
+
+    private record IndexedSpot(Spot spot, EmbeddingVector embedding) {}
+
+    private final HnswIndex spotIndex = new HnswIndex(16, 100, 42L);
+    private final Map<Long, IndexedSpot> indexedSpots = new ConcurrentHashMap<>();
+    private final Set<Long> staleSpots = ConcurrentHashMap.newKeySet();
+    // spots cujo lote falhou: voltam na proxima tentativa em segundo plano
+    private final Set<Long> unembeddedSpots = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private final AtomicBoolean buildScheduled = new AtomicBoolean();
+    private final AtomicBoolean retryScheduled = new AtomicBoolean();
+    private final AtomicInteger retryAttempt = new AtomicInteger();
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private volatile boolean indexBuilt;
+    private volatile long embeddingBackoffUntilNanos = System.nanoTime();
+
     public RagContext retrieveContext(String question, Long preferredSpotId) {
         Spot preferredSpot = null;
         if (preferredSpotId != null) {
@@ -47,23 +90,30 @@ public class SpotRagService {
         }
 
         log.debug("RAG question='{}'", question);
-        double[] queryEmbedding = safeEmbed(question, fallbackReason);
+        // normalizada uma vez: cada comparacao vira so um produto escalar
+        float[] queryEmbedding = queryEmbeddingCache.get(question, text -> {
+            double[] raw = tryEmbed(text, fallbackReason);
+            return raw != null ? EmbeddingVector.normalize(raw) : null;
+        });
         QuerySignals signals = extractSignals(question);
         log.debug("RAG signals level={} swellHeight={} direction={}", signals.level, signals.swellHeight, signals.direction);
 
-        List<RagSpot> ranked = spotRepository.findAll().stream()
-                .map(spot -> buildRagSpot(spot, queryEmbedding, signals, fallbackReason))
+        // sem embedding da pergunta so as heuristicas contam; indice vazio varre o catalogo com os vetores salvos
+        Stream<RagSpot> candidates = queryEmbedding != null && refreshIndex(fallbackReason)
+                ? indexCandidates(queryEmbedding, signals)
+                : spotRepository.findAll().stream().map(spot -> buildRagSpot(spot, queryEmbedding, signals));
+        List<RagSpot> ranked = candidates
                 .sorted(Comparator.comparingDouble((RagSpot spot) -> scoreWithPreference(spot, preferredSpotId))
                         .reversed())
-                .limit(3)
+                .limit(TOP_SPOTS)
                 .collect(ArrayList::new, List::add, List::addAll);
 
         if (preferredSpot != null) {
-            RagSpot preferredRagSpot = buildRagSpot(preferredSpot, queryEmbedding, signals, fallbackReason);
+            RagSpot preferredRagSpot = buildRagSpot(preferredSpot, queryEmbedding, signals);
             ranked.removeIf(spot -> spot.spotId().equals(preferredSpotId));
             ranked.add(0, preferredRagSpot);
-            if (ranked.size() > 3) {
-                ranked.subList(3, ranked.size()).clear();
+            if (ranked.size() > TOP_SPOTS) {
+                ranked.subList(TOP_SPOTS, ranked.size()).clear();
             }
         }
 
@@ -84,17 +134,224 @@ public class SpotRagService {
         return base;
     }
 
-    private List<RagSpot> topCandidates(double[] queryEmbedding, QuerySignals signals, AtomicReference<String> fallbackReason) {
-        return spotRepository.findAll().stream()
-                .map(spot -> buildRagSpot(spot, queryEmbedding, signals, fallbackReason))
-                .sorted(Comparator.comparingDouble(RagSpot::totalScore).reversed())
-                .limit(3)
-                .toList();
+    /**
+     * Builds the ANN index at startup, off the request path, so the first chat turn does not
+     * wait on the catalog's embeddings.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpIndex() {
+        if (!llmProperties.isEmbeddingWarmUp()) {
+            return;
+        }
+        scheduleBuild();
     }
 
-    private RagSpot buildRagSpot(Spot spot, double[] queryEmbedding, QuerySignals signals, AtomicReference<String> fallbackReason) {
-        double[] spotEmbedding = spotEmbeddings.computeIfAbsent(spot.getId(), id -> safeEmbed(describeSpot(spot), fallbackReason));
-        double similarity = cosine(queryEmbedding, spotEmbedding);
+    /**
+     * Pulls pending spot changes into the ANN index and returns whether it has anything to
+     * search. Never waits: while the index is missing or being built (by a background job
+     * this starts if needed) the question uses whatever is already indexed.
+     */
+    private boolean refreshIndex(AtomicReference<String> fallbackReason) {
+        if (!indexBuilt) {
+            scheduleBuild();
+        } else if (!staleSpots.isEmpty() && indexLock.tryLock()) {
+            try {
+                reindexChanged(fallbackReason);
+            } finally {
+                indexLock.unlock();
+            }
+        }
+        if (spotIndex.size() > 0) {
+            return true;
+        }
+        if (!indexBuilt) {
+            fallbackReason.compareAndSet(null, "Spot index is still being built. Using stored embeddings and basic heuristics.");
+        }
+        return false;
+    }
+
+    boolean isIndexBuilt() {
+        return indexBuilt;
+    }
+
+    private void scheduleBuild() {
+        if (!buildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Mono.fromRunnable(this::buildIndex)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> buildScheduled.set(false))
+                .subscribe(null, e -> log.warn("RAG index build failed: {}", e.getMessage()));
+    }
+
+    /**
+     * Indexes the whole catalog: stored embeddings right away, the missing ones batch by batch
+     * as the provider answers. Batches that fail are retried in the background.
+     */
+    void buildIndex() {
+        indexLock.lock();
+        try {
+            long version = catalogVersion.get();
+            staleSpots.clear();
+            List<Spot> spots = spotRepository.findAll();
+            Set<Long> catalog = new HashSet<>();
+            spots.forEach(spot -> catalog.add(spot.getId()));
+            indexedSpots.keySet().stream().filter(id -> !catalog.contains(id)).toList().forEach(this::unindexSpot);
+            spotEmbeddingStore.retainOnly(catalog);
+            unembeddedSpots.retainAll(catalog);
+            indexSpots(spots, new AtomicReference<>());
+            // catalogo inteiro mudou durante a construcao: a proxima pergunta agenda outra
+            indexBuilt = catalogVersion.get() == version;
+            log.info("RAG index built with {} of {} spots", spotIndex.size(), spots.size());
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private void reindexChanged(AtomicReference<String> fallbackReason) {
+        List<Long> changed = List.copyOf(staleSpots);
+        staleSpots.removeAll(changed);
+        List<Spot> spots = spotRepository.findAllById(changed);
+        indexSpots(spots, fallbackReason);
+        Set<Long> found = new HashSet<>();
+        spots.forEach(spot -> found.add(spot.getId()));
+        changed.stream().filter(id -> !found.contains(id)).forEach(id -> {
+            unindexSpot(id);
+            unembeddedSpots.remove(id);
+            spotEmbeddingStore.remove(id);
+        });
+    }
+
+    // embeddings salvos valem; os que faltam saem em lotes, e cada lote e salvo e indexado assim que chega
+    private void indexSpots(List<Spot> spots, AtomicReference<String> fallbackReason) {
+        List<Spot> missing = new ArrayList<>();
+        List<String> descriptions = new ArrayList<>();
+        for (Spot spot : spots) {
+            String description = describeSpot(spot);
+            EmbeddingVector stored = spotEmbeddingStore.find(spot.getId(), description);
+            if (stored != null) {
+                indexSpot(spot, stored);
+                unembeddedSpots.remove(spot.getId());
+            } else {
+                missing.add(spot);
+                descriptions.add(description);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<Integer> failed = tryEmbedInBatches(descriptions, (indexes, embeddings) -> {
+            List<Long> ids = indexes.stream().map(i -> missing.get(i).getId()).toList();
+            List<EmbeddingVector> vectors = spotEmbeddingStore.saveAll(ids,
+                    indexes.stream().map(descriptions::get).toList(), embeddings);
+            for (int i = 0; i < indexes.size(); i++) {
+                indexSpot(missing.get(indexes.get(i)), vectors.get(i));
+            }
+            unembeddedSpots.removeAll(ids);
+        }, fallbackReason);
+        if (failed.isEmpty()) {
+            return;
+        }
+        for (int i : failed) {
+            // vetor antigo descreve o spot de antes: fica fora do indice ate a nova tentativa
+            unindexSpot(missing.get(i).getId());
+            unembeddedSpots.add(missing.get(i).getId());
+        }
+        scheduleRetry();
+    }
+
+    // lotes que falharam voltam em segundo plano, com a espera dobrando a cada rodada sem sucesso
+    private void scheduleRetry() {
+        if (!retryScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Duration backoff = llmProperties.getEmbeddingFailureBackoff();
+        Duration base = backoff != null && backoff.compareTo(MIN_RETRY_DELAY) > 0 ? backoff : MIN_RETRY_DELAY;
+        Duration delay = base.multipliedBy(1L << Math.min(retryAttempt.getAndIncrement(), 10));
+        if (delay.compareTo(MAX_RETRY_DELAY) > 0) {
+            delay = MAX_RETRY_DELAY;
+        }
+        log.info("Retrying {} spot embeddings in {}", unembeddedSpots.size(), delay);
+        Mono.delay(delay)
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(tick -> {
+                    retryScheduled.set(false);
+                    retryUnembedded();
+                }, e -> {
+                    retryScheduled.set(false);
+                    log.warn("Spot embedding retry failed: {}", e.getMessage());
+                });
+    }
+
+    private void retryUnembedded() {
+        indexLock.lock();
+        try {
+            List<Long> ids = List.copyOf(unembeddedSpots);
+            if (ids.isEmpty()) {
+                return;
+            }
+            List<Spot> spots = spotRepository.findAllById(ids);
+            Set<Long> found = new HashSet<>();
+            spots.forEach(spot -> found.add(spot.getId()));
+            ids.stream().filter(id -> !found.contains(id)).forEach(unembeddedSpots::remove);
+            indexSpots(spots, new AtomicReference<>());
+            if (unembeddedSpots.isEmpty()) {
+                retryAttempt.set(0);
+                log.info("RAG index caught up: {} spots indexed", spotIndex.size());
+            }
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private void indexSpot(Spot spot, EmbeddingVector embedding) {
+        if (embedding == null) {
+            // fica fora do indice ate a proxima mudanca do spot
+            unindexSpot(spot.getId());
+            return;
+        }
+        IndexedSpot previous = indexedSpots.put(spot.getId(), new IndexedSpot(spot, embedding));
+        // mesmo vetor do store: so os metadados mudaram
+        if (previous == null || previous.embedding() != embedding) {
+            spotIndex.upsert(spot.getId(), embedding);
+        }
+    }
+
+    private void unindexSpot(Long spotId) {
+        indexedSpots.remove(spotId);
+        spotIndex.remove(spotId);
+    }
+
+    private Stream<RagSpot> indexCandidates(float[] queryEmbedding, QuerySignals signals) {
+        return spotIndex.search(queryEmbedding, CANDIDATES, EF_SEARCH).stream()
+                .map(hit -> {
+                    IndexedSpot indexed = indexedSpots.get(hit.id());
+                    return indexed != null ? toRagSpot(indexed.spot(), hit.similarity(), signals) : null;
+                })
+                .filter(Objects::nonNull);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSpotChanged(SpotChangedEvent event) {
+        if (event.spotId() == null) {
+            catalogVersion.incrementAndGet();
+            indexBuilt = false;
+        } else {
+            staleSpots.add(event.spotId());
+        }
+    }
+
+    // nunca chama o provider: vetor salvo do spot se houver, senao so as heuristicas
+    private RagSpot buildRagSpot(Spot spot, float[] queryEmbedding, QuerySignals signals) {
+        if (queryEmbedding == null) {
+            return toRagSpot(spot, 0.0, signals);
+        }
+        IndexedSpot indexed = indexedSpots.get(spot.getId());
+        EmbeddingVector stored = indexed != null ? indexed.embedding() : spotEmbeddingStore.find(spot.getId(), describeSpot(spot));
+        return toRagSpot(spot, stored != null ? stored.similarity(queryEmbedding) : 0.0, signals);
+    }
+
+    private RagSpot toRagSpot(Spot spot, double similarity, QuerySignals signals) {
         double heuristics = heuristicScore(spot, signals);
         String notes = spot.getNotes() != null ? String.join(", ", spot.getNotes()) : null;
         return new RagSpot(
@@ -133,34 +390,54 @@ public class SpotRagService {
         };
     }
 
-    private double cosine(double[] a, double[] b) {
-        if (a == null || b == null || a.length == 0 || b.length == 0) return 0.0;
-        double dot = 0;
-        double normA = 0;
-        double normB = 0;
-        int len = Math.min(a.length, b.length);
-        for (int i = 0; i < len; i++) {
-            dot += a[i] * b[i];
-            normA += a[i] * a[i];
-            normB += b[i] * b[i];
+    // indices dos textos que ficaram sem embedding; em backoff nenhum lote sai
+    private List<Integer> tryEmbedInBatches(List<String> texts, BiConsumer<List<Integer>, List<double[]>> onBatch,
+                                            AtomicReference<String> fallbackReason) {
+        List<Integer> all = IntStream.range(0, texts.size()).boxed().toList();
+        if (inFailureBackoff(fallbackReason)) {
+            return all;
+        }
+        try {
+            List<Integer> failed = embeddingClient.embedInBatches(texts, onBatch);
+            if (failed.size() == texts.size()) {
+                onEmbeddingFailure("Failed to generate " + texts.size() + " spot embeddings",
+                        new IllegalStateException("every batch failed"), fallbackReason);
+            } else if (!failed.isEmpty()) {
+                log.warn("{} of {} spot embeddings failed; indexed the rest", failed.size(), texts.size());
+            }
+            return failed;
+        } catch (Exception e) {
+            onEmbeddingFailure("Failed to generate " + texts.size() + " spot embeddings", e, fallbackReason);
+            return all;
         }
-        if (normA == 0 || normB == 0) return 0.0;
-        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
     }
 
-    private double[] safeEmbed(String text, AtomicReference<String> fallbackReason) {
+    private double[] tryEmbed(String text, AtomicReference<String> fallbackReason) {
+        if (inFailureBackoff(fallbackReason)) {
+            return null;
+        }
         try {
             return embeddingClient.embed(text);
         } catch (Exception e) {
-            log.error("Failed to generate embedding for text '{}'. Using fallback.", text, e);
-            fallbackReason.compareAndSet(null, "Could not generate BGE embeddings (HuggingFace). Using basic heuristics.");
-            // fallback: deterministic hash vector
-            double[] fallback = new double[16];
-            for (int i = 0; i < text.length(); i++) {
-                fallback[i % fallback.length] += text.charAt(i);
-            }
-            return fallback;
+            onEmbeddingFailure("Failed to embed the question", e, fallbackReason);
+            return null;
+        }
+    }
+
+    // provider fora: cada pergunta pagaria um timeout; segura novas chamadas por um tempo
+    private boolean inFailureBackoff(AtomicReference<String> fallbackReason) {
+        if (System.nanoTime() - embeddingBackoffUntilNanos >= 0) {
+            return false;
         }
+        fallbackReason.compareAndSet(null, EMBEDDING_FALLBACK_REASON);
+        return true;
+    }
+
+    private void onEmbeddingFailure(String what, Exception e, AtomicReference<String> fallbackReason) {
+        Duration backoff = llmProperties.getEmbeddingFailureBackoff();
+        embeddingBackoffUntilNanos = System.nanoTime() + (backoff != null ? backoff.toNanos() : 0);
+        log.warn("{}; using heuristics for the next {}: {}", what, backoff, e.toString());
+        fallbackReason.compareAndSet(null, EMBEDDING_FALLBACK_REASON);
     }
 
     private record QuerySignals(UserLevel level, Double swellHeight, Direction direction) {}
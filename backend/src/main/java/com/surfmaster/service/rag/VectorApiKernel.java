@@ -0,0 +1,53 @@
+package com.surfmaster.service.rag;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link VectorMath.Kernel} on the incubating Vector API. Only loaded reflectively by
+ * {@link VectorMath}, so the rest of the code never links against {@code jdk.incubator.vector}.
+ */
+final class VectorApiKernel implements VectorMath.Kernel {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // mesma quantidade de lanes que FLOATS: cada byte vira um float
+    private static final VectorSpecies<Byte> BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(FLOATS.vectorBitSize() / 4));
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(a.length); i < bound; i += FLOATS.length()) {
+            sum = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public float dot(float[] a, byte[] b) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(a.length); i < bound; i += FLOATS.length()) {
+            FloatVector codes = (FloatVector) ByteVector.fromArray(BYTES, b, i).castShape(FLOATS, 0);
+            sum = FloatVector.fromArray(FLOATS, a, i).fma(codes, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return FLOATS.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package com.surfmaster.service.rag;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dot-product kernels for embedding similarity.
+ * <p>
+ * When the JVM runs with {@code --add-modules jdk.incubator.vector} the float kernels use the
+ * Vector API ({@link VectorApiKernel}); otherwise they fall back to scalar loops with several
+ * accumulators. Both paths give the same result up to float rounding.
+ */
+@Slf4j
+final class VectorMath {
+
+    interface Kernel {
+        float dot(float[] a, float[] b);
+
+        float dot(float[] a, byte[] b);
+    }
+
+    private static final Kernel SIMD = loadSimd();
+    private static final float[] BYTE_VALUES = new float[256];
+
+    static {
+        for (int i = 0; i < BYTE_VALUES.length; i++) {
+            BYTE_VALUES[i] = (byte) i;
+        }
+    }
+
+    private VectorMath() {
+    }
+
+    static float dot(float[] a, float[] b) {
+        return SIMD != null ? SIMD.dot(a, b) : scalarDot(a, b);
+    }
+
+    static float dot(float[] a, byte[] b) {
+        return SIMD != null ? SIMD.dot(a, b) : scalarDot(a, b);
+    }
+
+    // produtos de int8 cabem em int: soma exata, e a JIT vetoriza reducao de int sozinha
+    static int dot(byte[] a, byte[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    // quatro acumuladores: a JIT nao reordena soma de float, entao uma cadeia so fica presa na latencia
+    static float scalarDot(float[] a, float[] b) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (int end = a.length - 3; i < end; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // tabela em vez de converter byte para float a cada elemento (a conversao escalar e lenta)
+    static float scalarDot(float[] a, byte[] b) {
+        float[] table = BYTE_VALUES;
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (int end = a.length - 3; i < end; i += 4) {
+            s0 += a[i] * table[b[i] & 0xFF];
+            s1 += a[i + 1] * table[b[i + 1] & 0xFF];
+            s2 += a[i + 2] * table[b[i + 2] & 0xFF];
+            s3 += a[i + 3] * table[b[i + 3] & 0xFF];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // o modulo incubado so existe com --add-modules; sem ele a classe nem carrega
+    private static Kernel loadSimd() {
+        try {
+            Kernel kernel = (Kernel) Class.forName("com.surfmaster.service.rag.VectorApiKernel")
+                    .getDeclaredConstructor().newInstance();
+            log.info("Embedding similarity uses the Vector API ({})", kernel);
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.info("Vector API not available (start the JVM with --add-modules jdk.incubator.vector), using scalar kernels");
+            return null;
+        }
+    }
+}
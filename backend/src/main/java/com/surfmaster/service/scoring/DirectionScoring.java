@@ -0,0 +1,11 @@
+package com.surfmaster.service.scoring;
+
+/**
+ * How a forecast bearing is compared with a spot's ideal direction.
+ */
+public enum DirectionScoring {
+    /** 1.0 only when the bearing falls in the same 8-point sector, 0 otherwise. */
+    EXACT,
+    /** cos(angular distance), clipped at 0 from 90 degrees on. */
+    ANGULAR
+}
@@ -0,0 +1,44 @@
+package com.surfmaster.service.scoring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.surfmaster.config.RecommendationProperties;
+import com.surfmaster.entities.Objective;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.SpotChangedEvent;
+import com.surfmaster.entities.UserLevel;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps one compiled {@link SpotScoringModel} per (spot, level, objective),
+ * dropping a spot's models whenever that spot changes.
+ */
+@Component
+@RequiredArgsConstructor
+public class ScoringModelCache {
+
+    private final RecommendationProperties recommendationProperties;
+
+    private record Key(Long spotId, UserLevel level, Objective objective) {}
+
+    private final Map<Key, SpotScoringModel> models = new ConcurrentHashMap<>();
+
+    public SpotScoringModel get(Spot spot, UserLevel level, Objective objective) {
+        return models.computeIfAbsent(new Key(spot.getId(), level, objective),
+                key -> SpotScoringModel.compile(spot, level, objective, recommendationProperties.getDirectionScoring()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSpotChanged(SpotChangedEvent event) {
+        models.keySet().removeIf(key -> key.spotId() == null || key.spotId().equals(event.spotId()));
+    }
+
+    int size() {
+        return models.size();
+    }
+}
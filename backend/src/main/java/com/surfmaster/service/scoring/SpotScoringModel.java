@@ -0,0 +1,167 @@
+package com.surfmaster.service.scoring;
+
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.Objective;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.UserLevel;
+
+/**
+ * Recommendation scorer compiled for one (spot, user level, objective) combination.
+ * <p>
+ * Bearings are whole degrees looked up in shared 360-entry match tables (one per ideal
+ * direction and {@link DirectionScoring} mode), and the swell/wind curves are reduced
+ * to precomputed piecewise-linear coefficients, so scoring a point does no trig and
+ * no boxing. Missing numeric values are passed as {@code NaN}; a missing bearing as
+ * {@link #NO_BEARING}.
+ */
+public final class SpotScoringModel {
+
+    public static final int NO_BEARING = 360;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final double SECTOR_DEGREES = 360.0 / DIRECTIONS.length;
+    private static final double[] NO_MATCH = new double[NO_BEARING + 1];
+    private static final double[][] EXACT_TABLES = new double[DIRECTIONS.length][];
+    private static final double[][] ANGULAR_TABLES = new double[DIRECTIONS.length][];
+
+    static {
+        for (Direction best : DIRECTIONS) {
+            double center = best.ordinal() * SECTOR_DEGREES;
+            double[] exact = new double[NO_BEARING + 1];
+            double[] angular = new double[NO_BEARING + 1];
+            for (int deg = 0; deg < NO_BEARING; deg++) {
+                exact[deg] = sectorOf(deg) == best.ordinal() ? 1.0 : 0.0;
+                angular[deg] = Math.max(0.0, Math.cos(Math.toRadians(deg - center)));
+            }
+            EXACT_TABLES[best.ordinal()] = exact;
+            ANGULAR_TABLES[best.ordinal()] = angular;
+        }
+    }
+
+    static final double SWELL_WEIGHT = 0.55;
+    static final double WIND_WEIGHT = 0.45;
+
+    // NOTE: adjust according to unit (km/h vs m/s)
+    static final double WIND_OK = 12.0;
+    static final double WIND_BAD = 25.0;
+    static final double WIND_INV_RANGE = 1.0 / (WIND_BAD - WIND_OK);
+    static final double MISSING_WIND_PENALTY = 0.5; // conservador
+
+    private final double[] swellDirMatch;
+    private final double[] windDirMatch;
+
+    private final double swellMaxOk;
+    private final double swellSlope;
+
+    private final double windMult;
+
+    private SpotScoringModel(double[] swellDirMatch, double[] windDirMatch,
+                             double swellMaxOk, double swellSlope,
+                             double windMult) {
+        this.swellDirMatch = swellDirMatch;
+        this.windDirMatch = windDirMatch;
+        this.swellMaxOk = swellMaxOk;
+        this.swellSlope = swellSlope;
+        this.windMult = windMult;
+    }
+
+    public static SpotScoringModel compile(Spot spot, UserLevel level, Objective objective) {
+        return compile(spot, level, objective, DirectionScoring.EXACT);
+    }
+
+    public static SpotScoringModel compile(Spot spot, UserLevel level, Objective objective, DirectionScoring mode) {
+        // swell altura: penaliza swell alto pra beginner
+        double maxOk = switch (level) {
+            case BEGINNER -> 1.2;
+            case INTERMEDIATE -> 2.0;
+            case ADVANCED -> 3.0;
+        };
+        double worst = maxOk * 2.0;
+
+        // penalidade de vento por objective
+        double mult = switch (objective) {
+            case FUN -> 1.25;
+            case TRAINING -> 0.85;
+        };
+
+        return new SpotScoringModel(
+                matchTable(spot.getSwellBestDirection(), mode),
+                matchTable(spot.getWindBestDirection(), mode),
+                maxOk,
+                1.0 / (worst - maxOk),
+                mult
+        );
+    }
+
+    /**
+     * Whole-degree bearing for the scoring tables: the raw degrees when the provider sent them,
+     * otherwise the centre of the 8-point sector, otherwise {@link #NO_BEARING}.
+     */
+    public static int bearingIndex(Double degrees, Direction fallback) {
+        return bearingIndex(degrees != null ? degrees : Double.NaN, fallback);
+    }
+
+    /** Same as {@link #bearingIndex(Double, Direction)} with {@code NaN} for a missing bearing. */
+    public static int bearingIndex(double degrees, Direction fallback) {
+        if (!Double.isNaN(degrees)) {
+            return Math.floorMod((int) Math.round(degrees), 360);
+        }
+        if (fallback != null) {
+            return (int) Math.round(fallback.ordinal() * SECTOR_DEGREES);
+        }
+        return NO_BEARING;
+    }
+
+    /** Score in 0..100 for a single forecast point. */
+    public double score(double swellHeight, int swellBearing, double windSpeed, int windBearing) {
+        double swellScore = swellDirMatch[swellBearing] * swellHeightScore(swellHeight);
+        double windScore = windDirMatch[windBearing] * (1.0 - windPenalty(windSpeed));
+        return 100.0 * clamp01(SWELL_WEIGHT * swellScore + WIND_WEIGHT * windScore);
+    }
+
+    /**
+     * How well a swell bearing matches the spot's ideal direction (0..1), with the same table
+     * the score uses.
+     */
+    public double swellDirectionMatch(int swellBearing) {
+        return swellDirMatch[swellBearing];
+    }
+
+    /** Same as {@link #swellDirectionMatch} for the wind. */
+    public double windDirectionMatch(int windBearing) {
+        return windDirMatch[windBearing];
+    }
+
+    /** Scores the first {@code n} points of the given columns into {@code out}. */
+    public void scoreAll(double[] swellHeights, int[] swellBearings, double[] windSpeeds, int[] windBearings,
+                         double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = score(swellHeights[i], swellBearings[i], windSpeeds[i], windBearings[i]);
+        }
+    }
+
+    private double swellHeightScore(double h) {
+        // NaN cai no "false" e vira 0
+        return h > 0 ? clamp01(1.0 - (h - swellMaxOk) * swellSlope) : 0.0;
+    }
+
+    private double windPenalty(double windSpeed) {
+        if (Double.isNaN(windSpeed)) return MISSING_WIND_PENALTY;
+        return clamp01(clamp01((windSpeed - WIND_OK) * WIND_INV_RANGE) * windMult);
+    }
+
+    private static double[] matchTable(Direction best, DirectionScoring mode) {
+        if (best == null) return NO_MATCH;
+        return mode == DirectionScoring.ANGULAR ? ANGULAR_TABLES[best.ordinal()] : EXACT_TABLES[best.ordinal()];
+    }
+
+    // mesmo arredondamento do provider ao converter graus em Direction
+    private static int sectorOf(int degrees) {
+        return (int) Math.round(degrees / SECTOR_DEGREES) % DIRECTIONS.length;
+    }
+
+    // ternario em vez de Math.max/min: sem o tratamento de NaN/-0.0 que eles carregam
+    private static double clamp01(double x) {
+        return x < 0.0 ? 0.0 : (x > 1.0 ? 1.0 : x);
+    }
+}
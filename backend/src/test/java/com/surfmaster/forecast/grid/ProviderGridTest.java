@@ -0,0 +1,63 @@
+package com.surfmaster.forecast.grid;
+
+import com.surfmaster.entities.Spot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProviderGridTest {
+
+    private final Spot ribeira = Spot.builder().id(1L).latitude(38.988).longitude(-9.419).build();
+    private final Spot peniche = Spot.builder().id(2L).latitude(39.344).longitude(-9.366).build();
+    private final Spot coxos = Spot.builder().id(3L).latitude(38.997).longitude(-9.424).build();
+    private final Spot unknown = Spot.builder().id(4L).build();
+
+    @Test
+    void groupsSpotsOfTheSameCellInInputOrder() {
+        List<ProviderGrid.Cell> cells = ProviderGrid.group(List.of(ribeira, peniche, coxos, unknown), 0.1);
+
+        assertThat(cells).extracting(ProviderGrid.Cell::spots)
+                .containsExactly(List.of(ribeira, coxos), List.of(peniche), List.of(unknown));
+        assertThat(cells.get(0).representative()).isSameAs(ribeira);
+    }
+
+    @Test
+    void aCellIsFetchedAtItsCentreWhicheverMemberLeads() {
+        Spot fromRibeira = ProviderGrid.fetchPoint(ribeira, 0.1);
+        Spot fromCoxos = ProviderGrid.fetchPoint(coxos, 0.1);
+
+        assertThat(fromRibeira.getLatitude()).isEqualTo(38.95);
+        assertThat(fromRibeira.getLongitude()).isEqualTo(-9.45);
+        assertThat(fromCoxos).extracting(Spot::getLatitude, Spot::getLongitude)
+                .containsExactly(fromRibeira.getLatitude(), fromRibeira.getLongitude());
+        assertThat(fromCoxos.getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void spotsOffTheGridAreFetchedWhereTheyAre() {
+        assertThat(ProviderGrid.fetchPoint(unknown, 0.1)).isSameAs(unknown);
+        assertThat(ProviderGrid.fetchPoint(ribeira, 0)).isSameAs(ribeira);
+    }
+
+    @Test
+    void withoutResolutionEverySpotIsItsOwnCell() {
+        assertThat(ProviderGrid.group(List.of(ribeira, coxos), 0)).hasSize(2);
+        assertThat(ProviderGrid.withCellMates(List.of(ribeira), List.of(ribeira, coxos), 0)).containsExactly(ribeira);
+    }
+
+    @Test
+    void cellMatesAreAddedInCatalogOrder() {
+        assertThat(ProviderGrid.withCellMates(List.of(coxos, unknown), List.of(ribeira, peniche, coxos, unknown), 0.1))
+                .containsExactly(ribeira, coxos, unknown);
+    }
+
+    @Test
+    void negativeCoordinatesDoNotShareCellsAcrossZero() {
+        var west = Spot.builder().id(5L).latitude(0.05).longitude(-0.05).build();
+        var east = Spot.builder().id(6L).latitude(0.05).longitude(0.05).build();
+
+        assertThat(ProviderGrid.group(List.of(west, east), 0.1)).hasSize(2);
+    }
+}
@@ -0,0 +1,155 @@
+package com.surfmaster.forecast.providers;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.ForecastSource;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.quota.ProviderQuotaScheduler;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AggregatingForecastProviderTest {
+
+    private final Spot spot = Spot.builder().id(1L).name("Ericeira").build();
+    private final OffsetDateTime t0 = OffsetDateTime.of(2026, 3, 1, 6, 0, 0, 0, ZoneOffset.UTC);
+    private final ForecastProperties properties = new ForecastProperties();
+
+    @Test
+    void precedenceFillsMissingFieldsFromLowerPrioritySources() {
+        ForecastProvider stormglass = provider(ForecastSource.STORMGLASS, Mono.just(List.of(
+                hour(0, 1.5, null, 12),
+                hour(1, 1.7, 270.0, 12))));
+        ForecastProvider windguru = provider(ForecastSource.WINDGURU, Mono.just(List.of(
+                hour(0, 9.9, 300.0, 10),
+                hour(2, 2.0, 280.0, 11))));
+
+        List<Forecast> merged = new AggregatingForecastProvider(List.of(stormglass, windguru), properties.getAggregation())
+                .fetch(spot, t0, t0.plusHours(2));
+
+        assertThat(merged).extracting(Forecast::getSwellHeight).containsExactly(1.5, 1.7, 2.0);
+        // stormglass nao tinha direcao na hora 0: vem do windguru
+        assertThat(merged.get(0).getSwellDirectionDegrees()).isEqualTo(300.0);
+        assertThat(merged.get(0).getSwellPeriod()).isEqualTo(12);
+        assertThat(merged).extracting(Forecast::getDataSource)
+                .containsExactly(ForecastSource.STORMGLASS, ForecastSource.STORMGLASS, ForecastSource.WINDGURU);
+        assertThat(merged).allSatisfy(f -> assertThat(f.getSpot()).isSameAs(spot));
+    }
+
+    @Test
+    void weightedMergeAveragesValuesAndBearings() {
+        properties.getAggregation().setMerge(ForecastProperties.MergeStrategy.WEIGHTED);
+        properties.getAggregation().getWeights().put("windguru", 3.0);
+        ForecastProvider stormglass = provider(ForecastSource.STORMGLASS, Mono.just(List.of(hour(0, 1.0, 350.0, 10))));
+        ForecastProvider windguru = provider(ForecastSource.WINDGURU, Mono.just(List.of(hour(0, 2.0, 10.0, 14))));
+
+        Forecast merged = new AggregatingForecastProvider(List.of(stormglass, windguru), properties.getAggregation())
+                .fetch(spot, t0, t0).get(0);
+
+        assertThat(merged.getSwellHeight()).isCloseTo(1.75, within(1e-9));
+        assertThat(merged.getSwellPeriod()).isEqualTo(13);
+        // 350 e 10 graus: media circular perto de 5, nao 180
+        assertThat(merged.getSwellDirectionDegrees()).isCloseTo(5.0, within(0.1));
+        assertThat(merged.getSwellDirection()).isEqualTo(Direction.N);
+        assertThat(merged.getDataSource()).isEqualTo(ForecastSource.WINDGURU);
+    }
+
+    @Test
+    void slowOrFailingSourcesAreLeftOut() {
+        properties.getAggregation().setTimeoutSeconds(1);
+        ForecastProvider stormglass = provider(ForecastSource.STORMGLASS, Mono.never());
+        ForecastProvider windguru = provider(ForecastSource.WINDGURU, Mono.just(List.of(hour(0, 2.0, 280.0, 11))));
+        ForecastProvider magicseaweed = provider(ForecastSource.MAGICSEAWEED, Mono.error(new IllegalStateException("boom")));
+
+        List<Forecast> merged = new AggregatingForecastProvider(List.of(stormglass, windguru, magicseaweed), properties.getAggregation())
+                .fetch(spot, t0, t0);
+
+        assertThat(merged).singleElement()
+                .satisfies(f -> assertThat(f.getDataSource()).isEqualTo(ForecastSource.WINDGURU));
+    }
+
+    @Test
+    void failsOnlyWhenEverySourceFails() {
+        ForecastProvider stormglass = provider(ForecastSource.STORMGLASS, Mono.error(new IllegalStateException("Stormglass API error: 500")));
+        ForecastProvider windguru = provider(ForecastSource.WINDGURU, Mono.error(new IllegalStateException("down")));
+
+        var aggregating = new AggregatingForecastProvider(List.of(stormglass, windguru), properties.getAggregation());
+
+        assertThatThrownBy(() -> aggregating.fetch(spot, t0, t0))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void registryAggregatesOnlyWhenSeveralProvidersAreConfigured() {
+        ForecastProvider stormglass = provider(ForecastSource.STORMGLASS, Mono.just(List.of()));
+        ForecastProvider windguru = provider(ForecastSource.WINDGURU, Mono.just(List.of()));
+        var quotaScheduler = mock(ProviderQuotaScheduler.class);
+        when(quotaScheduler.permit(any())).thenReturn(Mono.empty());
+        var registry = new ForecastProviderRegistry(List.of(stormglass, windguru), properties, quotaScheduler);
+
+        properties.getResilience().setEnabled(false);
+        properties.setProvider("stormglass");
+        assertThat(registry.getConfiguredProvider()).get()
+                .extracting(ForecastProvider::getSource).isEqualTo(ForecastSource.STORMGLASS);
+
+        properties.setProvider("windguru, stormglass, unknown");
+        assertThat(registry.getConfiguredProviders()).extracting(ForecastProvider::getSource)
+                .containsExactly(ForecastSource.WINDGURU, ForecastSource.STORMGLASS);
+        ForecastProvider aggregating = registry.getConfiguredProvider().orElseThrow();
+        assertThat(aggregating).isInstanceOf(AggregatingForecastProvider.class)
+                .extracting(ForecastProvider::getSource).isEqualTo(ForecastSource.WINDGURU);
+
+        // cada provider agregado gasta a propria quota
+        aggregating.fetch(spot, t0, t0.plusHours(1));
+        verify(quotaScheduler).permit(ForecastSource.WINDGURU);
+        verify(quotaScheduler).permit(ForecastSource.STORMGLASS);
+    }
+
+    @Test
+    void aggregationTimeoutMustOutlastEveryRetry() {
+        // 3 tentativas de 10s mais o backoff passam de 30s
+        assertThat(properties.isAggregationTimeoutCoveringRetries()).isTrue();
+
+        properties.getAggregation().setTimeoutSeconds(20);
+        assertThat(properties.isAggregationTimeoutCoveringRetries()).isFalse();
+
+        properties.getResilience().setMaxRetries(0);
+        assertThat(properties.isAggregationTimeoutCoveringRetries()).isTrue();
+
+        properties.getResilience().setMaxRetries(2);
+        properties.getResilience().setEnabled(false);
+        assertThat(properties.isAggregationTimeoutCoveringRetries()).isTrue();
+    }
+
+    private ForecastProvider provider(ForecastSource source, Mono<List<Forecast>> response) {
+        ForecastProvider provider = mock(ForecastProvider.class);
+        when(provider.getSource()).thenReturn(source);
+        when(provider.supports(any())).thenReturn(true);
+        when(provider.fetchAsync(any(), any(), any())).thenReturn(response);
+        return provider;
+    }
+
+    private Forecast hour(int offset, double swellHeight, Double swellDegrees, int period) {
+        return Forecast.builder()
+                .spot(spot)
+                .timestamp(t0.plusHours(offset))
+                .swellHeight(swellHeight)
+                .swellPeriod(period)
+                .swellDirectionDegrees(swellDegrees)
+                .swellDirection(Direction.fromDegrees(swellDegrees))
+                .windSpeed(8.0)
+                .build();
+    }
+}
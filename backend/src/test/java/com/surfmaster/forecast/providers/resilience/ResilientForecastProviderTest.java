@@ -0,0 +1,215 @@
+package com.surfmaster.forecast.providers.resilience;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.ForecastSource;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.providers.ForecastProvider;
+import com.surfmaster.forecast.providers.ForecastProviderException;
+import com.surfmaster.forecast.providers.ForecastProviderRegistry;
+import com.surfmaster.forecast.providers.stormglass.StormglassForecastProvider;
+import com.surfmaster.forecast.quota.ProviderQuotaScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the real Stormglass client against a local stub server that answers each request
+ * with the next scripted status and delay (200 and no delay once the script is empty).
+ */
+class ResilientForecastProviderTest {
+
+    private static final String BODY = """
+            {"hours":[{"time":"2026-03-01T06:00:00+00:00","swellHeight":{"noaa":1.5},"windSpeed":{"noaa":4.0}}]}""";
+
+    private record Step(int status, long delayMillis) {}
+
+    private final Queue<Step> script = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ForecastProperties properties = new ForecastProperties();
+    private final Spot spot = Spot.builder().id(1L).name("Ericeira").latitude(38.99).longitude(-9.41).build();
+    private final OffsetDateTime t0 = OffsetDateTime.of(2026, 3, 1, 6, 0, 0, 0, ZoneOffset.UTC);
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private StormglassForecastProvider stormglass;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v2/weather/point", this::answer);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+
+        properties.getStormglass().setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/v2");
+        properties.getStormglass().setApiKey("test-key");
+        ForecastProperties.Resilience resilience = properties.getResilience();
+        resilience.setRetryBackoffMillis(10);
+        resilience.setRetryMaxBackoffMillis(50);
+        resilience.setHedgeEnabled(false);
+        stormglass = new StormglassForecastProvider(WebClient.builder(), properties);
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void retriesTransientErrors() {
+        script.add(new Step(503, 0));
+        script.add(new Step(500, 0));
+        var provider = new ResilientForecastProvider(stormglass, properties.getResilience());
+
+        List<Forecast> forecasts = provider.fetch(spot, t0, t0.plusHours(1));
+
+        assertThat(forecasts).singleElement().extracting(Forecast::getSwellHeight).isEqualTo(1.5);
+        assertThat(requests).hasValue(3);
+    }
+
+    @Test
+    void everyAttemptTakesAPermit() {
+        script.add(new Step(503, 0));
+        script.add(new Step(500, 0));
+        AtomicInteger permits = new AtomicInteger();
+        var provider = new ResilientForecastProvider(stormglass, properties.getResilience(),
+                () -> Mono.fromRunnable(permits::incrementAndGet));
+
+        provider.fetch(spot, t0, t0.plusHours(1));
+
+        assertThat(permits).hasValue(3);
+        assertThat(requests).hasValue(3);
+    }
+
+    @Test
+    void refusedPermitStopsWithoutCallingUpstreamOrOpeningTheCircuit() {
+        ForecastProperties.Resilience resilience = properties.getResilience();
+        resilience.setBreakerWindow(2);
+        resilience.setBreakerMinimumCalls(2);
+        var provider = new ResilientForecastProvider(stormglass, resilience,
+                () -> Mono.error(new IllegalStateException("Daily forecast provider quota exhausted for STORMGLASS")));
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> provider.fetch(spot, t0, t0.plusHours(1))).hasMessageContaining("quota exhausted");
+        }
+
+        assertThat(requests).hasValue(0);
+        assertThat(provider.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        script.add(new Step(401, 0));
+        var provider = new ResilientForecastProvider(stormglass, properties.getResilience());
+
+        assertThatThrownBy(() -> provider.fetch(spot, t0, t0.plusHours(1)))
+                .isInstanceOfSatisfying(ForecastProviderException.class, e -> assertThat(e.getStatus()).isEqualTo(401));
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void openCircuitFailsFastUntilTheProbeSucceeds() {
+        ForecastProperties.Resilience resilience = properties.getResilience();
+        resilience.setMaxRetries(0);
+        resilience.setBreakerWindow(4);
+        resilience.setBreakerMinimumCalls(4);
+        resilience.setBreakerOpenSeconds(30);
+        AtomicLong nanos = new AtomicLong();
+        var provider = new ResilientForecastProvider(stormglass, resilience, Mono::empty, nanos::get);
+        for (int i = 0; i < 4; i++) {
+            script.add(new Step(500, 0));
+            assertThatThrownBy(() -> provider.fetch(spot, t0, t0.plusHours(1))).hasMessageContaining("500");
+        }
+        assertThat(provider.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        assertThatThrownBy(() -> provider.fetch(spot, t0, t0.plusHours(1))).hasMessageContaining("circuit is open");
+        assertThat(requests).hasValue(4);
+
+        nanos.addAndGet(31_000_000_000L);
+        assertThat(provider.fetch(spot, t0, t0.plusHours(1))).hasSize(1);
+        assertThat(provider.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(requests).hasValue(5);
+    }
+
+    @Test
+    void hedgesARequestSlowerThanTheRecentP95() {
+        ForecastProperties.Resilience resilience = properties.getResilience();
+        resilience.setHedgeEnabled(true);
+        resilience.setHedgeMinSamples(3);
+        resilience.setHedgeMinDelayMillis(50);
+        var provider = new ResilientForecastProvider(stormglass, resilience);
+        for (int i = 0; i < 3; i++) {
+            provider.fetch(spot, t0, t0.plusHours(1));
+        }
+
+        script.add(new Step(200, 3_000));
+        long started = System.nanoTime();
+        List<Forecast> forecasts = provider.fetch(spot, t0, t0.plusHours(1));
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000L;
+
+        assertThat(forecasts).hasSize(1);
+        assertThat(elapsedMillis).isLessThan(2_000);
+        assertThat(requests).hasValue(5);
+    }
+
+    @Test
+    void registryWrapsProvidersOnce() {
+        properties.setProvider("stormglass");
+        var registry = new ForecastProviderRegistry(List.of(stormglass), properties, mock(ProviderQuotaScheduler.class));
+
+        ForecastProvider configured = registry.getConfiguredProvider().orElseThrow();
+
+        assertThat(configured).isInstanceOf(ResilientForecastProvider.class);
+        assertThat(configured.getSource()).isEqualTo(ForecastSource.STORMGLASS);
+        assertThat(registry.getConfiguredProvider()).containsSame(configured);
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        Step step = script.poll();
+        if (step == null) {
+            step = new Step(200, 0);
+        }
+        try {
+            Thread.sleep(step.delayMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = (step.status() == 200 ? BODY : "{\"errors\":{}}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(step.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // cliente cancelou (hedge perdedor)
+        } finally {
+            exchange.close();
+        }
+    }
+}
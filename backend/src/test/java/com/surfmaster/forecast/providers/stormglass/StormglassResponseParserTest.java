@@ -0,0 +1,91 @@
+package com.surfmaster.forecast.providers.stormglass;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+
+import static com.surfmaster.forecast.providers.stormglass.StormglassResponseParser.SWELL_DIRECTION;
+import static com.surfmaster.forecast.providers.stormglass.StormglassResponseParser.SWELL_HEIGHT;
+import static com.surfmaster.forecast.providers.stormglass.StormglassResponseParser.SWELL_PERIOD;
+import static com.surfmaster.forecast.providers.stormglass.StormglassResponseParser.TIDE_HEIGHT;
+import static com.surfmaster.forecast.providers.stormglass.StormglassResponseParser.WIND_SPEED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StormglassResponseParserTest {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    void keepsThePreferredSourceOrTheFirstNonNullValue() throws IOException {
+        String json = """
+                {
+                  "hours": [
+                    {
+                      "time": "2026-03-01T06:00:00+00:00",
+                      "swellHeight": {"sg": 1.3, "noaa": 1.2, "icon": 1.1},
+                      "swellDirection": {"noaa": null, "sg": 290.5},
+                      "swellPeriod": {"dwd": 11.7},
+                      "windSpeed": {"noaa": null},
+                      "airTemperature": {"noaa": 15.0},
+                      "tideHeight": 0.8
+                    },
+                    {
+                      "swellHeight": {"noaa": 9.9}
+                    },
+                    {
+                      "time": "2026-03-01T08:00:00+01:00",
+                      "swellHeight": {"noaa": 1.4}
+                    }
+                  ],
+                  "meta": {"cost": 1, "params": ["swellHeight"], "lat": 38.9}
+                }
+                """;
+
+        StormglassResponseParser.Hours hours = parse(json, "noaa");
+
+        // a hora sem "time" e descartada
+        assertThat(hours.size()).isEqualTo(2);
+        assertThat(hours.epochSecond(0)).isEqualTo(OffsetDateTime.parse("2026-03-01T06:00:00Z").toEpochSecond());
+        assertThat(hours.epochSecond(1)).isEqualTo(OffsetDateTime.parse("2026-03-01T07:00:00Z").toEpochSecond());
+        assertThat(hours.value(0, SWELL_HEIGHT)).isEqualTo(1.2);
+        assertThat(hours.value(0, SWELL_DIRECTION)).isEqualTo(290.5);
+        assertThat(hours.value(0, SWELL_PERIOD)).isEqualTo(11.7);
+        assertThat(hours.value(0, WIND_SPEED)).isNaN();
+        assertThat(hours.value(0, TIDE_HEIGHT)).isEqualTo(0.8);
+        assertThat(hours.value(1, SWELL_HEIGHT)).isEqualTo(1.4);
+        assertThat(hours.value(1, SWELL_DIRECTION)).isNaN();
+    }
+
+    @Test
+    void growsPastTheInitialCapacity() throws IOException {
+        StringBuilder json = new StringBuilder("{\"hours\":[");
+        OffsetDateTime t0 = OffsetDateTime.parse("2026-03-01T00:00:00Z");
+        for (int h = 0; h < 200; h++) {
+            if (h > 0) {
+                json.append(',');
+            }
+            json.append("{\"time\":\"").append(t0.plusHours(h)).append("\",\"swellHeight\":{\"noaa\":").append(h).append("}}");
+        }
+        json.append("]}");
+
+        StormglassResponseParser.Hours hours = parse(json.toString(), "noaa");
+
+        assertThat(hours.size()).isEqualTo(200);
+        assertThat(hours.value(199, SWELL_HEIGHT)).isEqualTo(199.0);
+        assertThat(hours.value(199, SWELL_PERIOD)).isNaN();
+    }
+
+    @Test
+    void rejectsANonObjectBody() {
+        assertThatThrownBy(() -> parse("[1,2]", "noaa")).isInstanceOf(IOException.class);
+    }
+
+    private StormglassResponseParser.Hours parse(String json, String preferredSource) throws IOException {
+        try (var parser = jsonFactory.createParser(json)) {
+            return StormglassResponseParser.parse(parser, preferredSource);
+        }
+    }
+}
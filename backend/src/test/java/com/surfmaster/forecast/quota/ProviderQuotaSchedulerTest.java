@@ -0,0 +1,160 @@
+package com.surfmaster.forecast.quota;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.entities.ForecastSource;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.grid.ProviderGrid;
+import com.surfmaster.forecast.store.ForecastStore;
+import com.surfmaster.repository.ProviderUsageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.flyway.enabled=false"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProviderQuotaSchedulerTest {
+
+    private static final ForecastSource STORMGLASS = ForecastSource.STORMGLASS;
+
+    @MockBean
+    private ForecastStore forecastStore;
+
+    @Autowired
+    private ProviderUsageRepository usageRepository;
+
+    private final ForecastProperties properties = new ForecastProperties();
+    private final AtomicLong nanos = new AtomicLong();
+    private final Instant now = Instant.parse("2026-03-01T10:00:00Z");
+    private final Clock clock = Clock.fixed(now, ZoneOffset.UTC);
+
+    private SpotDemandTracker demandTracker;
+
+    private final Spot ericeira = Spot.builder().id(1L).build();
+    private final Spot peniche = Spot.builder().id(2L).build();
+    private final Spot sagres = Spot.builder().id(3L).build();
+
+    @BeforeEach
+    void setUp() {
+        properties.getQuota().setDailyLimit(2);
+        properties.getQuota().setBurst(1);
+        properties.getQuota().setRequestsPerSecond(2.0);
+        demandTracker = new SpotDemandTracker(properties, nanos::get);
+        when(forecastStore.lastFetch(anyLong())).thenReturn(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // isNew() sempre true: deleteAll ignoraria as linhas
+        usageRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void prioritizesDemandedAndStaleSpotsWithinTheDailyQuota() {
+        var scheduler = newScheduler();
+        demandTracker.recordAll(List.of(2L, 2L, 2L, 3L));
+        // sagres foi atualizado ha pouco: mesmo lido, vale menos que ericeira parado ha dois dias
+        when(forecastStore.lastFetch(3L)).thenReturn(OffsetDateTime.ofInstant(now, ZoneOffset.UTC).minusMinutes(10));
+
+        List<Spot> planned = scheduler.prioritize(List.of(ericeira, sagres, peniche), STORMGLASS);
+
+        assertThat(planned).containsExactly(peniche, ericeira);
+        assertThat(scheduler.state()).containsEntry("skippedToday", 1);
+    }
+
+    @Test
+    void cellsRankBySummedDemandAndLeadWithTheirMostUrgentSpot() {
+        var scheduler = newScheduler();
+        var coxos = Spot.builder().id(4L).build();
+        demandTracker.recordAll(List.of(2L, 2L, 3L, 4L, 4L));
+
+        List<ProviderGrid.Cell> planned = scheduler.prioritizeCells(List.of(
+                new ProviderGrid.Cell(List.of(peniche)),
+                new ProviderGrid.Cell(List.of(ericeira, coxos, sagres))), STORMGLASS);
+
+        // 2 contra 1 + 2 + 0: a celula de ericeira vai primeiro, puxada por coxos
+        assertThat(planned).extracting(ProviderGrid.Cell::representative).containsExactly(coxos, peniche);
+        assertThat(planned.get(0).spots()).containsExactly(coxos, sagres, ericeira);
+    }
+
+    @Test
+    void permitsStopOnceTheDailyQuotaIsSpent() {
+        var scheduler = newScheduler();
+
+        scheduler.permit(STORMGLASS).block();
+        nanos.addAndGet(1_000_000_000L);
+        scheduler.permit(STORMGLASS).block();
+
+        assertThat(scheduler.remainingToday(STORMGLASS)).isZero();
+        assertThat(scheduler.prioritize(List.of(ericeira), STORMGLASS)).isEmpty();
+        assertThatThrownBy(() -> scheduler.permit(STORMGLASS).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("quota exhausted");
+        // cada provider tem a sua quota
+        assertThat(scheduler.remainingToday(ForecastSource.WINDGURU)).isEqualTo(2);
+    }
+
+    @Test
+    void usageSurvivesARestartAndResetsTheNextDay() {
+        newScheduler().permit(STORMGLASS).block();
+
+        // outra instancia (ou o mesmo pod reiniciado) le o uso do banco
+        assertThat(newScheduler().remainingToday(STORMGLASS)).isEqualTo(1);
+        assertThat(newScheduler().state()).extracting(state -> state.get("usedToday"))
+                .isEqualTo(Map.of("STORMGLASS", 1));
+
+        var tomorrow = new ProviderQuotaScheduler(properties, demandTracker, forecastStore, usageRepository,
+                Clock.fixed(now.plusSeconds(86_400), ZoneOffset.UTC), nanos::get);
+        assertThat(tomorrow.remainingToday(STORMGLASS)).isEqualTo(2);
+    }
+
+    @Test
+    void tokenBucketSpacesOutBursts() {
+        var bucket = new TokenBucket(1, 2.0, nanos::get);
+
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isEqualTo(500_000_000L);
+        assertThat(bucket.reserve()).isEqualTo(1_000_000_000L);
+
+        nanos.addAndGet(1_500_000_000L);
+        assertThat(bucket.available()).isEqualTo(1.0, within(1e-9));
+    }
+
+    @Test
+    void demandDecaysWithTheConfiguredHalfLife() {
+        properties.getQuota().setDemandHalfLifeHours(1.0);
+        demandTracker.record(1L);
+        demandTracker.record(1L);
+
+        nanos.addAndGet(3_600_000_000_000L);
+
+        assertThat(demandTracker.demand(1L)).isCloseTo(1.0, within(1e-9));
+        assertThat(demandTracker.demand(99L)).isZero();
+    }
+
+    private ProviderQuotaScheduler newScheduler() {
+        return new ProviderQuotaScheduler(properties, demandTracker, forecastStore, usageRepository, clock, nanos::get);
+    }
+}
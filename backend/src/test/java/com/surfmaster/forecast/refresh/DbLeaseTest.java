@@ -0,0 +1,56 @@
+package com.surfmaster.forecast.refresh;
+
+import com.surfmaster.repository.SchedulerLeaseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.flyway.enabled=false"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DbLeaseTest {
+
+    @Autowired
+    private SchedulerLeaseRepository leaseRepository;
+
+    private final Instant t0 = Instant.parse("2026-03-01T10:00:00Z");
+
+    @Test
+    void onlyOneInstanceHoldsTheLeaseUntilItExpires() {
+        var first = new DbLease(leaseRepository, Clock.fixed(t0, ZoneOffset.UTC));
+        var second = new DbLease(leaseRepository, Clock.fixed(t0.plusSeconds(30), ZoneOffset.UTC));
+
+        assertThat(first.tryAcquire("job", Duration.ofMinutes(1))).isTrue();
+        assertThat(second.tryAcquire("job", Duration.ofMinutes(1))).isFalse();
+        // o dono renova
+        assertThat(first.tryAcquire("job", Duration.ofMinutes(1))).isTrue();
+
+        var later = new DbLease(leaseRepository, Clock.fixed(t0.plusSeconds(120), ZoneOffset.UTC));
+        assertThat(later.tryAcquire("job", Duration.ofMinutes(1))).isTrue();
+        assertThat(leaseRepository.findById("job")).get()
+                .extracting(lease -> lease.getOwner()).isEqualTo(later.owner());
+    }
+
+    @Test
+    void releasedLeaseCanBeTakenImmediately() {
+        var first = new DbLease(leaseRepository, Clock.fixed(t0, ZoneOffset.UTC));
+        var second = new DbLease(leaseRepository, Clock.fixed(t0.plusSeconds(1), ZoneOffset.UTC));
+
+        assertThat(first.tryAcquire("other-job", Duration.ofMinutes(10))).isTrue();
+        first.release("other-job");
+
+        assertThat(second.tryAcquire("other-job", Duration.ofMinutes(10))).isTrue();
+    }
+}
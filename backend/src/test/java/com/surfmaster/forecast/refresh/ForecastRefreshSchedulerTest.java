@@ -0,0 +1,190 @@
+package com.surfmaster.forecast.refresh;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.dto.ForecastSyncResponse;
+import com.surfmaster.entities.ForecastsUpdatedEvent;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.providers.ForecastProvider;
+import com.surfmaster.forecast.providers.ForecastProviderRegistry;
+import com.surfmaster.forecast.store.ForecastStore;
+import com.surfmaster.repository.SpotRepository;
+import com.surfmaster.service.ForecastService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ForecastRefreshSchedulerTest {
+
+    @Mock
+    private ForecastProviderRegistry forecastProviderRegistry;
+
+    @Mock
+    private ForecastService forecastService;
+
+    @Mock
+    private ForecastStore forecastStore;
+
+    @Mock
+    private SpotRepository spotRepository;
+
+    @Mock
+    private DbLease lease;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final ForecastProperties properties = new ForecastProperties();
+    private final Instant t0 = Instant.parse("2026-03-01T10:00:00Z");
+    private final OffsetDateTime now = OffsetDateTime.ofInstant(t0, ZoneOffset.UTC);
+
+    private ForecastRefreshScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        properties.setTtlMinutes(60);
+        properties.getRefresh().setJitterFraction(0.5);
+        scheduler = new ForecastRefreshScheduler(properties, forecastProviderRegistry, forecastService,
+                forecastStore, spotRepository, lease, eventPublisher, Clock.fixed(t0, ZoneOffset.UTC));
+    }
+
+    @Test
+    void dueTimesAreSpreadAcrossTheJitterWindow() {
+        List<Spot> spots = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            spots.add(Spot.builder().id(id).build());
+        }
+        lenient().when(forecastStore.lastFetch(anyLong())).thenReturn(now);
+
+        // vencem entre 30 e 60 minutos depois do fetch, espalhados pela janela
+        int[] buckets = new int[3];
+        for (Spot spot : spots) {
+            long minutes = Duration.between(now, scheduler.dueAt(spot)).toMinutes();
+            assertThat(minutes).isBetween(30L, 60L);
+            buckets[(int) Math.min(2, (minutes - 30) / 10)]++;
+        }
+        assertThat(Arrays.stream(buckets).boxed().toList()).allSatisfy(count -> assertThat(count).isBetween(40, 95));
+
+        assertThat(scheduler.dueSpots(spots, now.plusMinutes(29))).isEmpty();
+        assertThat(scheduler.dueSpots(spots, now.plusMinutes(60))).hasSize(200);
+    }
+
+    @Test
+    void tickSyncsOnlyDueSpotsWhenHoldingTheLease() {
+        var stale = Spot.builder().id(1L).build();
+        var fresh = Spot.builder().id(2L).build();
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(mock(ForecastProvider.class)));
+        when(lease.tryAcquire(eq(ForecastRefreshScheduler.LEASE_NAME), any())).thenReturn(true);
+        when(spotRepository.findAll()).thenReturn(List.of(stale, fresh));
+        when(forecastStore.lastFetch(1L)).thenReturn(now.minusHours(2));
+        when(forecastStore.lastFetch(2L)).thenReturn(now.minusMinutes(5));
+        when(forecastService.syncSpots(List.of(stale), null, null, true)).thenReturn(new ForecastSyncResponse(1, 24, List.of()));
+
+        scheduler.tick();
+
+        verify(forecastService).syncSpots(List.of(stale), null, null, true);
+        // tentativa recente: nao repete no proximo tick mesmo sem fetch bem sucedido
+        assertThat(scheduler.dueSpots(List.of(stale), now.plusMinutes(1))).isEmpty();
+        assertThat(scheduler.dueSpots(List.of(stale), now.plusMinutes(16))).containsExactly(stale);
+    }
+
+    @Test
+    void tickAlsoRefreshesSpotsInTheSameProviderGridCell() {
+        var ribeira = Spot.builder().id(1L).latitude(38.988).longitude(-9.419).build();
+        var coxos = Spot.builder().id(2L).latitude(38.997).longitude(-9.424).build();
+        var peniche = Spot.builder().id(3L).latitude(39.344).longitude(-9.366).build();
+        var provider = mock(ForecastProvider.class);
+        when(provider.gridResolutionDegrees()).thenReturn(0.1);
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(provider));
+        when(lease.tryAcquire(eq(ForecastRefreshScheduler.LEASE_NAME), any())).thenReturn(true);
+        when(spotRepository.findAll()).thenReturn(List.of(ribeira, coxos, peniche));
+        when(forecastStore.lastFetch(1L)).thenReturn(now.minusHours(2));
+        when(forecastStore.lastFetch(2L)).thenReturn(now.minusMinutes(5));
+        when(forecastStore.lastFetch(3L)).thenReturn(now.minusMinutes(5));
+        when(forecastService.syncSpots(List.of(ribeira, coxos), null, null, true)).thenReturn(new ForecastSyncResponse(2, 48, List.of()));
+
+        scheduler.tick();
+
+        verify(forecastService).syncSpots(List.of(ribeira, coxos), null, null, true);
+    }
+
+    @Test
+    void tickDoesNothingWithoutTheLease() {
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(mock(ForecastProvider.class)));
+        when(lease.tryAcquire(any(), any())).thenReturn(false);
+
+        scheduler.tick();
+
+        verifyNoInteractions(spotRepository, forecastService);
+    }
+
+    @Test
+    void everyTickPullsSyncsWrittenByTheLeader() {
+        when(forecastStore.refreshFromDatabase()).thenReturn(Set.of(7L), Set.of());
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(mock(ForecastProvider.class)));
+        when(lease.tryAcquire(any(), any())).thenReturn(false);
+
+        scheduler.tick();
+        scheduler.tick();
+
+        // sem o lease, ainda recarrega e invalida os caches locais; nada novo, nada publicado
+        verify(eventPublisher).publishEvent(new ForecastsUpdatedEvent(Set.of(7L)));
+        verify(forecastService, never()).syncSpots(any(), any(), any(), eq(true));
+    }
+
+    @Test
+    void leaseIsRenewedWhileASyncRuns() {
+        properties.getRefresh().setLeaseSeconds(1);
+        var stale = Spot.builder().id(1L).build();
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(mock(ForecastProvider.class)));
+        when(lease.tryAcquire(eq(ForecastRefreshScheduler.LEASE_NAME), eq(Duration.ofSeconds(1)))).thenReturn(true);
+        when(spotRepository.findAll()).thenReturn(List.of(stale));
+        when(forecastStore.lastFetch(1L)).thenReturn(now.minusHours(2));
+        when(forecastService.syncSpots(List.of(stale), null, null, true)).thenAnswer(invocation -> {
+            Thread.sleep(1_200);
+            return new ForecastSyncResponse(1, 24, List.of());
+        });
+
+        scheduler.tick();
+
+        // uma aquisicao no tick e renovacoes a cada terco do lease durante o sync
+        verify(lease, atLeast(3)).tryAcquire(ForecastRefreshScheduler.LEASE_NAME, Duration.ofSeconds(1));
+    }
+
+    @Test
+    void tickIsSkippedWhenDisabledOrWithoutProvider() {
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.empty());
+        scheduler.tick();
+
+        properties.getRefresh().setEnabled(false);
+        scheduler.tick();
+
+        verifyNoInteractions(lease, forecastService);
+    }
+}
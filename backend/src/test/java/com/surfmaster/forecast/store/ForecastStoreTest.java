@@ -0,0 +1,273 @@
+package com.surfmaster.forecast.store;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.ForecastSource;
+import com.surfmaster.entities.ForecastsUpdatedEvent;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.SpotFetch;
+import com.surfmaster.repository.ForecastRepository;
+import com.surfmaster.repository.SpotFetchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ForecastStoreTest {
+
+    @Mock
+    private ForecastRepository forecastRepository;
+
+    @Mock
+    private SpotFetchRepository spotFetchRepository;
+
+    private final ForecastProperties forecastProperties = new ForecastProperties();
+
+    private ForecastStore store;
+
+    private final OffsetDateTime base = OffsetDateTime.now(ZoneOffset.UTC).withMinute(0).withSecond(0).withNano(0);
+    private final Spot ericeira = Spot.builder().id(1L).build();
+    private final Spot peniche = Spot.builder().id(2L).build();
+
+    @BeforeEach
+    void setUp() {
+        store = new ForecastStore(forecastRepository, spotFetchRepository, forecastProperties, new ForecastSnapshot(forecastProperties));
+    }
+
+    @Test
+    void loadBuildsOneOrderedBlockPerSpot() {
+        when(forecastRepository.findAllFromOrderedBySpot(any())).thenReturn(List.of(
+                forecast(ericeira, 0, 1.0),
+                forecast(ericeira, 1, 1.2),
+                forecast(peniche, 0, 2.0)));
+
+        store.load();
+
+        assertThat(store.pointCount()).isEqualTo(3);
+        assertThat(store.covers(base)).isTrue();
+        assertThat(store.covers(base.minusHours(forecastProperties.getStore().getRetentionHours() + 1))).isFalse();
+
+        ForecastSlice slice = store.slice(1L, base, base.plusHours(1));
+        assertThat(slice.size()).isEqualTo(2);
+        assertThat(slice.toDtos()).extracting(dto -> dto.swellHeight()).containsExactly(1.0, 1.2);
+        assertThat(store.slice(1L, base.plusMinutes(30), null).size()).isEqualTo(1);
+        assertThat(store.slice(3L, base, null)).isNull();
+    }
+
+    @Test
+    void replaceSwapsOnlyTheSyncedRange() {
+        when(forecastRepository.findAllFromOrderedBySpot(any())).thenReturn(List.of(
+                forecast(ericeira, 0, 1.0),
+                forecast(ericeira, 1, 1.1),
+                forecast(ericeira, 2, 1.2),
+                forecast(ericeira, 5, 1.5)));
+        store.load();
+
+        store.replace(1L, base.plusHours(1), base.plusHours(3), List.of(
+                forecast(ericeira, 2, 2.2),
+                forecast(ericeira, 3, 2.3)));
+
+        ForecastSlice slice = store.slice(1L, base, null);
+        assertThat(slice.toDtos()).extracting(dto -> dto.swellHeight()).containsExactly(1.0, 2.2, 2.3, 1.5);
+        assertThat(slice.block().epochSecond(1)).isEqualTo(base.plusHours(2).toEpochSecond());
+    }
+
+    @Test
+    void syncsDoNotAllocateDirectMemory() {
+        when(forecastRepository.findAllFromOrderedBySpot(any())).thenReturn(List.of(forecast(ericeira, 0, 1.0)));
+        store.load();
+        store.replace(1L, base, base.plusHours(1), List.of(forecast(ericeira, 0, 1.2)));
+        store.replace(2L, base, base.plusHours(1), List.of(forecast(peniche, 0, 2.0)));
+
+        assertThat(store.slice(1L, base, null).block().data().isDirect()).isFalse();
+        assertThat(store.slice(2L, base, null).block().data().isDirect()).isFalse();
+    }
+
+    @Test
+    void lastFetchComesFromTheDatabase() {
+        when(spotFetchRepository.findAll()).thenReturn(List.of(new SpotFetch(1L, base.minusMinutes(20))));
+
+        store.load();
+
+        assertThat(store.lastFetch(1L)).isEqualTo(base.minusMinutes(20));
+        assertThat(store.lastFetch(2L)).isNull();
+    }
+
+    @Test
+    void refreshReloadsOnlySpotsSyncedByAnotherInstance() {
+        when(forecastRepository.findAllFromOrderedBySpot(any())).thenReturn(List.of(
+                forecast(ericeira, 0, 1.0),
+                forecast(peniche, 0, 2.0)));
+        when(spotFetchRepository.findAll()).thenReturn(List.of(
+                new SpotFetch(1L, base.minusHours(1)),
+                new SpotFetch(2L, base.minusHours(1))));
+        store.load();
+
+        // outra instancia sincronizou a Ericeira
+        when(spotFetchRepository.findAll()).thenReturn(List.of(
+                new SpotFetch(1L, base),
+                new SpotFetch(2L, base.minusHours(1))));
+        when(forecastRepository.findBySpotIdAfter(any(), any())).thenReturn(List.of(
+                forecast(ericeira, 0, 3.0),
+                forecast(ericeira, 1, 3.1)));
+
+        assertThat(store.refreshFromDatabase()).containsExactly(1L);
+        assertThat(store.slice(1L, base, null).toDtos()).extracting(dto -> dto.swellHeight()).containsExactly(3.0, 3.1);
+        assertThat(store.slice(2L, base, null).toDtos()).extracting(dto -> dto.swellHeight()).containsExactly(2.0);
+        assertThat(store.lastFetch(1L)).isEqualTo(base);
+
+        // ja visto: nada a recarregar
+        assertThat(store.refreshFromDatabase()).isEmpty();
+        verify(forecastRepository).findBySpotIdAfter(any(), any());
+    }
+
+    @Test
+    void replaceDropsPointsOlderThanRetention() {
+        forecastProperties.getStore().setRetentionHours(24);
+
+        store.replace(1L, base.minusHours(48), base, List.of(
+                forecast(ericeira, -48, 0.5),
+                forecast(ericeira, 0, 1.0)));
+
+        assertThat(store.pointCount()).isEqualTo(1);
+    }
+
+    @Test
+    void blockKeepsMissingValuesAsNull() {
+        var f = Forecast.builder().spot(ericeira).timestamp(base).swellHeight(1.0)
+                .swellDirection(Direction.NW).windDirectionDegrees(95.0).build();
+
+        var block = ForecastBlock.of(1L, List.of(f));
+
+        assertThat(block.toDto(0).windSpeed()).isNull();
+        assertThat(block.toDto(0).dataSource()).isNull();
+        assertThat(block.toPoint(0).swellDirection()).isEqualTo(Direction.NW);
+        assertThat(block.toPoint(0).windDirection()).isNull();
+        assertThat(block.windDirectionDegrees(0)).isEqualTo(95.0);
+        assertThat(Double.isNaN(block.swellDirectionDegrees(0))).isTrue();
+    }
+
+    @Test
+    void disabledStoreNeverCoversAndIgnoresWrites() {
+        forecastProperties.getStore().setEnabled(false);
+
+        store.load();
+        store.replace(1L, base, base.plusHours(1), List.of(forecast(ericeira, 0, 1.0)));
+
+        assertThat(store.covers(base)).isFalse();
+        assertThat(store.pointCount()).isZero();
+        verifyNoInteractions(forecastRepository);
+    }
+
+    @Test
+    void restartReopensSnapshotWithoutTouchingTheDatabase(@TempDir Path dir) {
+        forecastProperties.getStore().setSnapshotPath(dir.resolve("forecasts.bin").toString());
+        when(forecastRepository.findAllFromOrderedBySpot(any())).thenReturn(List.of(
+                forecast(ericeira, 0, 1.0),
+                forecast(peniche, 0, 2.0),
+                forecast(peniche, 1, 2.1)));
+        store.load();
+        store.markFetched(2L, base);
+        store.writeSnapshot();
+        when(spotFetchRepository.findAll()).thenReturn(List.of(new SpotFetch(2L, base)));
+
+        var restarted = new ForecastStore(forecastRepository, spotFetchRepository, forecastProperties, new ForecastSnapshot(forecastProperties));
+        clearInvocations(forecastRepository);
+        restarted.load();
+
+        verifyNoInteractions(forecastRepository);
+        assertThat(restarted.pointCount()).isEqualTo(3);
+        assertThat(restarted.covers(base)).isTrue();
+        assertThat(restarted.lastFetch(2L)).isEqualTo(base);
+        assertThat(restarted.lastFetch(1L)).isNull();
+        assertThat(restarted.slice(2L, base, null).toDtos())
+                .extracting(dto -> dto.swellHeight(), dto -> dto.dataSource())
+                .containsExactly(tuple(2.0, ForecastSource.SEED), tuple(2.1, ForecastSource.SEED));
+    }
+
+    @Test
+    void snapshotThatMissedASyncFallsBackToDatabase(@TempDir Path dir) {
+        forecastProperties.getStore().setSnapshotPath(dir.resolve("forecasts.bin").toString());
+        when(forecastRepository.findAllFromOrderedBySpot(any())).thenReturn(List.of(forecast(peniche, 0, 2.0)));
+        store.load();
+        store.markFetched(2L, base);
+        store.writeSnapshot();
+        // outra instancia sincronizou o spot depois do snapshot
+        when(spotFetchRepository.findAll()).thenReturn(List.of(new SpotFetch(2L, base.plusHours(1))));
+        when(forecastRepository.findAllFromOrderedBySpot(any())).thenReturn(List.of(
+                forecast(peniche, 0, 2.0),
+                forecast(peniche, 1, 2.1)));
+
+        var restarted = new ForecastStore(forecastRepository, spotFetchRepository, forecastProperties, new ForecastSnapshot(forecastProperties));
+        restarted.load();
+
+        assertThat(restarted.pointCount()).isEqualTo(2);
+    }
+
+    @Test
+    void syncsCloseTogetherShareOneBackgroundSnapshotWrite(@TempDir Path dir) throws Exception {
+        forecastProperties.getStore().setSnapshotPath(dir.resolve("forecasts.bin").toString());
+        forecastProperties.getStore().setSnapshotDebounce(Duration.ofMillis(200));
+        ForecastSnapshot snapshot = spy(new ForecastSnapshot(forecastProperties));
+        store = new ForecastStore(forecastRepository, spotFetchRepository, forecastProperties, snapshot);
+        when(forecastRepository.findAllFromOrderedBySpot(any())).thenReturn(List.of(forecast(ericeira, 0, 1.0)));
+        store.load();
+
+        store.onForecastsUpdated(new ForecastsUpdatedEvent(Set.of(1L)));
+        store.onForecastsUpdated(new ForecastsUpdatedEvent(Set.of(2L)));
+        store.onForecastsUpdated(new ForecastsUpdatedEvent(Set.of(1L)));
+
+        verify(snapshot, never()).write(anyLong(), anyMap(), anyMap());
+        verify(snapshot, timeout(2000)).write(anyLong(), anyMap(), anyMap());
+        verify(snapshot, after(400).times(1)).write(anyLong(), anyMap(), anyMap());
+    }
+
+    @Test
+    void corruptSnapshotFallsBackToDatabase(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("forecasts.bin");
+        Files.write(file, new byte[]{1, 2, 3});
+        forecastProperties.getStore().setSnapshotPath(file.toString());
+        when(forecastRepository.findAllFromOrderedBySpot(any())).thenReturn(List.of(forecast(ericeira, 0, 1.0)));
+
+        store.load();
+
+        assertThat(store.pointCount()).isEqualTo(1);
+    }
+
+    private Forecast forecast(Spot spot, int hours, double swellHeight) {
+        return Forecast.builder()
+                .spot(spot)
+                .timestamp(base.plusHours(hours))
+                .swellHeight(swellHeight)
+                .swellPeriod(10)
+                .windSpeed(8.0)
+                .dataSource(ForecastSource.SEED)
+                .build();
+    }
+}
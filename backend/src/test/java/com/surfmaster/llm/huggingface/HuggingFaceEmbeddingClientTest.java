@@ -0,0 +1,158 @@
+package com.surfmaster.llm.huggingface;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.surfmaster.config.LlmProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the client against a local stub of the feature-extraction endpoint. The stub embeds
+ * each input as {@code [length, 1]}, or as two token vectors averaging to that when the text
+ * starts with "tokens".
+ */
+class HuggingFaceEmbeddingClientTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final LlmProperties properties = new LlmProperties();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile boolean dropLastVector;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private HuggingFaceEmbeddingClient client;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/models", this::answer);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+
+        properties.setEmbeddingEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/models/{model}");
+        properties.setEmbeddingApiKey("test-key");
+        client = new HuggingFaceEmbeddingClient(WebClient.builder(), properties);
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void embedAllSendsBatchesAndKeepsInputOrder() {
+        properties.setEmbeddingBatchSize(2);
+        properties.setEmbeddingConcurrency(2);
+
+        List<double[]> vectors = client.embedAll(List.of("a", "bb", "", "tokens", "ccccc", "dddddd"));
+
+        assertThat(vectors).hasSize(6);
+        assertThat(vectors.get(0)).containsExactly(1, 1);
+        assertThat(vectors.get(1)).containsExactly(2, 1);
+        assertThat(vectors.get(2)).hasSize(16).containsOnly(0);
+        assertThat(vectors.get(3)).containsExactly(6, 1);
+        assertThat(vectors.get(5)).containsExactly(6, 1);
+        // 5 textos nao vazios em lotes de 2
+        assertThat(requests).hasValue(3);
+        assertThat(maxInFlight.get()).isBetween(1, 2);
+    }
+
+    @Test
+    void embedStillSendsASingleInput() {
+        assertThat(client.embed("tokens")).containsExactly(6, 1);
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void aBatchWithMissingVectorsFails() {
+        dropLastVector = true;
+
+        assertThatThrownBy(() -> client.embedAll(List.of("a", "bb")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("1 vectors for 2 inputs");
+    }
+
+    @Test
+    void embedInBatchesDeliversGoodBatchesAndReportsTheFailedOnes() {
+        properties.setEmbeddingBatchSize(2);
+        Map<Integer, double[]> delivered = new ConcurrentHashMap<>();
+
+        List<Integer> failed = client.embedInBatches(List.of("a", "bb", "broken", "ccc", "dddd"), (indexes, vectors) -> {
+            for (int i = 0; i < indexes.size(); i++) {
+                delivered.put(indexes.get(i), vectors.get(i));
+            }
+        });
+
+        assertThat(failed).containsExactly(2, 3);
+        assertThat(delivered).containsOnlyKeys(0, 1, 4);
+        assertThat(delivered.get(4)).containsExactly(4, 1);
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            JsonNode inputs = mapper.readTree(exchange.getRequestBody()).get("inputs");
+            if (inputs.toString().contains("broken")) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            JsonNode body;
+            if (inputs.isArray()) {
+                ArrayNode batch = mapper.createArrayNode();
+                int count = dropLastVector ? inputs.size() - 1 : inputs.size();
+                for (int i = 0; i < count; i++) {
+                    batch.add(embedding(inputs.get(i).asText()));
+                }
+                body = batch;
+            } else {
+                body = embedding(inputs.asText());
+            }
+            // segura a resposta para os lotes se sobreporem
+            Thread.sleep(100);
+            byte[] bytes = mapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private JsonNode embedding(String text) {
+        if (text.startsWith("tokens")) {
+            ArrayNode tokens = mapper.createArrayNode();
+            tokens.addArray().add(text.length() - 2).add(0);
+            tokens.addArray().add(text.length() + 2).add(2);
+            return tokens;
+        }
+        return mapper.createArrayNode().add(text.length()).add(1);
+    }
+}
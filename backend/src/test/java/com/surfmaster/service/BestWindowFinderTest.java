@@ -0,0 +1,68 @@
+package com.surfmaster.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BestWindowFinderTest {
+
+    private static long[] hourly(int n) {
+        long[] epochSeconds = new long[n];
+        for (int i = 0; i < n; i++) {
+            epochSeconds[i] = 1_700_000_000L + i * BestWindowFinder.HOUR_SECONDS;
+        }
+        return epochSeconds;
+    }
+
+    @Test
+    void singleHourWindowPicksBestPoint() {
+        var window = BestWindowFinder.find(hourly(4), new double[]{10, 80, 40, 20}, 1);
+
+        assertThat(window.start()).isEqualTo(1);
+        assertThat(window.end()).isEqualTo(1);
+        assertThat(window.peak()).isEqualTo(1);
+        assertThat(window.score()).isEqualTo(80.0);
+    }
+
+    @Test
+    void windowMaximizesWorstHourAndExtendsOverEquallyGoodNeighbours() {
+        double[] scores = {90, 10, 60, 70, 65, 60, 20, 95};
+
+        var window = BestWindowFinder.find(hourly(scores.length), scores, 3);
+
+        // [70, 65, 60] has min 60 and stretches left over the 60 at index 2
+        assertThat(window.start()).isEqualTo(2);
+        assertThat(window.end()).isEqualTo(5);
+        assertThat(window.peak()).isEqualTo(3);
+        assertThat(window.score()).isEqualTo(60.0);
+    }
+
+    @Test
+    void windowDoesNotSpanGapsInTheForecast() {
+        long[] epochSeconds = hourly(4);
+        epochSeconds[2] += 2 * BestWindowFinder.HOUR_SECONDS;
+        epochSeconds[3] += 2 * BestWindowFinder.HOUR_SECONDS;
+
+        var window = BestWindowFinder.find(epochSeconds, new double[]{50, 50, 90, 90}, 2);
+
+        assertThat(window.start()).isEqualTo(2);
+        assertThat(window.end()).isEqualTo(3);
+        assertThat(BestWindowFinder.find(epochSeconds, new double[]{50, 50, 90, 90}, 3)).isNull();
+    }
+
+    @Test
+    void minimumLengthIsMeasuredInHoursNotPoints() {
+        long[] halfHourly = new long[6];
+        for (int i = 0; i < halfHourly.length; i++) {
+            halfHourly[i] = 1_700_000_000L + i * BestWindowFinder.HOUR_SECONDS / 2;
+        }
+
+        // 2 horas de dados a cada 30 min = 4 pontos
+        var window = BestWindowFinder.find(halfHourly, new double[]{10, 80, 80, 80, 80, 10}, 2);
+
+        assertThat(window.start()).isEqualTo(1);
+        assertThat(window.end()).isEqualTo(4);
+        assertThat(window.score()).isEqualTo(80.0);
+        assertThat(BestWindowFinder.find(halfHourly, new double[]{10, 80, 80, 80, 80, 10}, 4)).isNull();
+    }
+}
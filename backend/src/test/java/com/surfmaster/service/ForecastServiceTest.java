@@ -2,28 +2,57 @@ package com.surfmaster.service;
 
 import com.surfmaster.config.ForecastProperties;
 import com.surfmaster.dto.ForecastDto;
+import com.surfmaster.dto.ForecastPoint;
+import com.surfmaster.dto.ForecastSyncResponse;
 import com.surfmaster.entities.Direction;
 import com.surfmaster.entities.Forecast;
 import com.surfmaster.entities.ForecastSource;
 import com.surfmaster.entities.Spot;
 import com.surfmaster.repository.ForecastRepository;
 import com.surfmaster.repository.SpotRepository;
+import com.surfmaster.forecast.providers.ForecastProvider;
 import com.surfmaster.forecast.providers.ForecastProviderRegistry;
+import com.surfmaster.entities.ForecastsUpdatedEvent;
+import com.surfmaster.forecast.grid.ProviderGrid;
+import com.surfmaster.forecast.quota.ProviderQuotaScheduler;
+import com.surfmaster.forecast.quota.SpotDemandTracker;
+import com.surfmaster.forecast.store.ForecastBlock;
+import com.surfmaster.forecast.store.ForecastSlice;
+import com.surfmaster.forecast.store.ForecastStore;
 import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,6 +70,21 @@ class ForecastServiceTest {
     @Mock
     private ForecastProperties forecastProperties;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ForecastStore forecastStore;
+
+    @Mock
+    private ForecastWriter forecastWriter;
+
+    @Mock
+    private ProviderQuotaScheduler quotaScheduler;
+
+    @Mock
+    private SpotDemandTracker demandTracker;
+
     @InjectMocks
     private ForecastService forecastService;
 
@@ -80,4 +124,268 @@ class ForecastServiceTest {
         verify(forecastRepository).findBySpotIdAfter(eq(7L), captor.capture());
         assertThat(captor.getValue()).isNotNull();
     }
+
+    @Test
+    void unknownSpotIsNotRecordedAsDemand() {
+        var stormglass = new ForecastProperties.Stormglass();
+        when(forecastProperties.getStormglass()).thenReturn(stormglass);
+        when(spotRepository.findById(404L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> forecastService.getForecastsForSpot(404L, null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Spot not found");
+        verifyNoInteractions(demandTracker);
+    }
+
+    @Test
+    void getForecastPointsForSpotsDelegatesToProjectionQuery() {
+        var now = OffsetDateTime.now();
+        var point = new ForecastPoint(3L, now, 1.2, Direction.W, null, 6.0, Direction.E, null);
+        when(forecastRepository.findPointsForSpotsInRange(List.of(3L), now, now.plusHours(6)))
+                .thenReturn(List.of(point));
+
+        List<ForecastPoint> result = forecastService.getForecastPointsForSpots(List.of(3L), now, now.plusHours(6));
+
+        assertThat(result).containsExactly(point);
+    }
+
+    @Test
+    void getForecastPointsForSpotsSkipsQueryWithoutSpots() {
+        var now = OffsetDateTime.now();
+
+        assertThat(forecastService.getForecastPointsForSpots(List.of(), now, now.plusHours(1))).isEmpty();
+        verifyNoInteractions(forecastRepository);
+    }
+
+    @Test
+    void getForecastsForSpotIsServedFromStoreWhenCovered() {
+        var now = OffsetDateTime.now();
+        var spot = Spot.builder().id(7L).build();
+        var block = ForecastBlock.of(7L, List.of(
+                Forecast.builder().id(1L).spot(spot).timestamp(now.plusHours(1)).swellHeight(1.4).swellPeriod(11).build()));
+        when(forecastStore.covers(now)).thenReturn(true);
+        when(forecastStore.slice(7L, now, null)).thenReturn(ForecastSlice.of(block));
+
+        List<ForecastDto> result = forecastService.getForecastsForSpot(7L, now, null);
+
+        assertThat(result).singleElement().satisfies(dto -> {
+            assertThat(dto.id()).isEqualTo(1L);
+            assertThat(dto.swellHeight()).isEqualTo(1.4);
+            assertThat(dto.swellPeriod()).isEqualTo(11);
+            assertThat(dto.windSpeed()).isNull();
+        });
+        verifyNoInteractions(forecastRepository, spotRepository);
+    }
+
+    @Test
+    void getForecastSlicesFallsBackToDatabaseWhenStoreDoesNotCover() {
+        var now = OffsetDateTime.now();
+        when(forecastRepository.findPointsForSpotsInRange(List.of(3L), now, now.plusHours(6))).thenReturn(List.of(
+                new ForecastPoint(3L, now, 1.2, Direction.W, null, 6.0, Direction.E, null),
+                new ForecastPoint(3L, now.plusHours(1), 1.3, Direction.W, null, 7.0, Direction.E, null)));
+
+        var slices = forecastService.getForecastSlices(List.of(3L), now, now.plusHours(6));
+
+        assertThat(slices).containsOnlyKeys(3L);
+        assertThat(slices.get(3L).size()).isEqualTo(2);
+        assertThat(slices.get(3L).block().swellHeight(1)).isEqualTo(1.3);
+    }
+
+    @Test
+    void syncWithProviderPublishesUpdatedSpots() {
+        var spot = Spot.builder().id(4L).name("Peniche").latitude(39.35).longitude(-9.38).build();
+        var provider = mock(ForecastProvider.class);
+        var now = OffsetDateTime.now();
+        var fetched = Forecast.builder().spot(spot).timestamp(now.plusHours(1)).swellHeight(1.0).build();
+        allowQuota();
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(provider));
+        when(spotRepository.findById(4L)).thenReturn(Optional.of(spot));
+        when(provider.supports(spot)).thenReturn(true);
+        when(provider.fetchAsync(eq(spot), any(), any())).thenReturn(Mono.just(List.of(fetched)));
+        when(forecastWriter.replaceForecasts(eq(spot), eq(now), eq(now.plusHours(6)), eq(List.of(fetched)), any()))
+                .thenReturn(List.of(fetched));
+
+        var response = forecastService.syncWithProvider(4L, now, now.plusHours(6), true);
+
+        assertThat(response.totalForecastsSaved()).isEqualTo(1);
+        verify(eventPublisher).publishEvent(new ForecastsUpdatedEvent(Set.of(4L)));
+    }
+
+    @Test
+    void syncWithProviderFansOutUpToTheConcurrencyCap() {
+        var provider = mock(ForecastProvider.class);
+        var now = OffsetDateTime.now();
+        List<Spot> spots = new ArrayList<>();
+        for (long id = 1; id <= 12; id++) {
+            spots.add(Spot.builder().id(id).name("spot-" + id).latitude(39.0).longitude(-9.0).build());
+        }
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        when(forecastProperties.getSyncConcurrency()).thenReturn(4);
+        allowQuota();
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(provider));
+        when(spotRepository.findAll()).thenReturn(spots);
+        when(provider.supports(any())).thenReturn(true);
+        when(provider.fetchAsync(any(), any(), any())).thenAnswer(inv -> {
+            Spot spot = inv.getArgument(0);
+            return Mono.delay(Duration.ofMillis(50))
+                    .map(tick -> List.of(Forecast.builder().spot(spot).timestamp(now).build()))
+                    .doOnSubscribe(sub -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                    .doOnTerminate(inFlight::decrementAndGet);
+        });
+        when(forecastWriter.replaceForecasts(any(), any(), any(), any(), any())).thenAnswer(inv -> inv.getArgument(3));
+
+        var response = forecastService.syncWithProvider(null, now, now.plusHours(6), true);
+
+        assertThat(response.totalForecastsSaved()).isEqualTo(12);
+        assertThat(maxInFlight.get()).isEqualTo(4);
+    }
+
+    @Test
+    void syncWithProviderSkipsFailingSpotsButFailsWhenAllFail() {
+        var provider = mock(ForecastProvider.class);
+        var now = OffsetDateTime.now();
+        var ok = Spot.builder().id(1L).name("ok").latitude(39.0).longitude(-9.0).build();
+        var broken = Spot.builder().id(2L).name("broken").latitude(39.0).longitude(-9.0).build();
+        var fetched = Forecast.builder().spot(ok).timestamp(now).build();
+        allowQuota();
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(provider));
+        when(spotRepository.findAll()).thenReturn(List.of(ok, broken));
+        when(provider.supports(any())).thenReturn(true);
+        when(provider.fetchAsync(eq(ok), any(), any())).thenReturn(Mono.just(List.of(fetched)));
+        when(provider.fetchAsync(eq(broken), any(), any())).thenReturn(Mono.error(new IllegalStateException("quota exceeded")));
+        when(forecastWriter.replaceForecasts(eq(ok), any(), any(), any(), any())).thenReturn(List.of(fetched));
+
+        var response = forecastService.syncWithProvider(null, now, now.plusHours(6), true);
+
+        assertThat(response.totalForecastsSaved()).isEqualTo(1);
+        verify(forecastWriter, never()).replaceForecasts(eq(broken), any(), any(), any(), any());
+
+        when(spotRepository.findById(2L)).thenReturn(Optional.of(broken));
+        assertThatThrownBy(() -> forecastService.syncWithProvider(2L, now, now.plusHours(6), true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("quota exceeded");
+    }
+
+    @Test
+    void syncWithProviderOnlyFetchesTheSpotsTheQuotaAllows() {
+        var provider = mock(ForecastProvider.class);
+        var now = OffsetDateTime.now();
+        var busy = Spot.builder().id(1L).name("busy").latitude(39.0).longitude(-9.0).build();
+        var quiet = Spot.builder().id(2L).name("quiet").latitude(39.0).longitude(-9.0).build();
+        var fetched = Forecast.builder().spot(busy).timestamp(now).build();
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(provider));
+        when(spotRepository.findAll()).thenReturn(List.of(quiet, busy));
+        when(provider.supports(any())).thenReturn(true);
+        when(quotaScheduler.prioritizeCells(eq(List.of(new ProviderGrid.Cell(List.of(quiet)), new ProviderGrid.Cell(List.of(busy)))), any()))
+                .thenReturn(List.of(new ProviderGrid.Cell(List.of(busy))));
+        when(provider.fetchAsync(eq(busy), any(), any())).thenReturn(Mono.just(List.of(fetched)));
+        when(forecastWriter.replaceForecasts(eq(busy), any(), any(), any(), any())).thenReturn(List.of(fetched));
+
+        var response = forecastService.syncWithProvider(null, now, now.plusHours(6), true);
+
+        assertThat(response.totalForecastsSaved()).isEqualTo(1);
+        verify(provider, never()).fetchAsync(eq(quiet), any(), any());
+    }
+
+    @Test
+    void syncWithProviderFetchesEachGridCellOnceAndFansOut() {
+        var provider = mock(ForecastProvider.class);
+        var now = OffsetDateTime.now();
+        var ribeira = Spot.builder().id(1L).name("Ribeira d'Ilhas").latitude(38.988).longitude(-9.419).build();
+        var coxos = Spot.builder().id(2L).name("Coxos").latitude(38.997).longitude(-9.424).build();
+        var peniche = Spot.builder().id(3L).name("Supertubos").latitude(39.344).longitude(-9.366).build();
+        allowQuota();
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(provider));
+        when(spotRepository.findAll()).thenReturn(List.of(ribeira, coxos, peniche));
+        when(provider.supports(any())).thenReturn(true);
+        when(provider.gridResolutionDegrees()).thenReturn(0.1);
+        when(provider.fetchAsync(any(), any(), any())).thenAnswer(inv -> Mono.just(List.of(
+                Forecast.builder().spot(inv.getArgument(0)).timestamp(now).swellHeight(1.5).build())));
+        when(forecastWriter.replaceForecasts(any(), any(), any(), any(), any())).thenAnswer(inv -> inv.getArgument(3));
+
+        var response = forecastService.syncWithProvider(null, now, now.plusHours(6), true);
+
+        assertThat(response.totalForecastsSaved()).isEqualTo(3);
+        // uma chamada por celula, no centro dela
+        verify(provider).fetchAsync(argThat(at -> at.getLatitude() == 38.95 && at.getLongitude() == -9.45), any(), any());
+        verify(provider).fetchAsync(argThat(at -> at.getLatitude() == 39.35 && at.getLongitude() == -9.35), any(), any());
+        verify(provider, times(2)).fetchAsync(any(), any(), any());
+        // coxos recebe a previsao da celula com o proprio spot
+        verify(forecastWriter).replaceForecasts(eq(coxos), any(), any(), eq(List.of(
+                Forecast.builder().spot(coxos).timestamp(now).swellHeight(1.5).build())), any());
+        verify(eventPublisher).publishEvent(new ForecastsUpdatedEvent(Set.of(1L, 2L, 3L)));
+    }
+
+    @Test
+    void dueCellAlsoWritesItsSpotsThatAreNotDueYet() {
+        var provider = mock(ForecastProvider.class);
+        var now = OffsetDateTime.now();
+        var ribeira = Spot.builder().id(1L).name("Ribeira d'Ilhas").latitude(38.988).longitude(-9.419).build();
+        var coxos = Spot.builder().id(2L).name("Coxos").latitude(38.997).longitude(-9.424).build();
+        allowQuota();
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(provider));
+        when(spotRepository.findAll()).thenReturn(List.of(coxos, ribeira));
+        when(provider.supports(any())).thenReturn(true);
+        when(provider.gridResolutionDegrees()).thenReturn(0.1);
+        // so a Ribeira venceu; Coxos foi buscado ha pouco
+        when(forecastStore.lastFetch(any())).thenAnswer(inv -> inv.getArgument(0).equals(2L) ? now.minusMinutes(5) : null);
+        when(provider.fetchAsync(any(), any(), any())).thenAnswer(inv -> Mono.just(List.of(
+                Forecast.builder().spot(inv.getArgument(0)).timestamp(now).swellHeight(1.5).build())));
+        when(forecastWriter.replaceForecasts(any(), any(), any(), any(), any())).thenAnswer(inv -> inv.getArgument(3));
+
+        var response = forecastService.syncWithProvider(null, now, now.plusHours(6), false);
+
+        // a chamada da celula sai de qualquer jeito: grava os dois
+        assertThat(response.totalForecastsSaved()).isEqualTo(2);
+        verify(provider).fetchAsync(any(), any(), any());
+        verify(forecastWriter).replaceForecasts(eq(coxos), any(), any(), any(), any());
+        verify(eventPublisher).publishEvent(new ForecastsUpdatedEvent(Set.of(1L, 2L)));
+    }
+
+    @Test
+    void concurrentSyncsOfTheSameSpotShareOneFetchAndOneWrite() throws Exception {
+        var spot = Spot.builder().id(4L).name("Peniche").latitude(39.35).longitude(-9.38).build();
+        var provider = mock(ForecastProvider.class);
+        var now = OffsetDateTime.now();
+        var fetched = Forecast.builder().spot(spot).timestamp(now.plusHours(1)).swellHeight(1.0).build();
+        var response = Sinks.<List<Forecast>>one();
+        var fetchStarted = new CountDownLatch(1);
+        allowQuota();
+        when(forecastProviderRegistry.getConfiguredProvider()).thenReturn(Optional.of(provider));
+        when(spotRepository.findById(4L)).thenReturn(Optional.of(spot));
+        when(provider.supports(spot)).thenReturn(true);
+        when(provider.fetchAsync(eq(spot), any(), any())).thenAnswer(inv -> {
+            fetchStarted.countDown();
+            return response.asMono();
+        });
+        when(forecastWriter.replaceForecasts(eq(spot), any(), any(), any(), any())).thenReturn(List.of(fetched));
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<ForecastSyncResponse> first = callers.submit(() -> forecastService.syncWithProvider(4L, now, now.plusHours(6), true));
+            assertThat(fetchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<ForecastSyncResponse> second = callers.submit(() -> forecastService.syncWithProvider(4L, now, now.plusHours(6), true));
+            // o segundo ja passou do planejamento e vai se juntar ao voo em andamento
+            verify(quotaScheduler, timeout(5_000).times(2)).prioritizeCells(any(), any());
+            Thread.sleep(50);
+            response.tryEmitValue(List.of(fetched));
+
+            assertThat(first.get(5, TimeUnit.SECONDS).totalForecastsSaved()).isEqualTo(1);
+            assertThat(second.get(5, TimeUnit.SECONDS).totalForecastsSaved()).isEqualTo(1);
+        } finally {
+            callers.shutdownNow();
+        }
+        verify(provider, times(1)).fetchAsync(any(), any(), any());
+        verify(forecastWriter, times(1)).replaceForecasts(any(), any(), any(), any(), any());
+        verify(eventPublisher, times(1)).publishEvent(new ForecastsUpdatedEvent(Set.of(4L)));
+
+        // terminado o voo, o proximo sync busca de novo
+        forecastService.syncWithProvider(4L, now, now.plusHours(6), true);
+        verify(provider, times(2)).fetchAsync(any(), any(), any());
+    }
+
+    private void allowQuota() {
+        when(quotaScheduler.prioritizeCells(any(), any())).thenAnswer(inv -> inv.getArgument(0));
+    }
 }
@@ -0,0 +1,143 @@
+package com.surfmaster.service;
+
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.Forecast;
+import com.surfmaster.entities.ForecastSource;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.forecast.store.ForecastStore;
+import com.surfmaster.repository.ForecastRepository;
+import com.surfmaster.repository.ForecastUpsertRepository;
+import com.surfmaster.repository.SpotFetchRepository;
+import com.surfmaster.repository.SpotRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.flyway.enabled=false"
+})
+@Import({ForecastWriter.class, ForecastUpsertRepository.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ForecastWriterTest {
+
+    @Autowired
+    private ForecastWriter forecastWriter;
+    @Autowired
+    private ForecastRepository forecastRepository;
+    @Autowired
+    private SpotRepository spotRepository;
+    @Autowired
+    private SpotFetchRepository spotFetchRepository;
+    @SpyBean
+    private ForecastUpsertRepository forecastUpsertRepository;
+    @MockBean
+    private ForecastStore forecastStore;
+
+    private final OffsetDateTime t0 = OffsetDateTime.of(2026, 3, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private Spot spot;
+
+    @BeforeEach
+    void setUp() {
+        spot = spotRepository.save(Spot.builder().name("Ericeira").latitude(38.99).longitude(-9.41).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        forecastRepository.deleteAll();
+        spotFetchRepository.deleteAll();
+        spotRepository.deleteAll();
+    }
+
+    @Test
+    void writesOnlyNewAndChangedHoursAndDropsMissingOnes() {
+        forecastWriter.replaceForecasts(spot, t0, t0.plusHours(3),
+                List.of(forecast(0, 1.0), forecast(1, 1.2), forecast(2, 1.4), forecast(3, 1.6)), t0);
+        List<Long> firstIds = storedIds();
+        clearInvocations(forecastUpsertRepository);
+
+        // hora 1 muda, hora 3 some, hora 4 e nova; horas 0 e 2 iguais
+        List<Forecast> saved = forecastWriter.replaceForecasts(spot, t0, t0.plusHours(4),
+                List.of(forecast(0, 1.0), forecast(1, 2.2), forecast(2, 1.4), forecast(4, 1.8)), t0.plusHours(1));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Forecast>> written = ArgumentCaptor.forClass(List.class);
+        verify(forecastUpsertRepository).upsertAll(written.capture());
+        assertThat(written.getValue()).extracting(f -> f.getTimestamp().getHour()).containsExactly(1, 4);
+
+        List<Forecast> stored = stored();
+        assertThat(stored).extracting(f -> f.getTimestamp().withOffsetSameInstant(ZoneOffset.UTC).getHour())
+                .containsExactly(0, 1, 2, 4);
+        assertThat(stored).extracting(Forecast::getSwellHeight).containsExactly(1.0, 2.2, 1.4, 1.8);
+        // linhas atualizadas mantem o id
+        assertThat(stored.subList(0, 3)).extracting(Forecast::getId).containsExactlyElementsOf(firstIds.subList(0, 3));
+        assertThat(saved).extracting(Forecast::getId).containsExactlyElementsOf(stored.stream().map(Forecast::getId).toList());
+        verify(forecastStore).replace(spot.getId(), t0, t0.plusHours(4), saved);
+        // o fetch fica registrado no banco junto com as linhas
+        assertThat(spotFetchRepository.findById(spot.getId())).get()
+                .extracting(f -> f.getFetchedAt().toEpochSecond()).isEqualTo(t0.plusHours(1).toEpochSecond());
+    }
+
+    @Test
+    void unchangedRefreshWritesNothing() {
+        List<Forecast> hours = List.of(forecast(0, 1.0), forecast(1, 1.2));
+        forecastWriter.syncRange(spot, t0, t0.plusHours(1), hours);
+        clearInvocations(forecastUpsertRepository);
+
+        List<Forecast> saved = forecastWriter.syncRange(spot, t0, t0.plusHours(1), List.of(forecast(0, 1.0), forecast(1, 1.2)));
+
+        verify(forecastUpsertRepository).upsertAll(List.of());
+        assertThat(saved).extracting(Forecast::getId).containsExactlyElementsOf(storedIds());
+    }
+
+    @Test
+    void upsertedIdsNeverCollideWithIdsHibernateHandsOut() {
+        Forecast viaJpa = forecastRepository.save(forecast(0, 1.0));
+
+        forecastWriter.syncRange(spot, t0.plusHours(1), t0.plusHours(2), List.of(forecast(1, 1.2), forecast(2, 1.4)));
+        Spot other = spotRepository.save(Spot.builder().name("Peniche").latitude(39.36).longitude(-9.38).build());
+        Forecast laterViaJpa = forecastRepository.save(forecast(0, 1.0).toBuilder().spot(other).build());
+
+        assertThat(storedIds()).hasSize(4).doesNotHaveDuplicates()
+                .contains(viaJpa.getId(), laterViaJpa.getId());
+    }
+
+    private List<Forecast> stored() {
+        return forecastRepository.findAll().stream()
+                .sorted(Comparator.comparing(Forecast::getTimestamp))
+                .toList();
+    }
+
+    private List<Long> storedIds() {
+        return stored().stream().map(Forecast::getId).toList();
+    }
+
+    private Forecast forecast(int hour, double swellHeight) {
+        return Forecast.builder()
+                .spot(spot)
+                .timestamp(t0.plusHours(hour))
+                .swellHeight(swellHeight).swellPeriod(12).swellDirection(Direction.NW)
+                .windSpeed(5.0).windDirection(Direction.E).windDirectionDegrees(90.0)
+                .tideHeight(1.1).waterTemperature(17)
+                .dataSource(ForecastSource.STORMGLASS)
+                .build();
+    }
+}
@@ -0,0 +1,172 @@
+package com.surfmaster.service;
+
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.config.RecommendationProperties;
+import com.surfmaster.dto.ForecastPoint;
+import com.surfmaster.dto.RecommendationRequest;
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.ForecastsUpdatedEvent;
+import com.surfmaster.entities.Objective;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.UserLevel;
+import com.surfmaster.forecast.quota.SpotDemandTracker;
+import com.surfmaster.forecast.store.ForecastSlice;
+import com.surfmaster.service.geo.SpotGeoIndex;
+import com.surfmaster.service.scoring.ScoringModelCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RecommendationCacheTest {
+
+    @Mock
+    private ForecastService forecastService;
+
+    @Mock
+    private SpotGeoIndex spotGeoIndex;
+
+    private final RecommendationProperties properties = new RecommendationProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    private RecommendationCache cache;
+    private RecommendationService recommendationService;
+
+    private final OffsetDateTime start = OffsetDateTime.of(2026, 1, 10, 8, 0, 0, 0, ZoneOffset.UTC);
+
+    @BeforeEach
+    void setUp() {
+        cache = new RecommendationCache(properties, meterRegistry, nanoTime::get);
+        recommendationService = new RecommendationService(
+                forecastService, spotGeoIndex, ForkJoinPool.commonPool(), properties,
+                new ScoringModelCache(properties), cache, new SpotDemandTracker(new ForecastProperties()));
+    }
+
+    private RecommendationRequest request(double lat, double lon, double radius, OffsetDateTime from, OffsetDateTime to) {
+        return new RecommendationRequest(lon, lat, UserLevel.INTERMEDIATE, Objective.FUN, radius, from, to, 3, 1);
+    }
+
+    private void stubOneSpot() {
+        Spot spot = Spot.builder().id(1L).name("Ribeira d'Ilhas").latitude(38.99).longitude(-9.41)
+                .swellBestDirection(Direction.NW).windBestDirection(Direction.E).build();
+        when(spotGeoIndex.findWithinRadius(anyDouble(), anyDouble(), anyDouble())).thenReturn(List.of(spot));
+        when(forecastService.getForecastSlices(anyList(), any(), any())).thenReturn(ForecastSlice.bySpot(List.of(
+                new ForecastPoint(1L, start.plusHours(1), 1.5, Direction.NW, null, 6.0, Direction.E, null))));
+    }
+
+    @Test
+    void nearlyIdenticalRequestsShareOneComputation() {
+        stubOneSpot();
+
+        var first = recommendationService.recommend(request(38.991, -9.412, 28.0, start.plusMinutes(10), start.plusHours(6)));
+        var second = recommendationService.recommend(request(38.993, -9.414, 30.0, start.plusMinutes(40), start.plusHours(6).plusMinutes(20)));
+
+        assertThat(second.recommendations()).isEqualTo(first.recommendations());
+        assertThat(second.timeStart()).isEqualTo(start.plusMinutes(40));
+        verify(forecastService, times(1)).getForecastSlices(anyList(), any(), any());
+        assertThat(meterRegistry.get("surf.recommendation.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("surf.recommendation.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void canonicalRequestIsSnappedToCellBucketAndHourlyGrid() {
+        var canonical = cache.canonicalize(request(38.991, -9.412, 28.0, start.plusMinutes(10), start.plusHours(6).plusMinutes(20)));
+
+        assertThat(canonical.latitude()).isEqualTo(38.975, within(1e-9));
+        assertThat(canonical.longitude()).isEqualTo(-9.425, within(1e-9));
+        // bucket de 30 km mais a meia diagonal da celula (~3.5 km)
+        assertThat(canonical.maxDistanceKm()).isEqualTo(33.52, within(0.01));
+        assertThat(canonical.timeStart()).isEqualTo(start.plusHours(1));
+        assertThat(canonical.timeEnd()).isEqualTo(start.plusHours(6));
+    }
+
+    @Test
+    void cachedRankingIsCutToTheCallersCentreRadiusAndTopK() {
+        Spot near = Spot.builder().id(1L).name("Ribeira d'Ilhas").latitude(38.99).longitude(-9.41)
+                .swellBestDirection(Direction.NW).windBestDirection(Direction.E).build();
+        // ~28.5 km a leste dos dois centros
+        Spot far = Spot.builder().id(2L).name("Far").latitude(38.991).longitude(-9.082)
+                .swellBestDirection(Direction.NW).windBestDirection(Direction.E).build();
+        when(spotGeoIndex.findWithinRadius(anyDouble(), anyDouble(), anyDouble())).thenReturn(List.of(near, far));
+        when(forecastService.getForecastSlices(anyList(), any(), any())).thenReturn(ForecastSlice.bySpot(List.of(
+                new ForecastPoint(1L, start.plusHours(1), 1.0, Direction.N, null, 12.0, Direction.S, null),
+                new ForecastPoint(2L, start.plusHours(1), 1.5, Direction.NW, null, 6.0, Direction.E, null))));
+
+        var narrow = recommendationService.recommend(request(38.991, -9.412, 26.0, start, start.plusHours(6)));
+        var wide = recommendationService.recommend(request(38.993, -9.414, 30.0, start, start.plusHours(6)));
+        var single = recommendationService.recommend(new RecommendationRequest(
+                -9.414, 38.993, UserLevel.INTERMEDIATE, Objective.FUN, 30.0, start, start.plusHours(6), 1, 1));
+
+        assertThat(narrow.recommendations()).extracting(r -> r.spotId()).containsExactly(1L);
+        assertThat(wide.recommendations()).extracting(r -> r.spotId()).containsExactly(2L, 1L);
+        assertThat(single.recommendations()).extracting(r -> r.spotId()).containsExactly(2L);
+        verify(forecastService, times(1)).getForecastSlices(anyList(), any(), any());
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() {
+        stubOneSpot();
+        var req = request(38.99, -9.41, 30.0, start, start.plusHours(6));
+
+        recommendationService.recommend(req);
+        nanoTime.addAndGet(properties.getCache().getTtl().toNanos() - TimeUnit.SECONDS.toNanos(1));
+        recommendationService.recommend(req);
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        recommendationService.recommend(req);
+
+        verify(forecastService, times(2)).getForecastSlices(anyList(), any(), any());
+        assertThat(meterRegistry.get("surf.recommendation.cache.expirations").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void forecastSyncDropsEntriesThatScannedTheSpot() {
+        stubOneSpot();
+        var req = request(38.99, -9.41, 30.0, start, start.plusHours(6));
+
+        recommendationService.recommend(req);
+        cache.onForecastsUpdated(new ForecastsUpdatedEvent(Set.of(2L)));
+        recommendationService.recommend(req);
+        cache.onForecastsUpdated(new ForecastsUpdatedEvent(Set.of(1L)));
+        recommendationService.recommend(req);
+
+        verify(forecastService, times(2)).getForecastSlices(anyList(), any(), any());
+        assertThat(meterRegistry.get("surf.recommendation.cache.invalidations").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void lruBoundEvictsLeastRecentlyUsedEntry() {
+        properties.getCache().setMaxEntries(1);
+        cache = new RecommendationCache(properties, meterRegistry, nanoTime::get);
+        var key = cache.keyFor(request(38.99, -9.41, 30.0, start, start.plusHours(6)));
+        var other = cache.keyFor(request(41.18, -8.70, 30.0, start, start.plusHours(6)));
+        var entry = new RecommendationCache.Entry(start, List.of(), List.of(), Set.of());
+
+        cache.put(key, entry, cache.generation());
+        cache.put(other, entry, cache.generation());
+
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.get(other)).isSameAs(entry);
+        assertThat(meterRegistry.get("surf.recommendation.cache.evictions").counter().count()).isEqualTo(1.0);
+    }
+}
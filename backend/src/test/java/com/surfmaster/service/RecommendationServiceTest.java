@@ -1,25 +1,44 @@
 package com.surfmaster.service;
 
+import com.surfmaster.config.ForecastProperties;
+import com.surfmaster.config.RecommendationProperties;
+import com.surfmaster.dto.ForecastPoint;
 import com.surfmaster.dto.RecommendationRequest;
 import com.surfmaster.entities.Direction;
-import com.surfmaster.entities.Forecast;
 import com.surfmaster.entities.Objective;
+import com.surfmaster.entities.Reason;
+import com.surfmaster.entities.ReasonType;
 import com.surfmaster.entities.Risk;
 import com.surfmaster.entities.RiskType;
 import com.surfmaster.entities.Spot;
 import com.surfmaster.entities.UserLevel;
-import com.surfmaster.repository.SpotRepository;
+import com.surfmaster.forecast.quota.SpotDemandTracker;
+import com.surfmaster.forecast.store.ForecastSlice;
+import com.surfmaster.service.geo.SpotGeoIndex;
+import com.surfmaster.service.scoring.DirectionScoring;
+import com.surfmaster.service.scoring.ScoringModelCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,11 +48,27 @@ class RecommendationServiceTest {
     private ForecastService forecastService;
 
     @Mock
-    private SpotRepository spotRepository;
+    private SpotGeoIndex spotGeoIndex;
+
+    private final RecommendationProperties recommendationProperties = new RecommendationProperties();
 
-    @InjectMocks
     private RecommendationService recommendationService;
 
+    @BeforeEach
+    void setUp() {
+        // cache desligado: estes testes olham o scoring com o request exato
+        recommendationProperties.getCache().setMaxEntries(0);
+        recommendationService = newService();
+    }
+
+    private RecommendationService newService() {
+        return new RecommendationService(
+                forecastService, spotGeoIndex, ForkJoinPool.commonPool(), recommendationProperties,
+                new ScoringModelCache(recommendationProperties),
+                new RecommendationCache(recommendationProperties, new SimpleMeterRegistry()),
+                new SpotDemandTracker(new ForecastProperties()));
+    }
+
     @Test
     void recommendRanksSpotsByScoreAndAppliesTopK() {
         OffsetDateTime start = OffsetDateTime.now();
@@ -52,29 +87,13 @@ class RecommendationServiceTest {
                 .windBestDirection(Direction.S)
                 .build();
 
-        Forecast perfectWindow = Forecast.builder()
-                .id(11L)
-                .spot(highScoreSpot)
-                .timestamp(start.plusHours(1))
-                .swellHeight(1.0)
-                .swellPeriod(12)
-                .swellDirection(Direction.N)
-                .windSpeed(8.0)
-                .windDirection(Direction.S)
-                .build();
-        Forecast messyWindow = Forecast.builder()
-                .id(12L)
-                .spot(lowScoreSpot)
-                .timestamp(start.plusHours(2))
-                .swellHeight(3.0)
-                .swellPeriod(10)
-                .swellDirection(Direction.E)
-                .windSpeed(25.0)
-                .windDirection(Direction.N)
-                .build();
+        ForecastPoint perfectWindow = new ForecastPoint(
+                highScoreSpot.getId(), start.plusHours(1), 1.0, Direction.N, null, 8.0, Direction.S, null);
+        ForecastPoint messyWindow = new ForecastPoint(
+                lowScoreSpot.getId(), start.plusHours(2), 3.0, Direction.E, null, 25.0, Direction.N, null);
 
-        when(spotRepository.findAll()).thenReturn(List.of(highScoreSpot, lowScoreSpot));
-        when(forecastService.getForecastsBetween(start, end)).thenReturn(List.of(perfectWindow, messyWindow));
+        when(spotGeoIndex.findWithinRadius(-22.0, -43.0, 30.0)).thenReturn(List.of(highScoreSpot, lowScoreSpot));
+        when(forecastService.getForecastSlices(List.of(1L, 2L), start, end)).thenReturn(ForecastSlice.bySpot(List.of(perfectWindow, messyWindow)));
 
         RecommendationRequest request = new RecommendationRequest(
                 -43.0, -22.0, UserLevel.INTERMEDIATE, Objective.FUN,
@@ -102,23 +121,15 @@ class RecommendationServiceTest {
                 .notes(List.of("Correnteza forte", "Fundo raso"))
                 .build();
 
-        Forecast adverseConditions = Forecast.builder()
-                .id(21L)
-                .spot(spot)
-                .timestamp(start.plusHours(2))
-                .swellHeight(2.5)
-                .swellPeriod(9)
-                .swellDirection(Direction.N)
-                .windSpeed(22.0)
-                .windDirection(Direction.W)
-                .build();
+        ForecastPoint adverseConditions = new ForecastPoint(
+                spot.getId(), start.plusHours(2), 2.5, Direction.N, null, 22.0, Direction.W, null);
 
-        when(spotRepository.findAll()).thenReturn(List.of(spot));
-        when(forecastService.getForecastsBetween(start, end)).thenReturn(List.of(adverseConditions));
+        when(spotGeoIndex.findWithinRadius(-22.0, -43.0, 40.0)).thenReturn(List.of(spot));
+        when(forecastService.getForecastSlices(List.of(5L), start, end)).thenReturn(ForecastSlice.bySpot(List.of(adverseConditions)));
 
         RecommendationRequest request = new RecommendationRequest(
                 -43.0, -22.0, UserLevel.BEGINNER, Objective.FUN,
-                40.0, start, end, 3, 2
+                40.0, start, end, 3, 1
         );
 
         var response = recommendationService.recommend(request);
@@ -133,4 +144,223 @@ class RecommendationServiceTest {
         assertThat(riskTypes).contains(RiskType.STRONG_WIND, RiskType.TOO_BIG_FOR_LEVEL, RiskType.LOW_CONFIDENCE);
         assertThat(riskTypes.stream().filter(type -> type == RiskType.SPOT_NOTE)).hasSize(2);
     }
+
+    @Test
+    void recommendSkipsForecastLookupWhenNoSpotIsWithinRadius() {
+        OffsetDateTime start = OffsetDateTime.now();
+        OffsetDateTime end = start.plusHours(3);
+        when(spotGeoIndex.findWithinRadius(-22.0, -43.0, 10.0)).thenReturn(List.of());
+
+        RecommendationRequest request = new RecommendationRequest(
+                -43.0, -22.0, UserLevel.INTERMEDIATE, Objective.FUN,
+                10.0, start, end, 3, 1
+        );
+
+        var response = recommendationService.recommend(request);
+
+        assertThat(response.recommendations()).isEmpty();
+        verifyNoInteractions(forecastService);
+    }
+
+    @Test
+    void recommendReturnsContiguousWindowHonoringMinWindowHours() {
+        OffsetDateTime start = OffsetDateTime.now().withMinute(0).withSecond(0).withNano(0);
+        OffsetDateTime end = start.plusHours(6);
+
+        Spot spot = Spot.builder()
+                .id(7L)
+                .name("Supertubos")
+                .swellBestDirection(Direction.W)
+                .windBestDirection(Direction.E)
+                .build();
+
+        when(spotGeoIndex.findWithinRadius(-22.0, -43.0, 30.0)).thenReturn(List.of(spot));
+        when(forecastService.getForecastSlices(List.of(7L), start, end)).thenReturn(ForecastSlice.bySpot(List.of(
+                new ForecastPoint(7L, start.plusHours(1), 1.0, Direction.W, null, 8.0, Direction.E, null),
+                new ForecastPoint(7L, start.plusHours(2), 1.0, Direction.N, null, 8.0, Direction.E, null),
+                new ForecastPoint(7L, start.plusHours(3), 1.0, Direction.W, null, 14.0, Direction.E, null),
+                new ForecastPoint(7L, start.plusHours(4), 1.0, Direction.W, null, 10.0, Direction.E, null)
+        )));
+
+        RecommendationRequest request = new RecommendationRequest(
+                -43.0, -22.0, UserLevel.INTERMEDIATE, Objective.FUN,
+                30.0, start, end, 3, 2
+        );
+
+        var item = recommendationService.recommend(request).recommendations().get(0);
+
+        assertThat(item.bestWindowStart()).isAtSameInstantAs(start.plusHours(3));
+        assertThat(item.bestWindowEnd()).isAtSameInstantAs(start.plusHours(4));
+        assertThat(item.peakTime()).isEqualTo(start.plusHours(4));
+        assertThat(item.score()).isLessThan(100.0);
+    }
+
+    @Test
+    void recommendRejectsNonPositiveMinWindowHours() {
+        OffsetDateTime start = OffsetDateTime.now();
+        RecommendationRequest request = new RecommendationRequest(
+                -43.0, -22.0, UserLevel.INTERMEDIATE, Objective.FUN,
+                30.0, start, start.plusHours(2), 3, 0
+        );
+
+        assertThrows(IllegalArgumentException.class, () -> recommendationService.recommend(request));
+    }
+
+    @Test
+    void recommendRejectsTopKAboveTheConfiguredMaximum() {
+        OffsetDateTime start = OffsetDateTime.now();
+        RecommendationRequest request = new RecommendationRequest(
+                -43.0, -22.0, UserLevel.INTERMEDIATE, Objective.FUN,
+                30.0, start, start.plusHours(2), 2_000_000_000, 1
+        );
+
+        assertThrows(IllegalArgumentException.class, () -> recommendationService.recommend(request));
+        verifyNoInteractions(spotGeoIndex, forecastService);
+    }
+
+    @Test
+    void recommendScoresSpotsInParallelAndKeepsOnlyTopK() {
+        recommendationProperties.setParallelThreshold(1);
+        OffsetDateTime start = OffsetDateTime.now();
+        OffsetDateTime end = start.plusHours(3);
+
+        List<Spot> spots = new ArrayList<>();
+        List<ForecastPoint> points = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            spots.add(Spot.builder().id(id).name("Spot " + id)
+                    .swellBestDirection(Direction.W).windBestDirection(Direction.E).build());
+            // vento cresce com o id: spots com id menor pontuam melhor
+            points.add(new ForecastPoint(id, start.plusHours(1), 1.0, Direction.W, null, 12.0 + id * 0.05, Direction.E, null));
+        }
+        when(spotGeoIndex.findWithinRadius(-22.0, -43.0, 100.0)).thenReturn(spots);
+        when(forecastService.getForecastSlices(anyList(), any(), any())).thenReturn(ForecastSlice.bySpot(points));
+
+        RecommendationRequest request = new RecommendationRequest(
+                -43.0, -22.0, UserLevel.INTERMEDIATE, Objective.FUN,
+                100.0, start, end, 5, 1
+        );
+
+        var response = recommendationService.recommend(request);
+
+        assertThat(response.recommendations())
+                .extracting(item -> item.spotId())
+                .containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    void reasonsAndRisksAreBuiltOnlyForTheTopKWinners() {
+        OffsetDateTime start = OffsetDateTime.now();
+        OffsetDateTime end = start.plusHours(3);
+
+        Spot aligned = spy(Spot.builder().id(1L).name("Aligned")
+                .swellBestDirection(Direction.N).windBestDirection(Direction.S)
+                .notes(List.of("Correnteza forte", "Fundo raso", "Pedras")).build());
+        Spot offshore = spy(Spot.builder().id(2L).name("Offshore")
+                .swellBestDirection(Direction.N).windBestDirection(Direction.S)
+                .notes(List.of("Lotado")).build());
+        Spot loser = spy(Spot.builder().id(3L).name("Loser")
+                .swellBestDirection(Direction.N).windBestDirection(Direction.S)
+                .notes(List.of("Nunca lida")).build());
+        when(spotGeoIndex.findWithinRadius(-22.0, -43.0, 30.0)).thenReturn(List.of(aligned, offshore, loser));
+        when(forecastService.getForecastSlices(List.of(1L, 2L, 3L), start, end)).thenReturn(ForecastSlice.bySpot(List.of(
+                new ForecastPoint(1L, start.plusHours(1), 1.0, Direction.N, null, 8.0, Direction.S, null),
+                new ForecastPoint(2L, start.plusHours(1), 1.0, Direction.N, null, 8.0, Direction.N, null),
+                new ForecastPoint(3L, start.plusHours(1), 3.0, Direction.S, null, 25.0, Direction.N, null)
+        )));
+
+        RecommendationRequest request = new RecommendationRequest(
+                -43.0, -22.0, UserLevel.INTERMEDIATE, Objective.FUN,
+                30.0, start, end, 2, 1
+        );
+
+        var items = recommendationService.recommend(request).recommendations();
+
+        assertThat(items).extracting(item -> item.spotId()).containsExactly(1L, 2L);
+        // mesmo texto que o caminho antigo (explicacao montada para todo spot) produzia
+        var first = items.get(0);
+        assertThat(first.reasons()).containsExactly(
+                new Reason(ReasonType.SWELL, "Swell aligned with the spot's ideal direction"),
+                new Reason(ReasonType.WIND, "Wind aligned with the spot's ideal direction"),
+                new Reason(ReasonType.OTHER, String.format("Window score (worst hour): %.1f/100", first.score())));
+        assertThat(first.risks()).containsExactly(
+                new Risk(RiskType.SPOT_NOTE, "Correnteza forte"),
+                new Risk(RiskType.SPOT_NOTE, "Fundo raso"));
+        var second = items.get(1);
+        assertThat(second.reasons()).extracting(Reason::description)
+                .containsExactly("Swell aligned with the spot's ideal direction",
+                        "Wind not ideal, but penalty is under control",
+                        String.format("Window score (worst hour): %.1f/100", second.score()));
+        assertThat(second.risks()).contains(new Risk(RiskType.SPOT_NOTE, "Lotado"));
+
+        // o perdedor foi pontuado, mas nunca explicado
+        verify(aligned, atLeastOnce()).getNotes();
+        verify(loser, never()).getNotes();
+    }
+
+    @Test
+    void angularScoringUsesRawBearingsFromProvider() {
+        OffsetDateTime start = OffsetDateTime.now();
+        OffsetDateTime end = start.plusHours(3);
+
+        Spot spot = Spot.builder()
+                .id(9L)
+                .name("Coxos")
+                .swellBestDirection(Direction.NW)
+                .windBestDirection(Direction.E)
+                .build();
+        when(spotGeoIndex.findWithinRadius(-22.0, -43.0, 30.0)).thenReturn(List.of(spot));
+        // swell de 300 graus: 15 graus fora do NW ideal, ainda no mesmo setor
+        when(forecastService.getForecastSlices(List.of(9L), start, end)).thenReturn(ForecastSlice.bySpot(List.of(
+                new ForecastPoint(9L, start.plusHours(1), 1.0, Direction.NW, 300.0, 8.0, Direction.E, 90.0)
+        )));
+
+        RecommendationRequest request = new RecommendationRequest(
+                -43.0, -22.0, UserLevel.INTERMEDIATE, Objective.FUN,
+                30.0, start, end, 1, 1
+        );
+
+        double exact = recommendationService.recommend(request).recommendations().get(0).score();
+        // ANGULAR e opt-in
+        recommendationProperties.setDirectionScoring(DirectionScoring.ANGULAR);
+        recommendationService = newService();
+        var angularItem = recommendationService.recommend(request).recommendations().get(0);
+        double angular = angularItem.score();
+
+        assertThat(exact).isEqualTo(100.0);
+        assertThat(angular).isCloseTo(100.0 * (0.55 * Math.cos(Math.toRadians(15)) + 0.45), within(1e-9));
+        assertThat(angularItem.reasons()).first()
+                .isEqualTo(new Reason(ReasonType.SWELL, "Swell aligned with the spot's ideal direction"));
+    }
+
+    @Test
+    void reasonsFollowTheAngularMatchThatRankedTheSpot() {
+        OffsetDateTime start = OffsetDateTime.now();
+        OffsetDateTime end = start.plusHours(3);
+
+        Spot spot = Spot.builder()
+                .id(9L)
+                .name("Coxos")
+                .swellBestDirection(Direction.NW)
+                .windBestDirection(Direction.E)
+                .build();
+        when(spotGeoIndex.findWithinRadius(-22.0, -43.0, 30.0)).thenReturn(List.of(spot));
+        // 20 graus fora do NW, mas o enum do provider caiu no setor W: antes o texto dizia "nao ideal"
+        // vento 70 graus fora do E: pontua pouco e o texto acompanha
+        when(forecastService.getForecastSlices(List.of(9L), start, end)).thenReturn(ForecastSlice.bySpot(List.of(
+                new ForecastPoint(9L, start.plusHours(1), 1.0, Direction.W, 295.0, 8.0, Direction.E, 160.0)
+        )));
+
+        RecommendationRequest request = new RecommendationRequest(
+                -43.0, -22.0, UserLevel.INTERMEDIATE, Objective.FUN,
+                30.0, start, end, 1, 1
+        );
+        recommendationProperties.setDirectionScoring(DirectionScoring.ANGULAR);
+        recommendationService = newService();
+
+        var item = recommendationService.recommend(request).recommendations().get(0);
+
+        assertThat(item.reasons()).extracting(Reason::description).startsWith(
+                "Swell aligned with the spot's ideal direction",
+                "Wind not ideal, but penalty is under control");
+    }
 }
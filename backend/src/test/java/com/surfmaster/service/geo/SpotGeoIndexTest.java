@@ -0,0 +1,90 @@
+package com.surfmaster.service.geo;
+
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.SpotChangedEvent;
+import com.surfmaster.repository.SpotRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SpotGeoIndexTest {
+
+    @Mock
+    private SpotRepository spotRepository;
+
+    @InjectMocks
+    private SpotGeoIndex spotGeoIndex;
+
+    private static Spot spot(long id, String name, double lat, double lon) {
+        return Spot.builder().id(id).name(name).latitude(lat).longitude(lon).build();
+    }
+
+    @Test
+    void findWithinRadiusReturnsOnlyNearbySpots() {
+        var ericeira = spot(1L, "Ericeira", 38.9931, -9.4146);
+        var carcavelos = spot(2L, "Carcavelos", 38.6789, -9.3210);
+        var matosinhos = spot(3L, "Matosinhos", 41.1855, -8.7154);
+        when(spotRepository.findAll()).thenReturn(List.of(ericeira, carcavelos, matosinhos));
+
+        List<Spot> result = spotGeoIndex.findWithinRadius(38.8, -9.35, 50.0);
+
+        assertThat(result).containsExactlyInAnyOrder(ericeira, carcavelos);
+    }
+
+    @Test
+    void findWithinRadiusHandlesAntimeridian() {
+        var east = spot(1L, "Fiji East", -17.0, 179.9);
+        var west = spot(2L, "Fiji West", -17.0, -179.9);
+        when(spotRepository.findAll()).thenReturn(List.of(east, west));
+
+        assertThat(spotGeoIndex.findWithinRadius(-17.0, 179.95, 30.0)).containsExactlyInAnyOrder(east, west);
+    }
+
+    @Test
+    void spotChangeRebuildsIndexOnNextQuery() {
+        when(spotRepository.findAll())
+                .thenReturn(List.of())
+                .thenReturn(List.of(spot(1L, "Nazare", 39.6020, -9.0700)));
+
+        assertThat(spotGeoIndex.findWithinRadius(39.6, -9.07, 10.0)).isEmpty();
+        spotGeoIndex.onSpotChanged(new SpotChangedEvent(1L));
+        assertThat(spotGeoIndex.findWithinRadius(39.6, -9.07, 10.0)).hasSize(1);
+
+        verify(spotRepository, times(2)).findAll();
+    }
+
+    @Test
+    void aChangeDuringARebuildIsNotLost() {
+        var nazare = spot(1L, "Nazare", 39.6020, -9.0700);
+        // o spot muda enquanto o catalogo antigo ainda esta sendo lido
+        when(spotRepository.findAll())
+                .thenAnswer(inv -> {
+                    spotGeoIndex.onSpotChanged(new SpotChangedEvent(1L));
+                    return List.of();
+                })
+                .thenReturn(List.of(nazare));
+
+        assertThat(spotGeoIndex.findWithinRadius(39.6, -9.07, 10.0)).isEmpty();
+        assertThat(spotGeoIndex.findWithinRadius(39.6, -9.07, 10.0)).containsExactly(nazare);
+        assertThat(spotGeoIndex.findWithinRadius(39.6, -9.07, 10.0)).containsExactly(nazare);
+
+        verify(spotRepository, times(2)).findAll();
+    }
+
+    @Test
+    void distanceKmMatchesKnownDistance() {
+        // Lisboa -> Porto ~ 274 km
+        assertThat(SpotGeoIndex.distanceKm(38.7223, -9.1393, 41.1579, -8.6291)).isCloseTo(274.0, within(3.0));
+    }
+}
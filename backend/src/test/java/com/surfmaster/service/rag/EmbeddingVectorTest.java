@@ -0,0 +1,71 @@
+package com.surfmaster.service.rag;
+
+import com.surfmaster.config.LlmProperties.EmbeddingPrecision;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class EmbeddingVectorTest {
+
+    private final Random random = new Random(5);
+
+    @Test
+    void similarityIsTheCosineOfTheRawVectors() {
+        double[] a = gaussian(768);
+        double[] b = gaussian(768);
+
+        EmbeddingVector float32 = EmbeddingVector.encode(a, EmbeddingPrecision.FLOAT32);
+        EmbeddingVector int8 = EmbeddingVector.encode(a, EmbeddingPrecision.INT8);
+        float[] query = EmbeddingVector.normalize(b);
+
+        double cosine = cosine(a, b);
+        assertThat(float32.similarity(query)).isCloseTo(cosine, within(1e-5));
+        assertThat(int8.similarity(query)).isCloseTo(cosine, within(5e-3));
+        assertThat(int8.similarity(EmbeddingVector.encode(b, EmbeddingPrecision.INT8))).isCloseTo(cosine, within(5e-3));
+        assertThat(float32.similarity(int8)).isCloseTo(1.0, within(5e-3));
+        assertThat(float32.similarity(float32)).isCloseTo(1.0, within(1e-5));
+    }
+
+    @Test
+    void zeroAndMismatchedVectorsHaveNoSimilarity() {
+        EmbeddingVector zero = EmbeddingVector.encode(new double[3], EmbeddingPrecision.INT8);
+
+        assertThat(zero.similarity(new float[]{1, 0, 0})).isZero();
+        assertThat(EmbeddingVector.encode(new double[]{1, 0}, EmbeddingPrecision.FLOAT32).similarity(new float[]{1, 0, 0}))
+                .isZero();
+    }
+
+    @Test
+    void simdAndScalarKernelsAgree() {
+        // 771: sobra uma cauda fora do passo de qualquer largura de vetor
+        float[] a = EmbeddingVector.normalize(gaussian(771));
+        float[] b = EmbeddingVector.normalize(gaussian(771));
+        byte[] codes = EmbeddingVector.Int8.quantize(b).codes();
+
+        assertThat(VectorMath.dot(a, b)).isCloseTo(VectorMath.scalarDot(a, b), within(1e-5f));
+        assertThat(VectorMath.dot(a, codes)).isCloseTo(VectorMath.scalarDot(a, codes), within(1e-3f));
+    }
+
+    private double[] gaussian(int dimensions) {
+        double[] v = new double[dimensions];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = random.nextGaussian();
+        }
+        return v;
+    }
+
+    private static double cosine(double[] a, double[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
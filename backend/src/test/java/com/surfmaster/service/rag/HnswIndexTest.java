@@ -0,0 +1,136 @@
+package com.surfmaster.service.rag;
+
+import com.surfmaster.config.LlmProperties.EmbeddingPrecision;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 64;
+
+    @ParameterizedTest
+    @CsvSource({"FLOAT32, 0.95", "INT8, 0.93"})
+    void recallMatchesExactSearchOnClusteredVectors(EmbeddingPrecision precision, double minimumRecall) {
+        Random random = new Random(7);
+        double[][] centers = new double[20][];
+        for (int c = 0; c < centers.length; c++) {
+            centers[c] = gaussian(random, 1.0);
+        }
+        double[][] vectors = new double[3_000][];
+        var index = new HnswIndex(16, 100, 42L);
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = add(centers[i % centers.length], gaussian(random, 0.3));
+            index.upsert(i, EmbeddingVector.encode(vectors[i], precision));
+        }
+
+        int found = 0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            double[] query = add(centers[q % centers.length], gaussian(random, 0.3));
+            Set<Long> exact = exactTop(vectors, query, 10);
+            for (HnswIndex.Hit hit : index.search(EmbeddingVector.normalize(query), 10, 100)) {
+                if (exact.contains(hit.id())) {
+                    found++;
+                }
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(vectors.length);
+        assertThat(found / (queries * 10.0)).isGreaterThan(minimumRecall);
+    }
+
+    @Test
+    void updatesReplaceAndRemovalsHideVectors() {
+        var index = new HnswIndex(4, 20, 1L);
+        index.upsert(1L, vector(1, 0));
+        index.upsert(2L, vector(0, 1));
+        index.upsert(3L, vector(0.7, 0.7));
+
+        assertThat(index.search(query(1, 0.1), 1, 10)).extracting(HnswIndex.Hit::id).containsExactly(1L);
+
+        index.upsert(1L, vector(-1, 0));
+        index.remove(3L);
+
+        List<HnswIndex.Hit> hits = index.search(query(1, 0.1), 3, 10);
+        assertThat(hits).extracting(HnswIndex.Hit::id).containsExactly(2L, 1L);
+        assertThat(hits.get(1).similarity()).isNegative();
+        assertThat(index.contains(3L)).isFalse();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void manyUpdatesCompactTheGraphWithoutLosingVectors() {
+        Random random = new Random(3);
+        var index = new HnswIndex(8, 50, 5L);
+        for (int round = 0; round < 10; round++) {
+            for (long id = 0; id < 50; id++) {
+                index.upsert(id, vector(gaussian(random, 1.0)));
+            }
+        }
+        double[] target = gaussian(random, 1.0);
+        index.upsert(7L, vector(target));
+
+        assertThat(index.size()).isEqualTo(50);
+        assertThat(index.search(query(target), 1, 50)).singleElement()
+                .satisfies(hit -> assertThat(hit.id()).isEqualTo(7L));
+    }
+
+    @Test
+    void rejectsVectorsOfAnotherDimension() {
+        var index = new HnswIndex(4, 20, 1L);
+        index.upsert(1L, vector(1, 0));
+
+        assertThatThrownBy(() -> index.upsert(2L, vector(1, 0, 0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(index.search(query(1, 0, 0), 1, 10)).isEmpty();
+    }
+
+    private static Set<Long> exactTop(double[][] vectors, double[] query, int k) {
+        float[] q = EmbeddingVector.normalize(query);
+        double[] similarity = new double[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            similarity[i] = VectorMath.scalarDot(q, EmbeddingVector.normalize(vectors[i]));
+        }
+        Set<Long> top = new HashSet<>();
+        IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> similarity[i]).reversed())
+                .limit(k)
+                .forEach(i -> top.add((long) i));
+        return top;
+    }
+
+    private static EmbeddingVector vector(double... values) {
+        return EmbeddingVector.encode(values, EmbeddingPrecision.FLOAT32);
+    }
+
+    private static float[] query(double... values) {
+        return EmbeddingVector.normalize(values);
+    }
+
+    private static double[] gaussian(Random random, double scale) {
+        double[] v = new double[DIMENSIONS];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = random.nextGaussian() * scale;
+        }
+        return v;
+    }
+
+    private static double[] add(double[] a, double[] b) {
+        double[] sum = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+}
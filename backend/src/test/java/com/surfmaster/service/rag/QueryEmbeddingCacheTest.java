@@ -0,0 +1,97 @@
+package com.surfmaster.service.rag;
+
+import com.surfmaster.config.LlmProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryEmbeddingCacheTest {
+
+    private final LlmProperties properties = new LlmProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<String> embedded = new ArrayList<>();
+
+    @Test
+    void questionsDifferingInCaseSpacingOrNumberFormatShareAnEntry() {
+        var cache = new QueryEmbeddingCache(properties, meterRegistry, nanos::get);
+
+        float[] first = cache.get("Best spot for  BEGINNERS with 1,50m swell?", this::embed);
+        float[] second = cache.get(" best spot for beginners\twith 1.5m swell?", this::embed);
+
+        assertThat(second).isSameAs(first);
+        assertThat(embedded).containsExactly("best spot for beginners with 1.5m swell?");
+        assertThat(meterRegistry.get("surf.rag.query.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("surf.rag.query.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void numbersAreCanonicalized() {
+        assertThat(QueryEmbeddingCache.normalize("Swell 2,50 ou 10 m")).isEqualTo("swell 2.5 ou 10 m");
+        assertThat(QueryEmbeddingCache.normalize("007 spots")).isEqualTo("7 spots");
+    }
+
+    @Test
+    void leastRecentlyUsedQuestionsAreEvicted() {
+        properties.getQueryCache().setMaxEntries(2);
+        var cache = new QueryEmbeddingCache(properties, meterRegistry, nanos::get);
+
+        cache.get("a", this::embed);
+        cache.get("b", this::embed);
+        cache.get("a", this::embed);
+        cache.get("c", this::embed);
+        cache.get("a", this::embed);
+        cache.get("b", this::embed);
+
+        assertThat(embedded).containsExactly("a", "b", "c", "b");
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(meterRegistry.get("surf.rag.query.cache.evictions").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() {
+        properties.getQueryCache().setTtl(Duration.ofMinutes(10));
+        var cache = new QueryEmbeddingCache(properties, meterRegistry, nanos::get);
+
+        cache.get("any waves today?", this::embed);
+        nanos.addAndGet(Duration.ofMinutes(9).toNanos());
+        cache.get("any waves today?", this::embed);
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        cache.get("any waves today?", this::embed);
+
+        assertThat(embedded).hasSize(2);
+        assertThat(meterRegistry.get("surf.rag.query.cache.expirations").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedEmbeddingsAreNotCached() {
+        var cache = new QueryEmbeddingCache(properties, meterRegistry, nanos::get);
+
+        assertThat(cache.get("any waves today?", text -> null)).isNull();
+        assertThat(cache.get("any waves today?", this::embed)).isNotNull();
+        assertThat(embedded).hasSize(1);
+    }
+
+    @Test
+    void zeroEntriesDisablesTheCache() {
+        properties.getQueryCache().setMaxEntries(0);
+        var cache = new QueryEmbeddingCache(properties, meterRegistry, nanos::get);
+
+        cache.get("any waves today?", this::embed);
+        cache.get("any waves today?", this::embed);
+
+        assertThat(embedded).hasSize(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    private float[] embed(String text) {
+        embedded.add(text);
+        return new float[]{text.length()};
+    }
+}
@@ -0,0 +1,168 @@
+package com.surfmaster.service.rag;
+
+import com.surfmaster.config.LlmProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SpotEmbeddingStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final LlmProperties properties = new LlmProperties();
+
+    @BeforeEach
+    void setUp() {
+        properties.setEmbeddingStorePath(dir.resolve("embeddings/spots.bin").toString());
+    }
+
+    @Test
+    void embeddingsSurviveARestartWhileTheDescriptionIsUnchanged() {
+        var store = new SpotEmbeddingStore(properties);
+        store.save(1L, "Spot: Ericeira", new double[]{0.1, 0.2, 0.3});
+        store.save(2L, "Spot: Peniche", new double[]{0.4, 0.5, 0.6});
+        store.flush();
+
+        var restarted = new SpotEmbeddingStore(properties);
+        restarted.load();
+
+        assertThat(restarted.size()).isEqualTo(2);
+        assertThat(restarted.find(1L, "Spot: Ericeira"))
+                .isInstanceOfSatisfying(EmbeddingVector.Float32.class, v -> assertThat(v.values())
+                        .containsExactly(((EmbeddingVector.Float32) store.find(1L, "Spot: Ericeira")).values()));
+        // notas mudaram: precisa recalcular
+        assertThat(restarted.find(2L, "Spot: Peniche\nNotes: crowded")).isNull();
+        assertThat(restarted.find(3L, "Spot: Sagres")).isNull();
+    }
+
+    @Test
+    void changingTheEmbeddingModelInvalidatesStoredVectors() {
+        var store = new SpotEmbeddingStore(properties);
+        store.save(1L, "Spot: Ericeira", new double[]{0.1});
+
+        properties.setEmbeddingModel("intfloat/e5-small-v2");
+
+        assertThat(store.find(1L, "Spot: Ericeira")).isNull();
+    }
+
+    @Test
+    void savesCloseTogetherShareOneBackgroundWrite() throws Exception {
+        properties.setEmbeddingStoreWriteDebounce(Duration.ofMillis(200));
+        Path path = Path.of(properties.getEmbeddingStorePath());
+        var store = new SpotEmbeddingStore(properties);
+
+        for (long id = 1; id <= 3; id++) {
+            store.save(id, "Spot " + id, new double[]{id, 1});
+        }
+        // nada escrito na thread de quem salvou
+        assertThat(path).doesNotExist();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!Files.exists(path) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        var restarted = new SpotEmbeddingStore(properties);
+        restarted.load();
+        assertThat(restarted.size()).isEqualTo(3);
+    }
+
+    @Test
+    void deletedSpotsAreDroppedFromTheFile() {
+        var store = new SpotEmbeddingStore(properties);
+        store.save(1L, "Spot: Ericeira", new double[]{0.1});
+        store.save(2L, "Spot: Peniche", new double[]{0.2});
+        store.save(3L, "Spot: Sagres", new double[]{0.3});
+
+        store.remove(2L);
+        store.retainOnly(Set.of(1L, 2L));
+        store.flush();
+
+        var restarted = new SpotEmbeddingStore(properties);
+        restarted.load();
+        assertThat(restarted.size()).isEqualTo(1);
+        assertThat(restarted.find(1L, "Spot: Ericeira")).isNotNull();
+    }
+
+    @Test
+    void anUnreadableFileIsIgnored() throws IOException {
+        Path path = Path.of(properties.getEmbeddingStorePath());
+        Files.createDirectories(path.getParent());
+        Files.write(path, new byte[]{1, 2, 3});
+
+        var store = new SpotEmbeddingStore(properties);
+        store.load();
+
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void withoutAPathEmbeddingsStayInMemory() {
+        properties.setEmbeddingStorePath(null);
+        var store = new SpotEmbeddingStore(properties);
+
+        store.save(1L, "Spot: Ericeira", new double[]{0.1});
+
+        assertThat(store.find(1L, "Spot: Ericeira")).isNotNull();
+        assertThat(dir).isEmptyDirectory();
+    }
+
+    @Test
+    void vectorsAreStoredNormalizedInTheConfiguredPrecision() {
+        var store = new SpotEmbeddingStore(properties);
+        assertThat(store.save(1L, "Spot: Ericeira", new double[]{3, 4}))
+                .isInstanceOfSatisfying(EmbeddingVector.Float32.class,
+                        v -> assertThat(v.values()).containsExactly(0.6f, 0.8f));
+        store.flush();
+
+        // trocar para int8 converte o que ja estava em disco
+        properties.setEmbeddingPrecision(LlmProperties.EmbeddingPrecision.INT8);
+        var restarted = new SpotEmbeddingStore(properties);
+        restarted.load();
+
+        assertThat(restarted.find(1L, "Spot: Ericeira"))
+                .isInstanceOfSatisfying(EmbeddingVector.Int8.class,
+                        v -> assertThat(v.similarity(new float[]{0.6f, 0.8f})).isCloseTo(1.0, within(1e-3)));
+        assertThat(restarted.save(2L, "Spot: Peniche", new double[]{1, 0})).isInstanceOf(EmbeddingVector.Int8.class);
+    }
+
+    @Test
+    void version1FilesOfRawDoublesAreMigrated() throws IOException {
+        var store = new SpotEmbeddingStore(properties);
+        byte[] hash = store.hash("Spot: Ericeira");
+        Path path = Path.of(properties.getEmbeddingStorePath());
+        Files.createDirectories(path.getParent());
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(path))) {
+            out.writeInt(SpotEmbeddingStore.MAGIC);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeLong(1L);
+            out.write(hash);
+            out.writeInt(2);
+            out.writeDouble(3);
+            out.writeDouble(4);
+        }
+
+        store.load();
+
+        assertThat(store.find(1L, "Spot: Ericeira"))
+                .isInstanceOfSatisfying(EmbeddingVector.Float32.class,
+                        v -> assertThat(v.values()).containsExactly(0.6f, 0.8f));
+        // regravado no formato atual
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            assertThat(in.readInt()).isEqualTo(SpotEmbeddingStore.MAGIC);
+            assertThat(in.readInt()).isEqualTo(SpotEmbeddingStore.VERSION);
+        }
+    }
+}
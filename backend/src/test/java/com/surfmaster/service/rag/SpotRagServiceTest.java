@@ -0,0 +1,255 @@
+package com.surfmaster.service.rag;
+
+import com.surfmaster.config.LlmProperties;
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.SpotChangedEvent;
+import com.surfmaster.entities.UserLevel;
+import com.surfmaster.llm.EmbeddingClient;
+import com.surfmaster.repository.SpotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SpotRagServiceTest {
+
+    @Mock
+    private SpotRepository spotRepository;
+
+    @Mock
+    private EmbeddingClient embeddingClient;
+
+    private final LlmProperties properties = new LlmProperties();
+    private SpotRagService service;
+
+    private final Spot ericeira = spot(1L, "Ericeira", "reef");
+    private final Spot peniche = spot(2L, "Peniche", "beach break");
+    private final Spot sagres = spot(3L, "Sagres", "point break");
+
+    @BeforeEach
+    void setUp() {
+        service = new SpotRagService(spotRepository, embeddingClient, new SpotEmbeddingStore(properties), properties,
+                new QueryEmbeddingCache(properties, new SimpleMeterRegistry()));
+        // cada spot aponta para um eixo; a pergunta aponta para o spot que cita
+        lenient().when(embeddingClient.embed(anyString())).thenAnswer(inv -> axes(inv.getArgument(0)));
+        lenient().when(embeddingClient.embedInBatches(anyList(), any())).thenAnswer(inv -> deliver(inv, List.of(), List.of()));
+        lenient().when(spotRepository.findAll()).thenReturn(List.of(ericeira, peniche, sagres));
+    }
+
+    @Test
+    void ranksCandidatesFromTheIndexAndEmbedsTheCatalogInOneBatch() {
+        service.buildIndex();
+        RagContext first = service.retrieveContext("How is Peniche today?", null);
+        RagContext second = service.retrieveContext("Any swell for Sagres?", null);
+
+        assertThat(first.spots()).first().extracting(RagSpot::spotId).isEqualTo(2L);
+        assertThat(first.spots().get(0).similarityScore()).isGreaterThan(0.99);
+        assertThat(second.spots()).first().extracting(RagSpot::spotId).isEqualTo(3L);
+        assertThat(first.usedFallback()).isFalse();
+        verify(spotRepository, times(1)).findAll();
+        verify(embeddingClient, times(1)).embedInBatches(anyList(), any());
+        verify(embeddingClient, never()).embed(contains("Spot: "));
+    }
+
+    @Test
+    void repeatedQuestionsReuseTheCachedEmbedding() {
+        service.buildIndex();
+        service.retrieveContext("How is  Peniche today?", null);
+        RagContext again = service.retrieveContext("how is peniche today? ", null);
+
+        assertThat(again.spots()).first().extracting(RagSpot::spotId).isEqualTo(2L);
+        verify(embeddingClient, times(1)).embed("how is peniche today?");
+    }
+
+    @Test
+    void warmUpEmbedsTheCatalogBeforeTheFirstQuestion() {
+        service.warmUpIndex();
+        awaitIndexBuilt();
+
+        RagContext context = service.retrieveContext("How is Peniche today?", null);
+
+        assertThat(context.spots()).first().extracting(RagSpot::spotId).isEqualTo(2L);
+        verify(embeddingClient, times(1)).embedInBatches(argThat(texts -> texts.size() == 3), any());
+        verify(embeddingClient, times(1)).embed(anyString());
+    }
+
+    @Test
+    void aQuestionDuringTheBuildUsesTheBatchesAlreadyIndexed() throws InterruptedException {
+        CountDownLatch firstBatchIndexed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            BiConsumer<List<Integer>, List<double[]>> onBatch = inv.getArgument(1);
+            List<String> texts = inv.getArgument(0);
+            onBatch.accept(List.of(0, 1), List.of(axes(texts.get(0)), axes(texts.get(1))));
+            firstBatchIndexed.countDown();
+            // o lote de Sagres ainda esta no provedor
+            release.await(5, TimeUnit.SECONDS);
+            onBatch.accept(List.of(2), List.of(axes(texts.get(2))));
+            return List.of();
+        }).when(embeddingClient).embedInBatches(anyList(), any());
+
+        service.warmUpIndex();
+        assertThat(firstBatchIndexed.await(5, TimeUnit.SECONDS)).isTrue();
+        RagContext during = service.retrieveContext("How is Peniche today?", null);
+        release.countDown();
+        awaitIndexBuilt();
+
+        assertThat(during.usedFallback()).isFalse();
+        assertThat(during.spots()).extracting(RagSpot::spotId).containsExactly(2L, 1L);
+        assertThat(service.retrieveContext("Any swell for Sagres?", null).spots())
+                .first().extracting(RagSpot::spotId).isEqualTo(3L);
+        verify(embeddingClient, times(1)).embedInBatches(anyList(), any());
+    }
+
+    @Test
+    void failedBatchesAreRetriedInTheBackground() {
+        properties.setEmbeddingFailureBackoff(Duration.ZERO);
+        doAnswer(inv -> deliver(inv, List.of(0, 1), List.of(2)))
+                .doAnswer(inv -> deliver(inv, List.of(), List.of()))
+                .when(embeddingClient).embedInBatches(anyList(), any());
+        when(spotRepository.findAllById(List.of(3L))).thenReturn(List.of(sagres));
+
+        service.buildIndex();
+        RagContext partial = service.retrieveContext("How is Peniche today?", null);
+
+        assertThat(service.isIndexBuilt()).isTrue();
+        assertThat(partial.spots()).extracting(RagSpot::spotId).containsExactly(2L, 1L);
+        verify(embeddingClient, timeout(5_000))
+                .embedInBatches(argThat(texts -> texts.size() == 1 && texts.get(0).contains("Sagres")), any());
+        assertThat(service.retrieveContext("Any swell for Sagres?", null).spots())
+                .first().extracting(RagSpot::spotId).isEqualTo(3L);
+        verify(spotRepository, times(1)).findAll();
+    }
+
+    @Test
+    void duringAnOutageQuestionsUseHeuristicsWithoutCallingTheProviderPerSpot() {
+        Spot beginners = Spot.builder().id(4L).name("Costa").recommendedLevel(UserLevel.BEGINNER)
+                .swellBestDirection(Direction.W).windBestDirection(Direction.E).notes(List.of("sand")).build();
+        when(spotRepository.findAll()).thenReturn(List.of(ericeira, peniche, beginners));
+        doThrow(new IllegalStateException("503 model loading")).when(embeddingClient).embedInBatches(anyList(), any());
+
+        service.buildIndex();
+        RagContext first = service.retrieveContext("Onde surfar como iniciante?", null);
+        RagContext second = service.retrieveContext("Algo para iniciante hoje?", null);
+
+        assertThat(first.usedFallback()).isTrue();
+        assertThat(first.spots()).first().extracting(RagSpot::spotId).isEqualTo(4L);
+        assertThat(first.spots()).allSatisfy(spot -> assertThat(spot.similarityScore()).isZero());
+        assertThat(second.spots()).first().extracting(RagSpot::spotId).isEqualTo(4L);
+        // a construcao falha e o resto espera o backoff; nada de embedding por spot
+        verify(embeddingClient, times(1)).embedInBatches(anyList(), any());
+        verify(embeddingClient, never()).embed(anyString());
+    }
+
+    @Test
+    void theProviderIsTriedAgainOnceTheBackoffIsOver() {
+        properties.setEmbeddingFailureBackoff(Duration.ZERO);
+        when(embeddingClient.embed(anyString()))
+                .thenThrow(new IllegalStateException("503 model loading"))
+                .thenAnswer(inv -> axes(inv.getArgument(0)));
+        service.buildIndex();
+
+        assertThat(service.retrieveContext("How is Peniche today?", null).usedFallback()).isTrue();
+        RagContext recovered = service.retrieveContext("How is Peniche today?", null);
+
+        assertThat(recovered.usedFallback()).isFalse();
+        assertThat(recovered.spots()).first().extracting(RagSpot::spotId).isEqualTo(2L);
+    }
+
+    @Test
+    void changedSpotsAreReembeddedAndReindexed() {
+        service.buildIndex();
+        service.retrieveContext("How is Peniche today?", null);
+
+        // Sagres passa a se descrever como Peniche
+        Spot renamed = spot(3L, "Sagres", "Peniche style barrels");
+        when(spotRepository.findAllById(List.of(3L))).thenReturn(List.of(renamed));
+        service.onSpotChanged(new SpotChangedEvent(3L));
+        RagContext context = service.retrieveContext("How is Peniche today?", null);
+
+        assertThat(context.spots()).extracting(RagSpot::spotId).startsWith(2L, 3L);
+        assertThat(context.spots().get(1).notes()).isEqualTo("Peniche style barrels");
+        verify(embeddingClient, times(1))
+                .embedInBatches(argThat(texts -> texts.size() == 1 && texts.get(0).contains("Notes: Peniche style barrels")), any());
+        verify(spotRepository, times(1)).findAll();
+    }
+
+    @Test
+    void deletedSpotsLeaveTheIndex() {
+        service.buildIndex();
+        service.retrieveContext("How is Peniche today?", null);
+
+        when(spotRepository.findAllById(List.of(2L))).thenReturn(List.of());
+        service.onSpotChanged(new SpotChangedEvent(2L));
+
+        assertThat(service.retrieveContext("How is Peniche today?", null).spots())
+                .extracting(RagSpot::spotId).doesNotContain(2L).hasSize(2);
+    }
+
+    private void awaitIndexBuilt() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!service.isIndexBuilt() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(service.isIndexBuilt()).isTrue();
+    }
+
+    // entrega os textos de delivered num lote so e devolve failed como lotes que falharam
+    private static List<Integer> deliver(InvocationOnMock inv, List<Integer> delivered, List<Integer> failed) {
+        List<String> texts = inv.getArgument(0);
+        BiConsumer<List<Integer>, List<double[]>> onBatch = inv.getArgument(1);
+        List<Integer> indexes = delivered.isEmpty() && failed.isEmpty()
+                ? IntStream.range(0, texts.size()).boxed().toList()
+                : delivered;
+        onBatch.accept(indexes, indexes.stream().map(i -> axes(texts.get(i))).toList());
+        return failed;
+    }
+
+    // perguntas chegam normalizadas (minusculas)
+    private static double[] axes(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        return new double[]{
+                lower.contains("ericeira") ? 1 : 0.05,
+                lower.contains("peniche") ? 1 : 0.05,
+                lower.contains("sagres") ? 1 : 0.05};
+    }
+
+    private static Spot spot(Long id, String name, String note) {
+        return Spot.builder()
+                .id(id)
+                .name(name)
+                .recommendedLevel(UserLevel.INTERMEDIATE)
+                .swellBestDirection(Direction.NW)
+                .windBestDirection(Direction.E)
+                .notes(List.of(note))
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.surfmaster.service.scoring;
+
+import com.surfmaster.config.RecommendationProperties;
+import com.surfmaster.entities.Direction;
+import com.surfmaster.entities.Objective;
+import com.surfmaster.entities.Spot;
+import com.surfmaster.entities.SpotChangedEvent;
+import com.surfmaster.entities.UserLevel;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SpotScoringModelTest {
+
+    private final Spot spot = Spot.builder()
+            .id(1L)
+            .swellBestDirection(Direction.NW)
+            .windBestDirection(Direction.E)
+            .build();
+
+    private static int dir(Direction d) {
+        return SpotScoringModel.bearingIndex(null, d);
+    }
+
+    @Test
+    void perfectConditionsScoreHundred() {
+        var model = SpotScoringModel.compile(spot, UserLevel.INTERMEDIATE, Objective.FUN);
+
+        assertThat(model.score(1.5, dir(Direction.NW), 8.0, dir(Direction.E))).isEqualTo(100.0);
+    }
+
+    @Test
+    void swellAboveLevelAndModerateWindFollowPiecewiseCurves() {
+        var model = SpotScoringModel.compile(spot, UserLevel.BEGINNER, Objective.FUN);
+
+        // swell 1.8 para beginner (ok 1.2, pior 2.4) -> 0.5; vento 18.5 -> base 0.5 * 1.25 = 0.625
+        double expected = 100.0 * (0.55 * 0.5 + 0.45 * (1.0 - 0.625));
+        assertThat(model.score(1.8, dir(Direction.NW), 18.5, dir(Direction.E))).isCloseTo(expected, within(1e-9));
+    }
+
+    @Test
+    void missingValuesFallBackToConservativeDefaults() {
+        var model = SpotScoringModel.compile(spot, UserLevel.ADVANCED, Objective.TRAINING);
+
+        // sem swell e sem vento: swell zera, vento tem penalidade 0.5
+        double score = model.score(Double.NaN, dir(null), Double.NaN, dir(Direction.E));
+        assertThat(score).isCloseTo(100.0 * 0.45 * 0.5, within(1e-9));
+    }
+
+    @Test
+    void scoreAllMatchesSinglePointScoring() {
+        var model = SpotScoringModel.compile(spot, UserLevel.INTERMEDIATE, Objective.TRAINING);
+        double[] heights = {0.0, 1.0, 2.5, 5.0};
+        int[] swellDirs = {dir(Direction.NW), dir(Direction.NW), dir(Direction.W), dir(Direction.NW)};
+        double[] winds = {5.0, 20.0, 30.0, Double.NaN};
+        int[] windDirs = {dir(Direction.E), dir(Direction.E), dir(Direction.E), dir(Direction.S)};
+        double[] out = new double[4];
+
+        model.scoreAll(heights, swellDirs, winds, windDirs, out, 4);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(out[i]).isEqualTo(model.score(heights[i], swellDirs[i], winds[i], windDirs[i]));
+        }
+    }
+
+    @Test
+    void cacheDropsModelsOfChangedSpot() {
+        var cache = new ScoringModelCache(new RecommendationProperties());
+        var first = cache.get(spot, UserLevel.BEGINNER, Objective.FUN);
+
+        assertThat(cache.get(spot, UserLevel.BEGINNER, Objective.FUN)).isSameAs(first);
+        cache.onSpotChanged(new SpotChangedEvent(1L));
+        assertThat(cache.size()).isZero();
+        assertThat(cache.get(spot, UserLevel.BEGINNER, Objective.FUN)).isNotSameAs(first);
+    }
+
+    @Test
+    void angularModeFallsOffWithCosineOfBearingDistance() {
+        var model = SpotScoringModel.compile(spot, UserLevel.INTERMEDIATE, Objective.FUN, DirectionScoring.ANGULAR);
+        int calmWind = SpotScoringModel.NO_BEARING;
+
+        // NW = 315; 45 graus de diferenca -> cos(45)
+        assertThat(model.score(1.5, SpotScoringModel.bearingIndex(270.0, null), Double.NaN, calmWind))
+                .isCloseTo(100.0 * 0.55 * Math.cos(Math.toRadians(45)), within(1e-9));
+        // perpendicular ou oposto nao pontua
+        assertThat(model.score(1.5, SpotScoringModel.bearingIndex(45.0, null), Double.NaN, calmWind)).isZero();
+        assertThat(model.score(1.5, SpotScoringModel.bearingIndex(135.0, null), Double.NaN, calmWind)).isZero();
+    }
+
+    @Test
+    void bearingIndexNormalizesDegreesAndFallsBackToSectorCentre() {
+        assertThat(SpotScoringModel.bearingIndex(-10.4, null)).isEqualTo(350);
+        assertThat(SpotScoringModel.bearingIndex(359.6, Direction.S)).isZero();
+        assertThat(SpotScoringModel.bearingIndex(null, Direction.SW)).isEqualTo(225);
+        assertThat(SpotScoringModel.bearingIndex(null, null)).isEqualTo(SpotScoringModel.NO_BEARING);
+    }
+}